@@ -66,6 +66,12 @@ public class AimbowGui extends GuiIngame {
 	private float partialTicks;
 	public boolean autoAim;
 	private MatrixCatcher catcher;
+	/**
+	 * Time spent to solve colissions in the current frame. Shown on the debug
+	 * screen.
+	 */
+	private long solverNanos;
+	private int solverRuns;
 
 	public AimbowGui(Minecraft mcIn) {
 		super(mcIn);
@@ -74,7 +80,17 @@ public class AimbowGui extends GuiIngame {
 	@Override
 	public void renderGameOverlay(float partialTicks) {
 		this.partialTicks = partialTicks;
+		solverNanos = 0;
+		solverRuns = 0;
 		super.renderGameOverlay(partialTicks);
+		if (mc.gameSettings.showDebugInfo && solverRuns > 0) {
+			final ScaledResolution resolution = new ScaledResolution(this.mc,
+					this.mc.displayWidth, this.mc.displayHeight);
+			String text = String.format("AimBow: %d solver runs, %.2f ms",
+					solverRuns, solverNanos / 1e6);
+			getFontRenderer().drawStringWithShadow(text, 2,
+					resolution.getScaledHeight() - 10, 0xffffff);
+		}
 	}
 
 	@Override
@@ -87,8 +103,11 @@ public class AimbowGui extends GuiIngame {
 			final ScaledResolution resolution = new ScaledResolution(this.mc,
 					this.mc.displayWidth, this.mc.displayHeight);
 			boolean colissionDrawn = false;
+			long start = System.nanoTime();
 			ArrayList<ColissionData> colissionPoints = colissionSolver
 					.computeCurrentColissionPoints();
+			solverNanos += System.nanoTime() - start;
+			solverRuns++;
 			for (ColissionData p : colissionPoints) {
 				Pos2 pos = getPositionOnScreen(mc, p.x,
 						p.y + player.getEyeHeight(), p.z, resolution);
@@ -268,9 +287,12 @@ public class AimbowGui extends GuiIngame {
 
 		for (CloseEntity e : nearEntities) {
 			// System.out.println("Try to hit " + e);
+			long start = System.nanoTime();
 			Vec3 look = rbs.getLookForTarget(e.entity);
 			ArrayList<ColissionData> foundColissions = colissionSolver
 					.computeColissionWithLook(look);
+			solverNanos += System.nanoTime() - start;
+			solverRuns++;
 			if (foundColissions.size() > 0
 					&& foundColissions.get(0).hitEntity == e.entity) {
 				// System.out.println("Positive: " + e.entity);
@@ -19,10 +19,7 @@ package net.famzangl.minecraft.aimbow.aiming;
 import java.util.List;
 
 import net.minecraft.client.Minecraft;
-import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityLivingBase;
-import net.minecraft.entity.projectile.EntityArrow;
-import net.minecraft.util.AxisAlignedBB;
 import net.minecraft.util.MovingObjectPosition;
 import net.minecraft.util.Vec3;
 
@@ -41,33 +38,28 @@ public class BowColissionSolver extends ColissionSolver {
 		super(mc, renderViewEntity);
 	}
 
-	protected MovingObjectPosition computeHit(RayData s, int tick) {
-		Vec3 vec31 = new Vec3(s.prevPosX, s.prevPosY, s.prevPosZ);
-		Vec3 vec3 = new Vec3(s.posX, s.posY, s.posZ);
-		MovingObjectPosition hit = minecraft.theWorld.rayTraceBlocks(vec31,
-				vec3, false, true, false);
-
-		vec31 = new Vec3(s.prevPosX, s.prevPosY, s.prevPosZ);
-		if (hit == null) {
-			vec3 = new Vec3(s.posX, s.posY, s.posZ);
-		} else {
-			vec3 = new Vec3(hit.hitVec.xCoord, hit.hitVec.yCoord,
-					hit.hitVec.zCoord);
+	@Override
+	protected MovingObjectPosition computeHit(Trajectory trajectory,
+			int segment, List<EntityCandidate> candidates, int tick) {
+		MovingObjectPosition hit = null;
+		if (trajectory.mayHitBlock(minecraft.theWorld, segment)) {
+			hit = minecraft.theWorld.rayTraceBlocks(
+					trajectory.getStart(segment), trajectory.getEnd(segment),
+					false, true, false);
 		}
 
+		Vec3 vec31 = null;
+		Vec3 vec3 = null;
 		double d0 = 0.0D;
-		AxisAlignedBB bbox = s.boundingBox.addCoord(s.motionX, s.motionY,
-				s.motionZ).expand(1.0D, 1.0D, 1.0D);
-		List<Entity> entities = minecraft.theWorld.getEntitiesWithinAABB(
-				Entity.class, bbox);
-		// System.out.println("BBox: " + bbox);
-		for (Entity e : entities) {
-			if (e.canBeCollidedWith()
-					&& (e != this.shootingEntity || tick >= 5)) {
-				float f1 = 0.3F;
-				AxisAlignedBB axisalignedbb1 = e.getEntityBoundingBox().expand(
-						(double) f1, (double) f1, (double) f1);
-				MovingObjectPosition movingobjectposition1 = axisalignedbb1
+		for (EntityCandidate c : candidates) {
+			if ((c.entity != this.shootingEntity || tick >= 5)
+					&& trajectory.mayIntersect(c.hitBox, segment)) {
+				if (vec31 == null) {
+					vec31 = trajectory.getStart(segment);
+					vec3 = hit == null ? trajectory.getEnd(segment)
+							: hit.hitVec;
+				}
+				MovingObjectPosition movingobjectposition1 = c.hitBox
 						.calculateIntercept(vec31, vec3);
 
 				if (movingobjectposition1 != null) {
@@ -75,7 +67,7 @@ public class BowColissionSolver extends ColissionSolver {
 
 					if (d1 < d0 || d0 == 0.0D) {
 						hit = movingobjectposition1;
-						hit.entityHit = e;
+						hit.entityHit = c.entity;
 						d0 = d1;
 					}
 				}
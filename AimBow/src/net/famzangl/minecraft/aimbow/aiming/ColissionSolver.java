@@ -17,16 +17,47 @@
 package net.famzangl.minecraft.aimbow.aiming;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import net.minecraft.client.Minecraft;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityLivingBase;
 import net.minecraft.init.Items;
 import net.minecraft.item.ItemStack;
+import net.minecraft.util.AxisAlignedBB;
 import net.minecraft.util.MovingObjectPosition;
 import net.minecraft.util.Vec3;
 
+/**
+ * Finds where a shot hits.
+ * <p>
+ * The whole flight path is computed first. Then all entities near it are
+ * queried at once. Each step is only checked against the blocks it passes
+ * through and the entities it gets close to.
+ * 
+ * @author michael
+ *
+ */
 public abstract class ColissionSolver {
+	private static final int MAX_TICKS = 200;
+	/**
+	 * How much the hit box of entities is expanded.
+	 */
+	private static final float ENTITY_HIT_EXPAND = 0.3F;
+
+	/**
+	 * An entity that may be hit.
+	 */
+	protected static class EntityCandidate {
+		protected final Entity entity;
+		protected final AxisAlignedBB hitBox;
+
+		public EntityCandidate(Entity entity) {
+			this.entity = entity;
+			hitBox = entity.getEntityBoundingBox().expand(ENTITY_HIT_EXPAND,
+					ENTITY_HIT_EXPAND, ENTITY_HIT_EXPAND);
+		}
+	}
 
 	protected final Minecraft minecraft;
 	protected final EntityLivingBase shootingEntity;
@@ -39,30 +70,33 @@ public abstract class ColissionSolver {
 		shootingEntity = renderViewEntity;
 	}
 
-	private void runTick(int tick) {
-		for (RayData s : simulated) {
-			if (s.isDead()) {
-				continue;
-			}
-			s.moveTick();
-
-			MovingObjectPosition hit = computeHit(s, tick);
-			if (hit != null) {
-				// System.out.println("Hit: " + hit.entityHit + " at " +
-				// hit.hitVec.xCoord + ","+
-				// hit.hitVec.yCoord +"," + hit.hitVec.zCoord + "," +
-				// hit.typeOfHit);
-				colissions.add(new ColissionData(hit.hitVec.xCoord,
-						hit.hitVec.yCoord, hit.hitVec.zCoord, hit.entityHit,
-						tick));
-				s.setDead(true);
-			}
-
-		}
+	/**
+	 * Checks if the ray hits something in the given tick.
+	 * 
+	 * @param trajectory
+	 *            The flight path.
+	 * @param segment
+	 *            The segment of the path to check, see
+	 *            {@link #getSegment(int)}.
+	 * @param candidates
+	 *            The entities near the path.
+	 * @param tick
+	 *            The tick.
+	 * @return The hit or <code>null</code>.
+	 */
+	protected abstract MovingObjectPosition computeHit(Trajectory trajectory,
+			int segment, List<EntityCandidate> candidates, int tick);
+
+	/**
+	 * @param tick
+	 *            The tick
+	 * @return The segment of the flight path that is checked for hits in that
+	 *         tick.
+	 */
+	protected int getSegment(int tick) {
+		return tick;
 	}
 
-	protected abstract MovingObjectPosition computeHit(RayData s, int tick);
-
 	private void generateRays(Entity entity) {
 		simulated.clear();
 		RayData data = generateRayData();
@@ -90,9 +124,36 @@ public abstract class ColissionSolver {
 	protected abstract RayData generateRayData();
 
 	private void run() {
-		for (int i = 0; i < 200; i++) {
-			runTick(i);
+		for (RayData s : simulated) {
+			Trajectory trajectory = new Trajectory(s, MAX_TICKS + 2,
+					minecraft.theWorld);
+			List<EntityCandidate> candidates = getCandidates(trajectory);
+			for (int tick = 0; tick < MAX_TICKS; tick++) {
+				int segment = getSegment(tick);
+				if (segment >= trajectory.getSegmentCount()) {
+					break;
+				}
+				MovingObjectPosition hit = computeHit(trajectory, segment,
+						candidates, tick);
+				if (hit != null) {
+					colissions.add(new ColissionData(hit.hitVec.xCoord,
+							hit.hitVec.yCoord, hit.hitVec.zCoord,
+							hit.entityHit, tick));
+					s.setDead(true);
+					break;
+				}
+			}
+		}
+	}
+
+	private List<EntityCandidate> getCandidates(Trajectory trajectory) {
+		ArrayList<EntityCandidate> candidates = new ArrayList<EntityCandidate>();
+		for (Entity e : trajectory.getEntitiesNear(minecraft.theWorld, 1)) {
+			if (e.canBeCollidedWith()) {
+				candidates.add(new EntityCandidate(e));
+			}
 		}
+		return candidates;
 	}
 
 	public static ColissionSolver forItem(ItemStack heldItem, Minecraft mc) {
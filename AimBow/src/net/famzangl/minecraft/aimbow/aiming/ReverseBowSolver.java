@@ -22,6 +22,8 @@ import net.minecraft.entity.Entity;
 import net.minecraft.util.AxisAlignedBB;
 import net.minecraft.util.Vec3;
 
+import java.util.HashMap;
+
 /**
  * Gets a yaw/pitch for a given entity.
  * <p>
@@ -36,13 +38,94 @@ import net.minecraft.util.Vec3;
  */
 public class ReverseBowSolver {
 	private static final int MAX_STEPS = 120;
-	private float gravity;
-	private float velocity;
+	/**
+	 * More bisection steps do not change a float between -0.9 and 0.9.
+	 */
+	private static final int TABLE_ATTEMPTS = 26;
+	/**
+	 * Close targets are not interpolated since the angle changes too fast.
+	 * Solving them is cheap.
+	 */
+	private static final int TABLE_MIN_HOR = 4;
+	private static final int TABLE_MAX_HOR = 160;
+	private static final int TABLE_MAX_VERT = 64;
+	/**
+	 * Solutions close to the search limits are not interpolated.
+	 */
+	private static final float MAX_TABLE_Y = 0.85f;
+
+	/**
+	 * The y component of the look vector for targets on a grid with one
+	 * block spacing. Targets between the grid points are interpolated. There
+	 * is one table per gravity/velocity pair.
+	 */
+	private static class PitchTable {
+		private static final int COLUMNS = 2 * TABLE_MAX_VERT + 1;
+		private final float[] y = new float[(TABLE_MAX_HOR + 1) * COLUMNS];
+
+		public PitchTable(ReverseBowSolver solver) {
+			for (int hor = TABLE_MIN_HOR; hor <= TABLE_MAX_HOR; hor++) {
+				for (int vert = -TABLE_MAX_VERT; vert <= TABLE_MAX_VERT; vert++) {
+					y[hor * COLUMNS + vert + TABLE_MAX_VERT] = solver
+							.solveYForTarget(hor, vert, TABLE_ATTEMPTS);
+				}
+			}
+		}
+
+		/**
+		 * @return The interpolated value or NaN if the target is outside the
+		 *         table.
+		 */
+		public float get(float dHor, float dVert) {
+			float v = dVert + TABLE_MAX_VERT;
+			if (!(dHor >= TABLE_MIN_HOR && dHor < TABLE_MAX_HOR && v >= 0
+					&& v < COLUMNS - 1)) {
+				return Float.NaN;
+			}
+			int hor = (int) dHor;
+			int vert = (int) v;
+			float fh = dHor - hor;
+			float fv = v - vert;
+			int i = hor * COLUMNS + vert;
+			if (isOutOfRange(y[i]) || isOutOfRange(y[i + 1])
+					|| isOutOfRange(y[i + COLUMNS])
+					|| isOutOfRange(y[i + COLUMNS + 1])) {
+				// Close to the maximum distance, the result is not smooth.
+				return Float.NaN;
+			}
+			float low = y[i] + (y[i + 1] - y[i]) * fv;
+			float high = y[i + COLUMNS] + (y[i + COLUMNS + 1] - y[i + COLUMNS])
+					* fv;
+			return low + (high - low) * fh;
+		}
+
+		private static boolean isOutOfRange(float y) {
+			return Math.abs(y) > MAX_TABLE_Y;
+		}
+	}
+
+	private static final HashMap<Long, PitchTable> tables = new HashMap<Long, PitchTable>();
+
+	private final float gravity;
+	private final float velocity;
 	
 	public ReverseBowSolver(float gravity, float velocity) {
 		this.gravity = gravity;
 		this.velocity = velocity;
 	}
+
+	private PitchTable getTable() {
+		synchronized (tables) {
+			Long key = (long) Float.floatToIntBits(gravity) << 32
+					| Float.floatToIntBits(velocity) & 0xffffffffL;
+			PitchTable table = tables.get(key);
+			if (table == null) {
+				table = new PitchTable(this);
+				tables.put(key, table);
+			}
+			return table;
+		}
+	}
 	
 	public Vec3 getLookForTarget(Entity target) {
 		EntityPlayerSP player = Minecraft.getMinecraft().thePlayer;
@@ -64,8 +147,16 @@ public class ReverseBowSolver {
 	}
 	
 	private float getYForTarget(float dHor, float dVert) {
+		float y = getTable().get(dHor, dVert);
+		if (Float.isNaN(y)) {
+			return solveYForTarget(dHor, dVert, 50);
+		}
+		return y;
+	}
+
+	private float solveYForTarget(float dHor, float dVert, int maxAttempts) {
 		float maxVert = 0.9f, minVert = -0.9f;
-		for (int attempts = 0; attempts < 50; attempts++) {
+		for (int attempts = 0; attempts < maxAttempts; attempts++) {
 			float vert = (maxVert + minVert) / 2;
 			float hor = (float) Math.sqrt(1 - vert * vert);
 			float newY = getYAtDistance(hor * velocity, vert * velocity, dHor);
@@ -21,7 +21,6 @@ import java.util.List;
 import net.minecraft.client.Minecraft;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityLivingBase;
-import net.minecraft.util.AxisAlignedBB;
 import net.minecraft.util.MovingObjectPosition;
 import net.minecraft.util.Vec3;
 
@@ -31,53 +30,55 @@ public class ThrowableColissionSolver extends ColissionSolver{
 		super(mc, renderViewEntity);
 	}
 
+	/**
+	 * Throwables check the movement of the next tick.
+	 */
 	@Override
-	protected MovingObjectPosition computeHit(RayData s, int tick) {
-        Vec3 vec3 = new Vec3(s.posX, s.posY, s.posZ);
-        Vec3 vec31 = new Vec3(s.posX + s.motionX, s.posY + s.motionY, s.posZ + s.motionZ);
-        MovingObjectPosition movingobjectposition = minecraft.theWorld.rayTraceBlocks(vec3, vec31);
-        vec3 = new Vec3(s.posX, s.posY, s.posZ);
-        vec31 = new Vec3(s.posX + s.motionX, s.posY + s.motionY, s.posZ + s.motionZ);
-
-        if (movingobjectposition != null)
-        {
-            vec31 = new Vec3(movingobjectposition.hitVec.xCoord, movingobjectposition.hitVec.yCoord, movingobjectposition.hitVec.zCoord);
-        }
+	protected int getSegment(int tick) {
+		return tick + 1;
+	}
 
-        Entity entity = null;
-        List list = minecraft.theWorld.getEntitiesWithinAABB(Entity.class, s.boundingBox.addCoord(s.motionX, s.motionY, s.motionZ).expand(1.0D, 1.0D, 1.0D));
-        double d0 = 0.0D;
-        EntityLivingBase entitylivingbase = this.shootingEntity;
+	@Override
+	protected MovingObjectPosition computeHit(Trajectory trajectory,
+			int segment, List<EntityCandidate> candidates, int tick) {
+		MovingObjectPosition movingobjectposition = null;
+		if (trajectory.mayHitBlock(minecraft.theWorld, segment)) {
+			movingobjectposition = minecraft.theWorld.rayTraceBlocks(
+					trajectory.getStart(segment), trajectory.getEnd(segment));
+		}
 
-        for (int j = 0; j < list.size(); ++j)
-        {
-            Entity entity1 = (Entity)list.get(j);
+		Vec3 vec3 = null;
+		Vec3 vec31 = null;
+		Entity entity = null;
+		double d0 = 0.0D;
 
-            if (entity1.canBeCollidedWith() && (entity1 != entitylivingbase || tick >= 5))
-            {
-                float f = 0.3F;
-                AxisAlignedBB axisalignedbb = entity1.getEntityBoundingBox().expand((double)f, (double)f, (double)f);
-                MovingObjectPosition movingobjectposition1 = axisalignedbb.calculateIntercept(vec3, vec31);
+		for (EntityCandidate c : candidates) {
+			if ((c.entity != this.shootingEntity || tick >= 5)
+					&& trajectory.mayIntersect(c.hitBox, segment)) {
+				if (vec3 == null) {
+					vec3 = trajectory.getStart(segment);
+					vec31 = movingobjectposition == null ? trajectory
+							.getEnd(segment) : movingobjectposition.hitVec;
+				}
+				MovingObjectPosition movingobjectposition1 = c.hitBox
+						.calculateIntercept(vec3, vec31);
 
-                if (movingobjectposition1 != null)
-                {
-                    double d1 = vec3.distanceTo(movingobjectposition1.hitVec);
+				if (movingobjectposition1 != null) {
+					double d1 = vec3.distanceTo(movingobjectposition1.hitVec);
 
-                    if (d1 < d0 || d0 == 0.0D)
-                    {
-                        entity = entity1;
-                        d0 = d1;
-                    }
-                }
-            }
-        }
+					if (d1 < d0 || d0 == 0.0D) {
+						entity = c.entity;
+						d0 = d1;
+					}
+				}
+			}
+		}
 
-        if (entity != null)
-        {
-            return new MovingObjectPosition(entity);
-        } else {
-        	return movingobjectposition;
-        }
+		if (entity != null) {
+			return new MovingObjectPosition(entity);
+		} else {
+			return movingobjectposition;
+		}
 	}
 	
 	@Override
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.aimbow.aiming;
+
+import java.util.List;
+
+import net.minecraft.block.material.Material;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.Vec3;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+/**
+ * The flight path of a ray, computed before any colission is checked.
+ * <p>
+ * Point n is the position after n ticks. Segment n is the movement from point
+ * n to point n + 1. The path ends early if the ray leaves the loaded area or
+ * falls below the world.
+ * 
+ * @author michael
+ *
+ */
+public class Trajectory {
+	private static final float DRAG = 0.99F;
+
+	private final double[] x;
+	private final double[] y;
+	private final double[] z;
+	private int length;
+
+	private double minX = Double.POSITIVE_INFINITY;
+	private double minY = Double.POSITIVE_INFINITY;
+	private double minZ = Double.POSITIVE_INFINITY;
+	private double maxX = Double.NEGATIVE_INFINITY;
+	private double maxY = Double.NEGATIVE_INFINITY;
+	private double maxZ = Double.NEGATIVE_INFINITY;
+
+	private Chunk lastChunk;
+
+	/**
+	 * Computes the path.
+	 * 
+	 * @param ray
+	 *            The ray after it was shot. It is not modified.
+	 * @param maxPoints
+	 *            The maximum number of points to compute.
+	 * @param world
+	 *            The world to check for loaded chunks.
+	 */
+	public Trajectory(RayData ray, int maxPoints, World world) {
+		x = new double[maxPoints];
+		y = new double[maxPoints];
+		z = new double[maxPoints];
+		double posX = ray.posX, posY = ray.posY, posZ = ray.posZ;
+		double motionX = ray.motionX, motionY = ray.motionY, motionZ = ray.motionZ;
+		float gravity = ray.getGravity();
+		while (length < maxPoints) {
+			x[length] = posX;
+			y[length] = posY;
+			z[length] = posZ;
+			length++;
+			minX = Math.min(minX, posX);
+			minY = Math.min(minY, posY);
+			minZ = Math.min(minZ, posZ);
+			maxX = Math.max(maxX, posX);
+			maxY = Math.max(maxY, posY);
+			maxZ = Math.max(maxZ, posZ);
+
+			if (posY < 0 && motionY < 0
+					|| !world.getChunkProvider().chunkExists(
+							floor(posX) >> 4, floor(posZ) >> 4)) {
+				break;
+			}
+
+			// Same as RayData#moveTick()
+			posX += motionX;
+			posY += motionY;
+			posZ += motionZ;
+			motionX *= DRAG;
+			motionY *= DRAG;
+			motionZ *= DRAG;
+			motionY -= gravity;
+		}
+	}
+
+	private static int floor(double d) {
+		int i = (int) d;
+		return d < i ? i - 1 : i;
+	}
+
+	public int getSegmentCount() {
+		return length - 1;
+	}
+
+	public Vec3 getStart(int segment) {
+		return new Vec3(x[segment], y[segment], z[segment]);
+	}
+
+	public Vec3 getEnd(int segment) {
+		return new Vec3(x[segment + 1], y[segment + 1], z[segment + 1]);
+	}
+
+	/**
+	 * Gets all entities that are close to the path. This is a lot faster than
+	 * checking each segment.
+	 * 
+	 * @param world
+	 *            The world
+	 * @param margin
+	 *            How far the entities may be away from the path.
+	 * @return The entities
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Entity> getEntitiesNear(World world, double margin) {
+		return world.getEntitiesWithinAABB(Entity.class, new AxisAlignedBB(
+				minX - margin, minY - margin, minZ - margin, maxX + margin,
+				maxY + margin, maxZ + margin));
+	}
+
+	/**
+	 * A fast check if a segment may intersect a box.
+	 * 
+	 * @param box
+	 *            The box
+	 * @param segment
+	 *            The segment
+	 * @return <code>false</code> if it cannot intersect.
+	 */
+	public boolean mayIntersect(AxisAlignedBB box, int segment) {
+		int next = segment + 1;
+		return Math.min(x[segment], x[next]) <= box.maxX
+				&& Math.max(x[segment], x[next]) >= box.minX
+				&& Math.min(y[segment], y[next]) <= box.maxY
+				&& Math.max(y[segment], y[next]) >= box.minY
+				&& Math.min(z[segment], z[next]) <= box.maxZ
+				&& Math.max(z[segment], z[next]) >= box.minZ;
+	}
+
+	/**
+	 * Walks along all blocks the segment touches and checks if one of them is
+	 * not air. Only then, a real ray trace is required.
+	 * 
+	 * @param world
+	 *            The world
+	 * @param segment
+	 *            The segment
+	 * @return <code>true</code> if there is a block that may be hit.
+	 */
+	public boolean mayHitBlock(World world, int segment) {
+		double x0 = x[segment], y0 = y[segment], z0 = z[segment];
+		double dx = x[segment + 1] - x0;
+		double dy = y[segment + 1] - y0;
+		double dz = z[segment + 1] - z0;
+		int bx = floor(x0), by = floor(y0), bz = floor(z0);
+		int endX = floor(x0 + dx), endY = floor(y0 + dy), endZ = floor(z0 + dz);
+
+		int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+		int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+		int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+		// Ray parameter at which the next block border is crossed.
+		double tMaxX = stepX == 0 ? Double.POSITIVE_INFINITY
+				: ((stepX > 0 ? bx + 1 : bx) - x0) / dx;
+		double tMaxY = stepY == 0 ? Double.POSITIVE_INFINITY
+				: ((stepY > 0 ? by + 1 : by) - y0) / dy;
+		double tMaxZ = stepZ == 0 ? Double.POSITIVE_INFINITY
+				: ((stepZ > 0 ? bz + 1 : bz) - z0) / dz;
+		double tDeltaX = stepX == 0 ? 0 : stepX / dx;
+		double tDeltaY = stepY == 0 ? 0 : stepY / dy;
+		double tDeltaZ = stepZ == 0 ? 0 : stepZ / dz;
+
+		int steps = Math.abs(endX - bx) + Math.abs(endY - by)
+				+ Math.abs(endZ - bz);
+		for (int i = 0; i <= steps; i++) {
+			if (isNotAir(world, bx, by, bz)) {
+				return true;
+			}
+			if (tMaxX <= tMaxY && tMaxX <= tMaxZ) {
+				bx += stepX;
+				tMaxX += tDeltaX;
+			} else if (tMaxY <= tMaxZ) {
+				by += stepY;
+				tMaxY += tDeltaY;
+			} else {
+				bz += stepZ;
+				tMaxZ += tDeltaZ;
+			}
+		}
+		return false;
+	}
+
+	private boolean isNotAir(World world, int bx, int by, int bz) {
+		if (by < 0 || by > 255) {
+			return false;
+		}
+		Chunk chunk = lastChunk;
+		if (chunk == null || chunk.xPosition != bx >> 4
+				|| chunk.zPosition != bz >> 4) {
+			chunk = world.getChunkFromChunkCoords(bx >> 4, bz >> 4);
+			lastChunk = chunk;
+		}
+		return chunk.getBlock(bx & 15, by, bz & 15).getMaterial() != Material.air;
+	}
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Runs benchmarks the way JMH does it, without the dependency: Each benchmark
+ * is warmed up, then timed in several iterations of a fixed duration. The
+ * score of a benchmark is the mean time per operation over the iterations.
+ * <p>
+ * The results are printed as tab separated table and can be written to a
+ * JSON report, so that runs of different versions can be compared by a
+ * script.
+ *
+ * @author Michael Zangl
+ */
+public class BenchmarkRunner {
+	/**
+	 * One operation of a benchmark.
+	 */
+	public interface Benchmark {
+		/**
+		 * Runs the operation once.
+		 * 
+		 * @return Something that depends on the work done, so that the JIT
+		 *         cannot drop the work.
+		 */
+		long run();
+	}
+
+	/**
+	 * The result of one benchmark, as written to the report.
+	 */
+	public static class Result {
+		private final String name;
+		private final String unit = "ns/op";
+		private final double mean;
+		private final double stdDev;
+		private final double min;
+		private final double max;
+		private final int iterations;
+		private final long operations;
+
+		private Result(String name, double[] scores, long operations) {
+			this.name = name;
+			double sum = 0;
+			double min = Double.POSITIVE_INFINITY;
+			double max = 0;
+			for (double score : scores) {
+				sum += score;
+				min = Math.min(min, score);
+				max = Math.max(max, score);
+			}
+			mean = sum / scores.length;
+			double squares = 0;
+			for (double score : scores) {
+				squares += (score - mean) * (score - mean);
+			}
+			stdDev = scores.length > 1 ? Math.sqrt(squares
+					/ (scores.length - 1)) : 0;
+			this.min = min;
+			this.max = max;
+			iterations = scores.length;
+			this.operations = operations;
+		}
+	}
+
+	/**
+	 * The JSON report.
+	 */
+	private static class Report {
+		private final String version = System.getProperty("minebot.version",
+				"unknown");
+		private final String date = new SimpleDateFormat(
+				"yyyy-MM-dd'T'HH:mm:ssZ").format(new Date());
+		private final String java = System.getProperty("java.vm.name") + " "
+				+ System.getProperty("java.version");
+		private final String os = System.getProperty("os.name") + " "
+				+ System.getProperty("os.arch");
+		private final int processors = Runtime.getRuntime()
+				.availableProcessors();
+		private final List<Result> results = new ArrayList<>();
+	}
+
+	private final Pattern filter;
+	private final long warmupNanos;
+	private final long iterationNanos;
+	private final int iterations;
+	private final Report report = new Report();
+	private long blackhole;
+
+	/**
+	 * @param filter
+	 *            Only benchmarks with a name that contains a match are run.
+	 * @param warmupMillis
+	 *            How long each benchmark is run before measuring.
+	 * @param iterationMillis
+	 *            How long each iteration is.
+	 * @param iterations
+	 *            The number of iterations.
+	 */
+	public BenchmarkRunner(Pattern filter, long warmupMillis,
+			long iterationMillis, int iterations) {
+		this.filter = filter;
+		warmupNanos = warmupMillis * 1000000;
+		iterationNanos = iterationMillis * 1000000;
+		this.iterations = iterations;
+		System.out.println("benchmark\tns/op\tstddev\tmin\tmax\toperations");
+	}
+
+	public boolean isEnabled(String name) {
+		return filter.matcher(name).find();
+	}
+
+	/**
+	 * Runs a benchmark if it is not filtered out.
+	 * 
+	 * @param name
+	 *            The name, like <code>group.benchmark</code>
+	 * @param benchmark
+	 *            The operation to measure.
+	 */
+	public void run(String name, Benchmark benchmark) {
+		if (!isEnabled(name)) {
+			return;
+		}
+		runFor(benchmark, warmupNanos);
+		double[] scores = new double[iterations];
+		long operations = 0;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			long count = runFor(benchmark, iterationNanos);
+			scores[i] = (double) (System.nanoTime() - start) / count;
+			operations += count;
+		}
+		Result result = new Result(name, scores, operations);
+		report.results.add(result);
+		System.out.printf("%s\t%.1f\t%.1f\t%.1f\t%.1f\t%d%n", name,
+				result.mean, result.stdDev, result.min, result.max,
+				operations);
+	}
+
+	/**
+	 * Runs the operation until the time is over, at least once.
+	 * 
+	 * @return The number of operations.
+	 */
+	private long runFor(Benchmark benchmark, long nanos) {
+		long end = System.nanoTime() + nanos;
+		long count = 0;
+		do {
+			blackhole += benchmark.run();
+			count++;
+		} while (System.nanoTime() < end);
+		return count;
+	}
+
+	public void writeReport(File file) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null) {
+			dir.mkdirs();
+		}
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		try (Writer writer = new FileWriter(file)) {
+			gson.toJson(report, writer);
+		}
+		if (blackhole == 42) {
+			// Prevent the JIT from dropping the operations.
+			System.out.println();
+		}
+		System.out.println("Report written to " + file);
+	}
+}
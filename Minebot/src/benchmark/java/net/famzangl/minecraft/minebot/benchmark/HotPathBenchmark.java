@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.benchmark;
+
+import net.famzangl.minecraft.minebot.ai.PathFinderField;
+import net.famzangl.minecraft.minebot.ai.path.MovePathFinder;
+import net.famzangl.minecraft.minebot.ai.path.world.BlockSet;
+import net.famzangl.minecraft.minebot.ai.path.world.BlockSets;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+import net.famzangl.minecraft.minebot.ai.scanner.BlockIndex;
+import net.famzangl.minecraft.minebot.ai.scanner.BlockRangeScanner;
+import net.famzangl.minecraft.minebot.ai.scanner.BlockRangeScanner.BlockHandler;
+import net.famzangl.minecraft.minebot.ai.utils.BlockCuboid;
+import net.famzangl.minecraft.minebot.map.RenderMode;
+import net.famzangl.minecraft.minebot.settings.MinebotSettingsRoot;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.Bootstrap;
+import net.minecraft.world.chunk.Chunk;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the hot paths of the bot on a {@link SyntheticWorld}, without a
+ * running game.
+ * <p>
+ * Usage:
+ * <code>HotPathBenchmark [--filter regex] [--out report.json] [--quick]</code>
+ * . <code>--quick</code> uses short iterations, to check that the benchmarks
+ * run. The numbers of a quick run should not be compared.
+ */
+public class HotPathBenchmark {
+	private static final long SEED = 42;
+	private static final int WORLD_CHUNKS = 24;
+	/**
+	 * The chunks rendered by the map benchmarks, in each direction.
+	 */
+	private static final int MAP_CHUNKS = 4;
+
+	/**
+	 * Finds a path to a fixed destination on an empty field. This measures
+	 * the field and the queue, not the world access.
+	 */
+	private static class FloodPathFinder extends PathFinderField {
+		private BlockPos destination;
+
+		public boolean search(BlockPos start, BlockPos destination) {
+			this.destination = destination;
+			abort();
+			while (!searchSomethingAround(start.getX(), start.getY(),
+					start.getZ())) {
+			}
+			return true;
+		}
+
+		@Override
+		protected float rateDestination(int distance, int x, int y, int z) {
+			return x == destination.getX() && y == destination.getY()
+					&& z == destination.getZ() ? distance : -1;
+		}
+	}
+
+	/**
+	 * Walks to the closest iron ore, like the mine path finders do.
+	 */
+	private static class OrePathFinder extends MovePathFinder {
+		private final BlockSet ores = BlockSet.builder().add(Blocks.IRON_ORE)
+				.build();
+		private int tasks;
+
+		public OrePathFinder(MinebotSettingsRoot settings) {
+			super(settings);
+		}
+
+		public int search(WorldData world) {
+			tasks = 0;
+			abort();
+			while (!searchSomethingAround(world.getPlayerPosition(), null,
+					world, task -> tasks++)) {
+			}
+			return tasks;
+		}
+
+		@Override
+		protected float rateDestination(int distance, int x, int y, int z) {
+			return ores.isAt(world, x, y - 1, z) || ores.isAt(world, x, y + 2, z) ? distance
+					: -1;
+		}
+	}
+
+	/**
+	 * Counts the ores a scanner finds.
+	 */
+	private static class CountingHandler implements BlockHandler {
+		private final BlockSet ores = BlockSet.builder().add(Blocks.COAL_ORE,
+				Blocks.IRON_ORE, Blocks.GOLD_ORE, Blocks.DIAMOND_ORE).build();
+		private long found;
+
+		@Override
+		public BlockSet getIds() {
+			return ores;
+		}
+
+		@Override
+		public void scanningDone(WorldData world) {
+		}
+
+		@Override
+		public void scanBlock(WorldData world, int id, int x, int y, int z) {
+			found++;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		String filter = "";
+		File out = null;
+		boolean quick = false;
+		for (int i = 0; i < args.length; i++) {
+			if ("--filter".equals(args[i]) && i + 1 < args.length) {
+				filter = args[++i];
+			} else if ("--out".equals(args[i]) && i + 1 < args.length) {
+				out = new File(args[++i]);
+			} else if ("--quick".equals(args[i])) {
+				quick = true;
+			} else {
+				throw new IllegalArgumentException("Unknown argument: "
+						+ args[i]);
+			}
+		}
+
+		// Needs to be done before any block is accessed.
+		Bootstrap.register();
+		BenchmarkRunner runner = quick ? new BenchmarkRunner(
+				Pattern.compile(filter), 200, 200, 3) : new BenchmarkRunner(
+				Pattern.compile(filter), 3000, 1000, 10);
+		SyntheticWorld world = new SyntheticWorld(SEED, WORLD_CHUNKS);
+
+		benchmarkWorldAccess(runner, world);
+		benchmarkBlockSets(runner, world);
+		benchmarkPathFinders(runner, world);
+		benchmarkScanner(runner, world);
+		benchmarkMap(runner, world);
+
+		if (out != null) {
+			runner.writeReport(out);
+		}
+	}
+
+	/**
+	 * The area the old in-game performance test used.
+	 */
+	private static BlockCuboid<WorldData> aroundPlayer(WorldData world) {
+		BlockPos pos = world.getPlayerPosition();
+		return new BlockCuboid<>(new BlockPos(pos.getX() - 32, 0,
+				pos.getZ() - 32), new BlockPos(pos.getX() + 32, 100,
+				pos.getZ() + 32));
+	}
+
+	private static void benchmarkWorldAccess(BenchmarkRunner runner,
+			WorldData world) {
+		BlockCuboid<WorldData> area = aroundPlayer(world);
+		BlockPos min = area.getMin();
+		BlockPos max = area.getMax();
+		runner.run("world.getBlockStateId", () -> {
+			long sum = 0;
+			for (int y = min.getY(); y <= max.getY(); y++) {
+				for (int x = min.getX(); x <= max.getX(); x++) {
+					for (int z = min.getZ(); z <= max.getZ(); z++) {
+						sum += world.getBlockStateId(x, y, z);
+					}
+				}
+			}
+			return sum;
+		});
+		runner.run("world.visitArea", () -> {
+			long[] sum = new long[1];
+			area.accept((w, x, y, z) -> sum[0] += w.getBlockStateId(x, y, z),
+					world);
+			return sum[0];
+		});
+		runner.run("world.forEachMatching", () -> {
+			long[] count = new long[1];
+			world.forEachMatching(area, BlockSets.TREE_BLOCKS, (id, x, y, z) -> count[0]++);
+			return count[0];
+		});
+	}
+
+	private static void benchmarkBlockSets(BenchmarkRunner runner,
+			WorldData world) {
+		BlockCuboid<WorldData> area = aroundPlayer(world);
+		BlockPos min = area.getMin();
+		BlockPos max = area.getMax();
+		int[] ids = new int[area.getVolume()];
+		int[] index = new int[1];
+		area.accept((w, x, y, z) -> ids[index[0]++] = w.getBlockStateId(x, y, z), world);
+		runner.run("blockset.contains", () -> {
+			long count = 0;
+			for (int id : ids) {
+				if (BlockSets.SAFE_SIDE.contains(id)) {
+					count++;
+				}
+			}
+			return count;
+		});
+		runner.run("blockset.isAt", () -> {
+			long count = 0;
+			for (int y = min.getY() + 1; y <= max.getY(); y++) {
+				for (int x = min.getX(); x <= max.getX(); x++) {
+					for (int z = min.getZ(); z <= max.getZ(); z++) {
+						if (BlockSets.SAFE_GROUND.isAt(world, x, y - 1, z)
+								&& BlockSets.FEET_CAN_WALK_THROUGH.isAt(world,
+										x, y, z)) {
+							count++;
+						}
+					}
+				}
+			}
+			return count;
+		});
+		runner.run("blockset.safeSideAround", () -> {
+			long count = 0;
+			for (int y = min.getY() + 1; y < max.getY(); y++) {
+				for (int x = min.getX() + 1; x < max.getX(); x++) {
+					for (int z = min.getZ() + 1; z < max.getZ(); z++) {
+						if (BlockSets.safeSideAround(world, x, y, z)) {
+							count++;
+						}
+					}
+				}
+			}
+			return count;
+		});
+	}
+
+	private static void benchmarkPathFinders(BenchmarkRunner runner,
+			WorldData world) {
+		BlockPos start = world.getPlayerPosition();
+		if (runner.isEnabled("pathfinder.field")) {
+			FloodPathFinder flood = new FloodPathFinder();
+			BlockPos destination = start.add(100, 0, 100);
+			runner.run("pathfinder.field", () -> flood.search(start,
+					destination) ? 1 : 0);
+		}
+		if (runner.isEnabled("pathfinder.move")) {
+			MinebotSettingsRoot settings = new MinebotSettingsRoot();
+			settings.compile();
+			OrePathFinder ore = new OrePathFinder(settings);
+			runner.run("pathfinder.move", () -> ore.search(world));
+		}
+	}
+
+	private static void benchmarkScanner(BenchmarkRunner runner,
+			WorldData world) {
+		BlockPos center = world.getPlayerPosition();
+		runner.run("scanner.cold", () -> {
+			CountingHandler handler = new CountingHandler();
+			BlockRangeScanner scanner = new BlockRangeScanner(center);
+			scanner.addHandler(handler);
+			scanner.scanArea(world, new BlockIndex());
+			return handler.found;
+		});
+		BlockIndex index = new BlockIndex();
+		runner.run("scanner.indexed", () -> {
+			CountingHandler handler = new CountingHandler();
+			BlockRangeScanner scanner = new BlockRangeScanner(center);
+			scanner.addHandler(handler);
+			scanner.scanArea(world, index);
+			return handler.found;
+		});
+	}
+
+	private static void benchmarkMap(BenchmarkRunner runner,
+			SyntheticWorld world) {
+		int centerChunk = world.getSizeChunks() / 2;
+		for (RenderMode mode : RenderMode.values()) {
+			runner.run("map." + mode.name().toLowerCase(), () -> {
+				long sum = 0;
+				for (int chunkX = centerChunk - MAP_CHUNKS; chunkX < centerChunk
+						+ MAP_CHUNKS; chunkX++) {
+					for (int chunkZ = centerChunk - MAP_CHUNKS; chunkZ < centerChunk
+							+ MAP_CHUNKS; chunkZ++) {
+						Chunk chunk = world.getChunk(chunkX, chunkZ);
+						for (int dx = 0; dx < 16; dx++) {
+							for (int dz = 0; dz < 16; dz++) {
+								sum += mode.getColor(world, chunk,
+										chunkX * 16 + dx, chunkZ * 16 + dz);
+							}
+						}
+					}
+				}
+				return sum;
+			});
+		}
+	}
+}
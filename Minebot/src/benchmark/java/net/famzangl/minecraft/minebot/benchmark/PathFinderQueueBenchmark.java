@@ -0,0 +1,392 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.benchmark;
+
+import net.famzangl.minecraft.minebot.ai.PathFinderQueue;
+import net.famzangl.minecraft.minebot.ai.PathFinderQueueTrace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Replays recorded path finder queue traces against the
+ * {@link PathFinderQueue} and against the ring buffer +
+ * {@link PriorityQueue} combination the path finder used before.
+ * <p>
+ * Usage: <code>PathFinderQueueBenchmark [trace files...]</code>. Traces are
+ * recorded by starting the game with
+ * <code>-Dminebot.pathfinder.trace=&lt;dir&gt;</code>. Without arguments, a
+ * synthetic trace is generated from a random cost grid.
+ */
+public class PathFinderQueueBenchmark {
+	private static final int NODE_COUNT = (1 << 16) * 32;
+	private static final int WARMUP_RUNS = 5;
+	private static final int RUNS = 20;
+
+	/**
+	 * A trace, decoded into flat arrays.
+	 */
+	static class Trace {
+		final String name;
+		byte[] ops = new byte[1024];
+		int[] args = new int[3 * 1024];
+		int length;
+
+		Trace(String name) {
+			this.name = name;
+		}
+
+		void add(byte op, int a, int b, int c) {
+			if (length >= ops.length) {
+				ops = Arrays.copyOf(ops, length * 2);
+				args = Arrays.copyOf(args, length * 6);
+			}
+			ops[length] = op;
+			args[length * 3] = a;
+			args[length * 3 + 1] = b;
+			args[length * 3 + 2] = c;
+			length++;
+		}
+	}
+
+	/**
+	 * The minimal queue interface needed to replay a trace. Polled nodes are
+	 * marked as visited, like the path finder does in its field.
+	 */
+	static abstract class ReplayQueue {
+		protected final int[] visitedInGeneration = new int[NODE_COUNT];
+		protected int generation = 1;
+
+		abstract void add(int node, int key);
+
+		abstract void update(int node, int oldKey, int newKey);
+
+		abstract int poll();
+
+		void clear() {
+			generation++;
+		}
+	}
+
+	/**
+	 * Uses the {@link PathFinderQueue}. Like the path finder, outdated entries
+	 * are skipped because their node was already visited.
+	 */
+	static class BucketReplayQueue extends ReplayQueue {
+		private final PathFinderQueue queue = new PathFinderQueue();
+
+		@Override
+		public void add(int node, int key) {
+			queue.add(node, key);
+		}
+
+		@Override
+		public void update(int node, int oldKey, int newKey) {
+			queue.update(node, oldKey, newKey);
+		}
+
+		@Override
+		public int poll() {
+			int node;
+			do {
+				node = queue.poll();
+			} while (visitedInGeneration[node] == generation);
+			visitedInGeneration[node] = generation;
+			return node;
+		}
+
+		@Override
+		public void clear() {
+			super.clear();
+			queue.clear();
+		}
+	}
+
+	/**
+	 * The queue the path finder used before: A ring of 64 distance slots and a
+	 * boxed {@link PriorityQueue} for everything further away.
+	 */
+	static class LegacyReplayQueue extends ReplayQueue {
+		private static final int FAST_DISTANCE_ACCESS = 64;
+		private final int[] distances = new int[NODE_COUNT];
+		private final PriorityQueue<Integer> pq = new PriorityQueue<>(100,
+				(o1, o2) -> distances[o1] - distances[o2]);
+		private final int[][] pqByDistance = new int[FAST_DISTANCE_ACCESS][256];
+		private final int[] pqByDistanceFill = new int[FAST_DISTANCE_ACCESS];
+		private int pqMinDistance = -1;
+
+		@Override
+		public void clear() {
+			super.clear();
+			pq.clear();
+			pqMinDistance = -1;
+			Arrays.fill(pqByDistanceFill, 0);
+		}
+
+		@Override
+		public void update(int n, int oldDistance, int distance) {
+			remove(n, oldDistance);
+			distances[n] = distance;
+			insert(n, distance);
+		}
+
+		@Override
+		public void add(int node, int distance) {
+			distances[node] = distance;
+			insert(node, distance);
+		}
+
+		private void remove(int n, int oldDistance) {
+			if (pqMinDistance >= 0
+					&& oldDistance < pqMinDistance + FAST_DISTANCE_ACCESS) {
+				int slot = oldDistance & FAST_DISTANCE_ACCESS - 1;
+				int[] slotArray = pqByDistance[slot];
+				int fill = pqByDistanceFill[slot];
+				pqByDistanceFill[slot] = fill - 1;
+				for (int i = 0; i < fill - 1; i++) {
+					if (slotArray[i] == n) {
+						slotArray[i] = slotArray[fill - 1];
+						break;
+					}
+				}
+				if (fill == 1 && oldDistance == pqMinDistance) {
+					findNextMin();
+				}
+			} else {
+				pq.remove(n);
+			}
+		}
+
+		private void insert(int node, int distance) {
+			if (pqMinDistance < 0) {
+				pqMinDistance = distance;
+			}
+			while (distance < pqMinDistance) {
+				pqMinDistance--;
+				int slotToEmpty = pqMinDistance & FAST_DISTANCE_ACCESS - 1;
+				for (int i = 0; i < pqByDistanceFill[slotToEmpty]; i++) {
+					pq.offer(pqByDistance[slotToEmpty][i]);
+				}
+				pqByDistanceFill[slotToEmpty] = 0;
+			}
+
+			if (distance < pqMinDistance + FAST_DISTANCE_ACCESS) {
+				int slot = distance & FAST_DISTANCE_ACCESS - 1;
+				int[] slotArray = pqByDistance[slot];
+				int fill = pqByDistanceFill[slot];
+				pqByDistanceFill[slot] = fill + 1;
+				if (slotArray.length <= fill + 1) {
+					slotArray = Arrays.copyOf(slotArray, slotArray.length * 2);
+					pqByDistance[slot] = slotArray;
+				}
+				slotArray[fill] = node;
+			} else {
+				pq.offer(node);
+			}
+		}
+
+		@Override
+		public int poll() {
+			int node = pollFromQueue();
+			visitedInGeneration[node] = generation;
+			return node;
+		}
+
+		private int pollFromQueue() {
+			if (pqMinDistance >= 0) {
+				int slot = pqMinDistance & FAST_DISTANCE_ACCESS - 1;
+				int fill = pqByDistanceFill[slot];
+				int result = pqByDistance[slot][fill - 1];
+				pqByDistanceFill[slot] = fill - 1;
+				if (fill == 1) {
+					findNextMin();
+				}
+				return result;
+			} else {
+				return pq.poll();
+			}
+		}
+
+		private void findNextMin() {
+			int nextMin = -1;
+			int max = pqMinDistance + FAST_DISTANCE_ACCESS;
+			if (!pq.isEmpty()) {
+				max = Math.max(max, distances[pq.peek()] + 1);
+			}
+			for (int d = pqMinDistance; d < max; d++) {
+				pqMinDistance = d;
+				while (!pq.isEmpty() && distances[pq.peek()] == d) {
+					insert(pq.poll(), d);
+				}
+
+				if (pqByDistanceFill[d & FAST_DISTANCE_ACCESS - 1] > 0) {
+					nextMin = d;
+					break;
+				}
+			}
+			pqMinDistance = nextMin;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		Trace[] traces;
+		if (args.length == 0) {
+			traces = new Trace[] { syntheticTrace(new Random(42), 5),
+					syntheticTrace(new Random(42), 100) };
+		} else {
+			traces = new Trace[args.length];
+			for (int i = 0; i < args.length; i++) {
+				traces[i] = readTrace(new File(args[i]));
+			}
+		}
+
+		ReplayQueue legacy = new LegacyReplayQueue();
+		ReplayQueue bucket = new BucketReplayQueue();
+		System.out.println("trace\toperations\tlegacy ms\tbucket ms");
+		for (Trace trace : traces) {
+			double legacyTime = time(legacy, trace);
+			double bucketTime = time(bucket, trace);
+			System.out.printf("%s\t%d\t%.3f\t%.3f%n", trace.name, trace.length,
+					legacyTime, bucketTime);
+		}
+	}
+
+	private static double time(ReplayQueue queue, Trace trace) {
+		long checksum = 0;
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			checksum += replay(queue, trace);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++) {
+			checksum += replay(queue, trace);
+		}
+		long time = System.nanoTime() - start;
+		if (checksum == 42) {
+			// Prevent the JIT from dropping the replay.
+			System.out.println();
+		}
+		return time / 1e6 / RUNS;
+	}
+
+	private static long replay(ReplayQueue queue, Trace trace) {
+		queue.clear();
+		long checksum = 0;
+		byte[] ops = trace.ops;
+		int[] args = trace.args;
+		for (int i = 0; i < trace.length; i++) {
+			switch (ops[i]) {
+			case PathFinderQueueTrace.OP_ADD:
+				queue.add(args[i * 3], args[i * 3 + 1]);
+				break;
+			case PathFinderQueueTrace.OP_UPDATE:
+				queue.update(args[i * 3], args[i * 3 + 1], args[i * 3 + 2]);
+				break;
+			case PathFinderQueueTrace.OP_POLL:
+				checksum += queue.poll();
+				break;
+			default:
+				queue.clear();
+				break;
+			}
+		}
+		return checksum;
+	}
+
+	private static Trace readTrace(File file) throws IOException {
+		Trace trace = new Trace(file.getName());
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)))) {
+			if (in.readInt() != PathFinderQueueTrace.MAGIC) {
+				throw new IOException("Not a queue trace: " + file);
+			}
+			while (true) {
+				byte op;
+				try {
+					op = in.readByte();
+				} catch (EOFException e) {
+					break;
+				}
+				if (op == PathFinderQueueTrace.OP_ADD) {
+					trace.add(op, in.readInt(), in.readInt(), 0);
+				} else if (op == PathFinderQueueTrace.OP_UPDATE) {
+					trace.add(op, in.readInt(), in.readInt(), in.readInt());
+				} else {
+					trace.add(op, 0, 0, 0);
+				}
+			}
+		}
+		return trace;
+	}
+
+	/**
+	 * Runs a Dijkstra search on a random grid that has the same shape as the
+	 * path finder field and records the queue operations. A maximum cost of 5
+	 * is what the mine path finders produce. Larger costs make the queue
+	 * spread over more than the 64 distances the old ring buffer covered.
+	 */
+	static Trace syntheticTrace(Random random, int maxCost) {
+		Trace trace = new Trace("synthetic-cost" + maxCost);
+		int[] distance = new int[NODE_COUNT];
+		boolean[] visited = new boolean[NODE_COUNT];
+		byte[] cost = new byte[NODE_COUNT];
+		for (int i = 0; i < NODE_COUNT; i++) {
+			cost[i] = (byte) (1 + random.nextInt(maxCost));
+		}
+		PathFinderQueue queue = new PathFinderQueue();
+		int start = 128 | 128 << 8 | 16 << 16;
+		distance[start] = 1;
+		queue.add(start, 1);
+		trace.add(PathFinderQueueTrace.OP_ADD, start, 1, 0);
+		int[] offsets = { 1, -1, 1 << 8, -1 << 8, 1 << 16, -1 << 16 };
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			if (visited[node]) {
+				continue;
+			}
+			trace.add(PathFinderQueueTrace.OP_POLL, 0, 0, 0);
+			visited[node] = true;
+			for (int offset : offsets) {
+				int n = node + offset;
+				if (n < 0 || n >= NODE_COUNT || visited[n]
+						|| (n & 0xff) == 0 || (n >> 8 & 0xff) == 0) {
+					continue;
+				}
+				int d = distance[node] + cost[n];
+				if (d > PathFinderQueue.MAX_KEY) {
+					continue;
+				}
+				if (distance[n] == 0) {
+					distance[n] = d;
+					queue.add(n, d);
+					trace.add(PathFinderQueueTrace.OP_ADD, n, d, 0);
+				} else if (d < distance[n]) {
+					queue.update(n, distance[n], d);
+					trace.add(PathFinderQueueTrace.OP_UPDATE, n, distance[n], d);
+					distance[n] = d;
+				}
+			}
+		}
+		return trace;
+	}
+}
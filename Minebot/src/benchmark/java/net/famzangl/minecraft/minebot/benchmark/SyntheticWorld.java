@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.benchmark;
+
+import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.BiomeContainer;
+import net.minecraft.world.biome.Biomes;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.gen.Heightmap;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+
+/**
+ * A generated world that does not need a running game. The chunks are real
+ * Minecraft chunks without a world, so the {@link WorldData} accessors read
+ * them the same way they read the client world.
+ * <p>
+ * The terrain only depends on the seed: Rolling hills of stone with dirt and
+ * grass on top, ores, caves, some lakes and trees. Outside of the generated
+ * chunks, the world is unloaded.
+ * <p>
+ * {@link net.minecraft.util.registry.Bootstrap#register()} needs to be called
+ * before this class is loaded, since {@link WorldData} reads the block ids
+ * when it is initialized.
+ *
+ * @author Michael Zangl
+ */
+public class SyntheticWorld extends WorldData {
+	private static final int SEA_LEVEL = 62;
+
+	private final int sizeChunks;
+	private final Chunk[] chunks;
+	private final BlockPos playerPosition;
+
+	/**
+	 * Generates the world.
+	 * 
+	 * @param seed
+	 *            The seed for the terrain.
+	 * @param sizeChunks
+	 *            The number of chunks in x and z direction, starting at chunk
+	 *            0, 0.
+	 */
+	public SyntheticWorld(long seed, int sizeChunks) {
+		super(null, null);
+		this.sizeChunks = sizeChunks;
+		chunks = new Chunk[sizeChunks * sizeChunks];
+		Biome[] biomes = new Biome[BiomeContainer.BIOMES_SIZE];
+		Arrays.fill(biomes, Biomes.PLAINS);
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = new Chunk(null, new ChunkPos(i % sizeChunks, i
+					/ sizeChunks), new BiomeContainer(biomes));
+		}
+		generate(new Random(seed));
+		for (Chunk chunk : chunks) {
+			Heightmap.updateChunkHeightmaps(chunk, EnumSet.of(
+					Heightmap.Type.WORLD_SURFACE,
+					Heightmap.Type.MOTION_BLOCKING));
+		}
+		int center = sizeChunks * 8;
+		playerPosition = new BlockPos(center, getSurface(center, center) + 1,
+				center);
+		// Stand on solid ground.
+		setBlock(center, playerPosition.getY() - 1, center,
+				Blocks.GRASS_BLOCK.getDefaultState());
+		for (int y = playerPosition.getY(); y < playerPosition.getY() + 3; y++) {
+			setBlock(center, y, center, Blocks.AIR.getDefaultState());
+		}
+	}
+
+	private void generate(Random random) {
+		double phaseX = random.nextDouble() * Math.PI * 2;
+		double phaseZ = random.nextDouble() * Math.PI * 2;
+		int size = sizeChunks * 16;
+		int[] heights = new int[size * size];
+		for (int z = 0; z < size; z++) {
+			for (int x = 0; x < size; x++) {
+				int height = (int) (SEA_LEVEL + 4 + 8
+						* Math.sin(x / 23.0 + phaseX) + 6
+						* Math.sin(z / 17.0 + phaseZ) + 3
+						* Math.sin((x + z) / 11.0));
+				heights[z * size + x] = height;
+				generateColumn(random, x, z, height);
+			}
+		}
+		generateCaves(random, heights);
+		for (int z = 2; z < size - 2; z++) {
+			for (int x = 2; x < size - 2; x++) {
+				int height = heights[z * size + x];
+				if (height > SEA_LEVEL && random.nextInt(100) == 0) {
+					generateTree(random, x, height + 1, z);
+				}
+			}
+		}
+	}
+
+	private void generateColumn(Random random, int x, int z, int height) {
+		setBlock(x, 0, z, Blocks.BEDROCK.getDefaultState());
+		for (int y = 1; y <= height; y++) {
+			BlockState state;
+			if (y < height - 3) {
+				state = getStone(random, y);
+			} else if (y < height || height <= SEA_LEVEL) {
+				state = Blocks.DIRT.getDefaultState();
+			} else {
+				state = Blocks.GRASS_BLOCK.getDefaultState();
+			}
+			setBlock(x, y, z, state);
+		}
+		for (int y = height + 1; y <= SEA_LEVEL; y++) {
+			setBlock(x, y, z, Blocks.WATER.getDefaultState());
+		}
+	}
+
+	private BlockState getStone(Random random, int y) {
+		int ore = random.nextInt(1000);
+		if (ore < 10) {
+			return Blocks.COAL_ORE.getDefaultState();
+		} else if (ore < 16 && y < 64) {
+			return Blocks.IRON_ORE.getDefaultState();
+		} else if (ore < 17 && y < 32) {
+			return Blocks.GOLD_ORE.getDefaultState();
+		} else if (ore < 18 && y < 16) {
+			return Blocks.DIAMOND_ORE.getDefaultState();
+		} else if (ore < 40) {
+			return Blocks.GRAVEL.getDefaultState();
+		} else {
+			return Blocks.STONE.getDefaultState();
+		}
+	}
+
+	/**
+	 * Digs tunnels made of air spheres below the surface.
+	 */
+	private void generateCaves(Random random, int[] heights) {
+		int size = sizeChunks * 16;
+		for (int cave = 0; cave < sizeChunks * sizeChunks / 2; cave++) {
+			double x = random.nextInt(size);
+			double z = random.nextInt(size);
+			double y = 8 + random.nextInt(40);
+			double yaw = random.nextDouble() * Math.PI * 2;
+			for (int step = 0; step < 40; step++) {
+				int radius = 1 + random.nextInt(3);
+				for (int dx = -radius; dx <= radius; dx++) {
+					for (int dy = -radius; dy <= radius; dy++) {
+						for (int dz = -radius; dz <= radius; dz++) {
+							int bx = (int) x + dx;
+							int by = (int) y + dy;
+							int bz = (int) z + dz;
+							if (dx * dx + dy * dy + dz * dz <= radius * radius
+									&& by > 0 && bx >= 0 && bx < size
+									&& bz >= 0 && bz < size
+									&& by < heights[bz * size + bx] - 4) {
+								setBlock(bx, by, bz,
+										Blocks.CAVE_AIR.getDefaultState());
+							}
+						}
+					}
+				}
+				yaw += (random.nextDouble() - .5) * .6;
+				x += Math.cos(yaw) * 2;
+				z += Math.sin(yaw) * 2;
+				y += (random.nextDouble() - .5) * 1.5;
+			}
+		}
+	}
+
+	private void generateTree(Random random, int x, int y, int z) {
+		int height = 4 + random.nextInt(3);
+		for (int dy = height - 2; dy <= height; dy++) {
+			int radius = dy == height ? 1 : 2;
+			for (int dx = -radius; dx <= radius; dx++) {
+				for (int dz = -radius; dz <= radius; dz++) {
+					setBlock(x + dx, y + dy, z + dz,
+							Blocks.OAK_LEAVES.getDefaultState());
+				}
+			}
+		}
+		for (int dy = 0; dy < height; dy++) {
+			setBlock(x, y + dy, z, Blocks.OAK_LOG.getDefaultState());
+		}
+	}
+
+	private int getSurface(int x, int z) {
+		Chunk chunk = getChunk(x >> 4, z >> 4);
+		for (int y = 255; y > 0; y--) {
+			if (!chunk.getBlockState(new BlockPos(x, y, z)).isAir()) {
+				return y;
+			}
+		}
+		return 0;
+	}
+
+	private void setBlock(int x, int y, int z, BlockState state) {
+		Chunk chunk = getChunk(x >> 4, z >> 4);
+		if (chunk == null || y < 0 || y >= 256) {
+			return;
+		}
+		ChunkSection[] sections = chunk.getSections();
+		ChunkSection section = sections[y >> 4];
+		if (section == null) {
+			section = new ChunkSection(y >> 4 << 4);
+			sections[y >> 4] = section;
+		}
+		section.setBlockState(x & 15, y & 15, z & 15, state);
+	}
+
+	/**
+	 * @param chunkX
+	 *            The chunk x coordinate
+	 * @param chunkZ
+	 *            The chunk z coordinate
+	 * @return The chunk or <code>null</code> if it was not generated.
+	 */
+	public Chunk getChunk(int chunkX, int chunkZ) {
+		if (chunkX < 0 || chunkX >= sizeChunks || chunkZ < 0
+				|| chunkZ >= sizeChunks) {
+			return null;
+		}
+		return chunks[chunkZ * sizeChunks + chunkX];
+	}
+
+	public int getSizeChunks() {
+		return sizeChunks;
+	}
+
+	@Override
+	protected ChunkAccessor generateChunkAccessor(int chunkX, int chunkZ) {
+		Chunk chunk = getChunk(chunkX, chunkZ);
+		return chunk == null ? null : new ChunkAccessorUnmodified(chunk);
+	}
+
+	@Override
+	public BlockPos getPlayerPosition() {
+		return playerPosition;
+	}
+
+	@Override
+	public Vec3d getExactPlayerPosition() {
+		return new Vec3d(playerPosition.getX() + .5, playerPosition.getY(),
+				playerPosition.getZ() + .5);
+	}
+
+	@Override
+	public long getWorldTime() {
+		return 0;
+	}
+}
@@ -24,6 +24,8 @@ import net.famzangl.minecraft.minebot.ai.net.MinebotNetHandler;
 import net.famzangl.minecraft.minebot.ai.net.NetworkHelper;
 import net.famzangl.minecraft.minebot.ai.path.world.BlockBoundsCache;
 import net.famzangl.minecraft.minebot.ai.profiler.InterceptingProfiler;
+import net.famzangl.minecraft.minebot.ai.profiler.TickProfiler;
+import net.famzangl.minecraft.minebot.ai.profiler.TickProfiler.Phase;
 import net.famzangl.minecraft.minebot.ai.render.BuildMarkerRenderer;
 import net.famzangl.minecraft.minebot.ai.render.PosMarkerRenderer;
 import net.famzangl.minecraft.minebot.ai.strategy.*;
@@ -123,6 +125,8 @@ public class AIController extends AIHelper implements IAIControllable {
 		AIChatController.getRegistry().setControlled(this);
 
 		networkHelper = MinebotNetHandler.inject(getMinecraft().getConnection());
+		getBlockIndex().clear();
+		networkHelper.addChunkChangeListener(getBlockIndex());
 		profilerHelper = InterceptingProfiler.inject(getMinecraft());
 		// Hook into
 		// net.minecraft.client.renderer.RenderGlobal.drawBlockDamageTexture(Tessellator,
@@ -152,10 +156,13 @@ public class AIController extends AIHelper implements IAIControllable {
 
 		LOGGER.debug(MARKER_STRATEGY, "Strategy game tick. World time: "
 				+ getMinecraft().world.getGameTime());
+		long tickStart = TickProfiler.start();
 		testUngrabMode();
 		invalidateObjectMouseOver();
 		resetAllInputs();
 		invalidateChunkCache();
+		// The changes of the last tick are applied now.
+		getBlockIndex().applyChanges();
 
 		if (ungrab.isPressed()) {
 			doUngrab = true;
@@ -211,9 +218,12 @@ public class AIController extends AIHelper implements IAIControllable {
 		LOGGER.debug(MARKER_STRATEGY, "Strategy game tick done");
 
 		if (activeMapReader != null) {
+			long mapStart = TickProfiler.start();
 			activeMapReader.tick(this);
+			TickProfiler.end(Phase.MAP_READER, activeMapReader.getClass(),
+					mapStart);
 		}
-
+		TickProfiler.end(Phase.TICK, AIController.class, tickStart);
 	}
 
 	public void onUseHoe(UseHoeEvent evt) {
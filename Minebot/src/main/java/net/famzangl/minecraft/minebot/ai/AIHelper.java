@@ -23,9 +23,12 @@ import net.famzangl.minecraft.minebot.ai.net.NetworkHelper;
 import net.famzangl.minecraft.minebot.ai.path.world.BlockBounds;
 import net.famzangl.minecraft.minebot.ai.path.world.Pos;
 import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+import net.famzangl.minecraft.minebot.ai.scanner.BlockIndex;
 import net.famzangl.minecraft.minebot.ai.strategy.AIStrategy;
 import net.famzangl.minecraft.minebot.ai.task.BlockHalf;
+import net.famzangl.minecraft.minebot.ai.tools.DigCostModel;
 import net.famzangl.minecraft.minebot.ai.tools.ToolRater;
+import net.famzangl.minecraft.minebot.ai.tools.ToolRatingCache;
 import net.famzangl.minecraft.minebot.ai.utils.RandUtils;
 import net.famzangl.minecraft.minebot.build.BuildManager;
 import net.famzangl.minecraft.minebot.map.MapReader;
@@ -93,6 +96,10 @@ public abstract class AIHelper {
 	
 	private final StatsManager stats = new StatsManager();
 
+	private final BlockIndex blockIndex = new BlockIndex();
+
+	private final DigCostModel digCostModel = new DigCostModel();
+
 	public AIHelper() {
 		for (KeyType key : KeyType.values()) {
 			keys.put(key, new KeyboardInputController(mc, key));
@@ -617,7 +624,13 @@ public abstract class AIHelper {
 		if (bestRatingSlot < 0 || bestRatingSlot >= 9) {
 			bestRatingSlot = 0;
 		}
-		int block = pos == null ? -1 : getWorld().getBlockStateId(pos);
+		if (pos != null) {
+			ToolRatingCache cache = rater.getRatingCache();
+			cache.update(getMinecraft().player.inventory);
+			return cache.getBestTool(getWorld().getBlockStateId(pos),
+					bestRatingSlot);
+		}
+		int block = -1;
 		float bestRating = rater.rateTool(
 				getMinecraft().player.inventory.getStackInSlot(bestRatingSlot), block);
 		for (int i = 0; i < 9; ++i) {
@@ -1059,4 +1072,24 @@ public abstract class AIHelper {
 		return stats;
 	}
 
+	/**
+	 * @return The index of chests, furnaces, ... that is kept while the game
+	 *         runs.
+	 */
+	public BlockIndex getBlockIndex() {
+		return blockIndex;
+	}
+
+	/**
+	 * Gets the cost of digging through blocks with the current hotbar. Needs
+	 * to be called on the client thread.
+	 * 
+	 * @return The cost for each block state id.
+	 * @see DigCostModel
+	 */
+	public int[] getDigCosts() {
+		return digCostModel.getCosts(MinebotSettings.getSettings()
+				.getToolRater(), getMinecraft().player.inventory);
+	}
+
 }
@@ -16,6 +16,9 @@
  *******************************************************************************/
 package net.famzangl.minecraft.minebot.ai;
 
+import net.famzangl.minecraft.minebot.ai.net.BlockChangeQueue;
+import net.famzangl.minecraft.minebot.ai.net.BlockChangeQueue.BlockChangeVisitor;
+import net.famzangl.minecraft.minebot.ai.net.ChunkListener;
 import net.minecraft.util.math.BlockPos;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -23,9 +26,7 @@ import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
 
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.LinkedList;
-import java.util.PriorityQueue;
 
 /**
  * The basic path finding algorithm.
@@ -33,7 +34,7 @@ import java.util.PriorityQueue;
  * @author michael
  * 
  */
-public class PathFinderField implements Comparator<Integer> {
+public class PathFinderField {
 	private static final Marker MARKER_PATH = MarkerManager.getMarker("path");
 	private static final Logger LOGGER = LogManager.getLogger(AIHelper.class);
 
@@ -44,22 +45,34 @@ public class PathFinderField implements Comparator<Integer> {
 	private static final int FIELD_SIZE = (1 << 16) * Y_LEVEL;
 	protected static final int HORIZONTAL_SEARCH_DISTANCE = SIZE_X_Z / 2;
 	protected static final int VERTICAL_SEARCH_DISTANCE = Y_LEVEL / 2;
-
-	// Needs to be more than normal distance spread. Power of 2.
-	private static int FAST_DISTANCE_ACCESS = 64;
+	/**
+	 * How far a neighbour may be above or below a node. Neighbours are always
+	 * at most one block away horizontally.
+	 */
+	private static final int MAX_STEP_Y = 3;
 
 	private final PathFinderFieldData data = new PathFinderFieldData();
 	private Dest currentDest = null;
-	// Priority queue for everything that is more than max distance spread.
-	private final PriorityQueue<Integer> pq = new PriorityQueue<Integer>(100,
-			this);
-
-	private final int[][] pqByDistance = new int[FAST_DISTANCE_ACCESS][256];
-	private final int[] pqByDistanceFill = new int[FAST_DISTANCE_ACCESS];
-	int pqMinDistance = -1;
-
-	// private int[] pqArray = new int[256];
-	// private int pqSize = 0;
+	/**
+	 * The open nodes, ordered by distance. Acquired together with the field.
+	 */
+	private PathFinderQueue pq;
+	/**
+	 * Only set if queue traces should be recorded.
+	 */
+	private PathFinderQueueTrace trace;
+	/**
+	 * Block changes that happened since the field was computed. They are
+	 * applied before the search continues.
+	 */
+	private final BlockChangeQueue blockChanges = new BlockChangeQueue();
+	private final FieldRepair repair = new FieldRepair();
+	/**
+	 * The nodes that were visited, so that they can be rated again for the
+	 * next search. May contain nodes that are not visited any more.
+	 */
+	private int[] visitedNodes = new int[1024];
+	private int visitedCount;
 
 	private static int FIELD_VISITED_MASK = 0x10000000;
 	private static int FIELD_IN_QUEUE_MASK = 0x20000000;
@@ -72,6 +85,10 @@ public class PathFinderField implements Comparator<Integer> {
 	private static int FIELD_MOVEFROM_Y_SHIFT = 20;
 	private static int FIELD_MOVEFROM_Z_MASK = 0x0f000000;
 	private static int FIELD_MOVEFROM_Z_SHIFT = 24;
+	/**
+	 * Only used while repairing the field after a block change.
+	 */
+	private static int FIELD_INVALID_MASK = 0x80000000;
 
 	private boolean isRunning = false;
 	/**
@@ -79,65 +96,95 @@ public class PathFinderField implements Comparator<Integer> {
 	 * 
 	 * 
 	 */
-	private int[] field;
+	private PathFinderFieldStorage field;
 	private long startTime;
 	protected int statsVisited;
+	/**
+	 * Set as soon as the field was repaired. The queue may contain entries
+	 * with wrong keys then.
+	 */
+	private boolean repaired;
+	/**
+	 * Set if the destination ratings of the visited nodes need to be computed
+	 * again before the search continues.
+	 */
+	private boolean ratingsOutdated;
 
 	public PathFinderField() {
 	}
 
+	/**
+	 * The field is a window that wraps around: The index of a block only
+	 * depends on its world coordinates, not on the window offset. Moving the
+	 * window only changes the offset, every block that stays inside keeps its
+	 * node id.
+	 */
 	protected final int getIndexForBlock(int x, int y, int z) {
-		return x - data.offsetX & SIZE_X_Z - 1
-				| (z - data.offsetZ & SIZE_X_Z - 1) << 8
-				| (y - data.offsetY & Y_LEVEL - 1) << 16;
+		return x & SIZE_X_Z - 1
+				| (z & SIZE_X_Z - 1) << 8
+				| (y & Y_LEVEL - 1) << 16;
 	}
 
 	protected final int getIndexForBlockSafe(int x, int y, int z) {
 		int dx = x - data.offsetX;
 		int dz = z - data.offsetZ;
 		int dy = y - data.offsetY;
-		return dx == (dx & SIZE_X_Z - 1) && dz == (dz & SIZE_X_Z - 1) && dy == (dy & Y_LEVEL - 1) ? dx | (dz << 8) | (dy << 16) : -1;
+		return dx == (dx & SIZE_X_Z - 1) && dz == (dz & SIZE_X_Z - 1) && dy == (dy & Y_LEVEL - 1) ? getIndexForBlock(x, y, z) : -1;
 	}
 
 	protected final int getX(int currentNode) {
-		return (currentNode & SIZE_X_Z - 1) + data.offsetX;
+		return (currentNode - data.offsetX & SIZE_X_Z - 1) + data.offsetX;
 	}
 
 	protected final int getY(int currentNode) {
-		return (currentNode >> 16 & Y_LEVEL - 1) + data.offsetY;
+		return ((currentNode >> 16) - data.offsetY & Y_LEVEL - 1) + data.offsetY;
 	}
 
 	protected final int getZ(int currentNode) {
-		return (currentNode >> 8 & SIZE_X_Z - 1) + data.offsetZ;
+		return ((currentNode >> 8) - data.offsetZ & SIZE_X_Z - 1) + data.offsetZ;
+	}
+
+	/**
+	 * Get the listener that should receive all block changes while this path
+	 * finder is used. Blocks that changed since the field was computed are then
+	 * repaired instead of continuing on outdated data.
+	 * 
+	 * @return The listener.
+	 */
+	public ChunkListener getBlockChangeListener() {
+		return blockChanges;
 	}
 
 	private boolean isVisited(int blockIndex) {
-		return (field[blockIndex] & FIELD_VISITED_MASK) == FIELD_VISITED_MASK;
+		return (field.get(blockIndex) & FIELD_VISITED_MASK) == FIELD_VISITED_MASK;
 	}
 
 	private void setVisited(int blockIndex) {
-		field[blockIndex] |= FIELD_VISITED_MASK;
+		field.or(blockIndex, FIELD_VISITED_MASK);
+	}
+
+	private void clearVisited(int blockIndex) {
+		field.andNot(blockIndex, FIELD_VISITED_MASK);
 	}
 
 	private boolean isInQueue(int blockIndex) {
-		return (field[blockIndex] & FIELD_IN_QUEUE_MASK) != 0;
+		return (field.get(blockIndex) & FIELD_IN_QUEUE_MASK) != 0;
 	}
 
 	private void setInQueue(int blockIndex) {
-		field[blockIndex] |= FIELD_IN_QUEUE_MASK;
+		field.or(blockIndex, FIELD_IN_QUEUE_MASK);
 	}
 
 	private int getDistance(int blockIndex) {
-		int inField = field[blockIndex];
+		int inField = field.get(blockIndex);
 		return (inField & FIELD_DISTANCE_SET_MASK) == 0 ? Integer.MAX_VALUE
 				: (inField & FIELD_DISTANCE_MASK) >> FIELD_DISTANCE_SHIFT;
 	}
 
 	private void setDistance(int blockIndex, int distance) {
-		field[blockIndex] &= ~FIELD_DISTANCE_MASK;
-		field[blockIndex] |= distance << FIELD_DISTANCE_SHIFT
-				& FIELD_DISTANCE_MASK;
-		field[blockIndex] |= FIELD_DISTANCE_SET_MASK;
+		int inField = field.get(blockIndex) & ~FIELD_DISTANCE_MASK;
+		inField |= distance << FIELD_DISTANCE_SHIFT & FIELD_DISTANCE_MASK;
+		field.set(blockIndex, inField | FIELD_DISTANCE_SET_MASK);
 	}
 
 	private void setMoveFrom(int newIndex, int currentNode) {
@@ -147,17 +194,18 @@ public class PathFinderField implements Comparator<Integer> {
 		final int oldx = getX(currentNode);
 		final int oldy = getY(currentNode);
 		final int oldz = getZ(currentNode);
-		field[newIndex] &= ~(FIELD_MOVEFROM_X_MASK | FIELD_MOVEFROM_Y_MASK | FIELD_MOVEFROM_Z_MASK);
-		field[newIndex] |= newx - oldx << FIELD_MOVEFROM_X_SHIFT
+		int inField = field.get(newIndex) & ~(FIELD_MOVEFROM_X_MASK | FIELD_MOVEFROM_Y_MASK | FIELD_MOVEFROM_Z_MASK);
+		inField |= newx - oldx << FIELD_MOVEFROM_X_SHIFT
 				& FIELD_MOVEFROM_X_MASK;
-		field[newIndex] |= newy - oldy << FIELD_MOVEFROM_Y_SHIFT
+		inField |= newy - oldy << FIELD_MOVEFROM_Y_SHIFT
 				& FIELD_MOVEFROM_Y_MASK;
-		field[newIndex] |= newz - oldz << FIELD_MOVEFROM_Z_SHIFT
+		inField |= newz - oldz << FIELD_MOVEFROM_Z_SHIFT
 				& FIELD_MOVEFROM_Z_MASK;
+		field.set(newIndex, inField);
 	}
 
 	private int getFromDirectionMasked(int blockIndex, int mask, int shift) {
-		int res = (field[blockIndex] & mask) >> shift;
+		int res = (field.get(blockIndex) & mask) >> shift;
 		final int signBit = (mask >> shift) + 1 >> 1;
 		if ((res & signBit) != 0) {
 			res |= ~(mask >> shift);
@@ -180,16 +228,6 @@ public class PathFinderField implements Comparator<Integer> {
 				FIELD_MOVEFROM_Z_SHIFT);
 	}
 
-	@Override
-	public int compare(Integer o1, Integer o2) {
-		int c1 = getDistance(o1) - getDistance(o2);
-		// if (c1 == 0) {
-		// return o1 - o2;
-		// } else {
-		return c1;
-		// }
-	}
-
 	private static class Dest implements Comparable<Dest> {
 		int destNode;
 		float destDistanceRating;
@@ -212,24 +250,52 @@ public class PathFinderField implements Comparator<Integer> {
 	}
 
 	protected boolean searchSomethingAround(int cx, int cy, int cz) {
-		if (data.offsetX != cx - SIZE_X_Z / 2
+		// The field of the last search is kept, a new one can start from it.
+		// A running search is only moved to the new start if its ratings do
+		// not depend on where the search started.
+		boolean keepField = field != null && (isRunning || isFieldReusable());
+		if (keepField && (data.offsetX != cx - SIZE_X_Z / 2
 				|| data.offsetY != cy - Y_LEVEL / 2
-				|| data.offsetZ != cz - SIZE_X_Z / 2) {
+				|| data.offsetZ != cz - SIZE_X_Z / 2)
+				&& !(isFieldReusable() && reroot(cx, cy, cz))) {
+			LOGGER.debug(MARKER_PATH,
+					"Path finding center changed to a node that is not settled. Marking for restart.");
+			keepField = false;
+		}
+		if (keepField && !blockChanges.isEmpty() && !repairField(cx, cy, cz)) {
 			LOGGER.debug(MARKER_PATH,
-					"Path finding center changed. Marking for restart.");
-			isRunning = false;
+					"Too many block changes. Marking for restart.");
+			keepField = false;
 		}
-		if (!isRunning) {
-			LOGGER.debug(MARKER_PATH, "Restart path finder.");
-			field = new int[FIELD_SIZE];
+		if (keepField) {
+			if (ratingsOutdated) {
+				rateVisitedNodes();
+			}
+			isRunning = true;
+		} else {
+			if (field == null) {
+				field = PathFinderFieldStorage.acquire(FIELD_SIZE);
+				pq = PathFinderQueue.acquire();
+				trace = PathFinderQueueTrace.startIfEnabled();
+			} else {
+				field.clear();
+			}
+			if (LOGGER.isDebugEnabled(MARKER_PATH)) {
+				LOGGER.debug(MARKER_PATH, "Restart path finder. Field storages allocated: "
+						+ PathFinderFieldStorage.getStatsAllocated() + ", reused: "
+						+ PathFinderFieldStorage.getStatsReused());
+			}
 			data.offsetX = cx - SIZE_X_Z / 2;
 			data.offsetY = cy - Y_LEVEL / 2;
 			data.offsetZ = cz - SIZE_X_Z / 2;
 			pqClear();
+			// The new search sees the current world.
+			blockChanges.clear();
+			repaired = false;
 			final int start = getIndexForBlock(cx, cy, cz);
 			setDistance(start, 1);
 			setInQueue(start);
-			pqAdd(start, 1);
+			pqAdd(start, 1, heuristic(start));
 			final float startRating = rateDestination(start);
 			if (startRating >= 0) {
 				currentDest = new Dest(start, startRating);
@@ -237,18 +303,26 @@ public class PathFinderField implements Comparator<Integer> {
 				currentDest = null;
 			}
 			statsVisited = 0;
+			visitedCount = 0;
+			ratingsOutdated = false;
 			isRunning = true;
 		}
 		LOGGER.trace(MARKER_PATH, "Start path finding.");
 		startTime = System.currentTimeMillis();
 		long iteration = 0;
+		boolean finished = false;
 		while (!pqEmpty()
 				&& ((iteration++ & 0xff) != 0 || hasTimeLeft(startTime))) {
 			final int currentNode = pqPoll();
+			if (currentNode < 0) {
+				break;
+			}
 			final int currentDistance = getDistance(currentNode);
 			if (currentDest != null
-					&& currentDistance + 1 > currentDest.destDistanceRating) {
-				pqClear();
+					&& currentDistance + heuristic(currentNode) + 1 > currentDest.destDistanceRating) {
+				// Keep the node for the next search on this field.
+				pqAdd(currentNode, currentDistance, heuristic(currentNode));
+				finished = true;
 				break;
 			}
 			final float rating = rateDestination(currentNode);
@@ -268,10 +342,12 @@ public class PathFinderField implements Comparator<Integer> {
 						+ currentDistance;
 				if (isVisited(n)) {
 					if (distance < getDistance(n)) {
-						LOGGER.error(
-								MARKER_PATH,
-								"A shorter path was found. This should not happen. Node: {}.",
-								n);
+						// Only happens after the field was repaired. The node
+						// needs to be visited again to pass on the distance.
+						setDistance(n, distance);
+						setMoveFrom(n, currentNode);
+						clearVisited(n);
+						pqAdd(n, distance, heuristic(n));
 					}
 					continue;
 				}
@@ -279,30 +355,32 @@ public class PathFinderField implements Comparator<Integer> {
 					setDistance(n, distance);
 					setMoveFrom(n, currentNode);
 					setInQueue(n);
-					pqAdd(n, distance);
+					pqAdd(n, distance, heuristic(n));
 				} else {
 					int oldDistance = getDistance(n);
 					if (distance < oldDistance) {
 						setDistance(n, distance);
 						setMoveFrom(n, currentNode);
-						pqUpdate(n, oldDistance, distance);
+						pqUpdate(n, oldDistance, distance, heuristic(n));
 					}
 				}
 			}
 			setVisited(currentNode);
+			addVisited(currentNode);
 			statsVisited++;
 		}
-		if (pqEmpty()) {
+		if (finished || pqEmpty()) {
 			if (currentDest != null) {
 				if (LOGGER.isDebugEnabled(MARKER_PATH)) {
 					LOGGER.debug(MARKER_PATH, "Path found to node " + currentDest + ". Planing path from " +
-							cx + "," + cy + "," + cz + " to " + getX(currentDest.destNode) + "," + getY(currentDest.destNode) + "," + getZ(currentDest.destNode));
+							cx + "," + cy + "," + cz + " to " + getX(currentDest.destNode) + "," + getY(currentDest.destNode) + "," + getZ(currentDest.destNode)
+							+ ". Positions visited: " + statsVisited);
 				}
 				planPathTo(currentDest.destNode, cx, cy, cz);
-				terminated();
+				searchFinished();
 			} else {
 				LOGGER.debug(MARKER_PATH, "Could not find any destination");
-				terminated();
+				searchFinished();
 				noPathFound();
 			}
 			return true;
@@ -316,25 +394,467 @@ public class PathFinderField implements Comparator<Integer> {
 		}
 	}
 
-	private void pqStats() {
-		int min = Integer.MAX_VALUE;
-		int max = 0;
-		for (Integer i : pq) {
-			min = Math.min(min, getDistance(i));
-			max = Math.max(max, getDistance(i));
+	/**
+	 * Moves the start of the running search to a node it already settled and
+	 * moves the window with it.
+	 * <p>
+	 * The nodes that were reached through the new start keep their paths. Their
+	 * distances are reduced by the distance of the new start, which is exact:
+	 * A shorter path from the new start could have been used from the old start,
+	 * too. All other nodes are dropped. Kept nodes next to a dropped node or to
+	 * the part of the window that scrolled in are put back into the queue, so
+	 * the search continues at the border of the kept subtree.
+	 *
+	 * @return <code>false</code> if the search needs to be restarted instead.
+	 */
+	private boolean reroot(int cx, int cy, int cz) {
+		int start = getIndexForBlockSafe(cx, cy, cz);
+		if (start < 0 || !isVisited(start)) {
+			return false;
+		}
+		int startDistance = getDistance(start);
+		// Distances are only final below the smallest key in the queue. After
+		// a repair, visited nodes may still wait for a shorter distance.
+		int settledKey = pq.isEmpty() ? Integer.MAX_VALUE : pq.peekKey();
+		if (startDistance + heuristic(start) >= settledKey) {
+			return false;
+		}
+		int newOffsetX = cx - SIZE_X_Z / 2;
+		int newOffsetY = cy - Y_LEVEL / 2;
+		int newOffsetZ = cz - SIZE_X_Z / 2;
+
+		// Collect the subtree of the new start that is inside the new window.
+		// The invalid flag marks the kept nodes.
+		repair.reset();
+		field.or(start, FIELD_INVALID_MASK);
+		repair.addInvalid(start);
+		for (int i = 0; i < repair.invalidCount; i++) {
+			int parent = repair.invalid[i];
+			int px = getX(parent);
+			int py = getY(parent);
+			int pz = getZ(parent);
+			for (int x = px - 1; x <= px + 1; x++) {
+				for (int y = py - MAX_STEP_Y; y <= py + MAX_STEP_Y; y++) {
+					for (int z = pz - 1; z <= pz + 1; z++) {
+						int child = getIndexForBlockSafe(x, y, z);
+						if (child >= 0
+								&& isInWindow(x, y, z, newOffsetX, newOffsetY, newOffsetZ)
+								&& (field.get(child) & (FIELD_INVALID_MASK | FIELD_DISTANCE_SET_MASK)) == FIELD_DISTANCE_SET_MASK
+								&& x - getFromDirectionX(child) == px
+								&& y - getFromDirectionY(child) == py
+								&& z - getFromDirectionZ(child) == pz) {
+							field.or(child, FIELD_INVALID_MASK);
+							repair.addInvalid(child);
+						}
+					}
+				}
+			}
+		}
+
+		// Compute the new values while the old field is still there.
+		int[] values = new int[repair.invalidCount];
+		for (int i = 0; i < repair.invalidCount; i++) {
+			int node = repair.invalid[i];
+			int value = field.get(node);
+			int distance = getDistance(node);
+			if ((value & FIELD_VISITED_MASK) != 0
+					&& (distance + heuristic(node) >= settledKey
+							|| isOnKeptBorder(node, newOffsetX, newOffsetY, newOffsetZ))) {
+				value &= ~FIELD_VISITED_MASK;
+			}
+			values[i] = value & ~(FIELD_INVALID_MASK | FIELD_DISTANCE_MASK)
+					| distance - startDistance + 1 << FIELD_DISTANCE_SHIFT & FIELD_DISTANCE_MASK;
+		}
+		// The new start is not reached from anywhere.
+		values[0] &= ~(FIELD_MOVEFROM_X_MASK | FIELD_MOVEFROM_Y_MASK | FIELD_MOVEFROM_Z_MASK);
+
+		field.clear();
+		pqClear();
+		data.offsetX = newOffsetX;
+		data.offsetY = newOffsetY;
+		data.offsetZ = newOffsetZ;
+		int reopened = 0;
+		visitedCount = 0;
+		for (int i = 0; i < repair.invalidCount; i++) {
+			int node = repair.invalid[i];
+			field.set(node, values[i]);
+			if ((values[i] & FIELD_VISITED_MASK) == 0) {
+				pqAdd(node, getDistance(node), heuristic(node));
+				reopened++;
+			} else {
+				addVisited(node);
+			}
+		}
+		// All distances changed.
+		currentDest = null;
+		ratingsOutdated = true;
+		repaired = false;
+		LOGGER.debug(MARKER_PATH, "Moved path finder start. Kept: {}, reopened: {}",
+				repair.invalidCount, reopened);
+		return true;
+	}
+
+	/**
+	 * Checks if a kept node may have a neighbour that is not kept. The kept
+	 * nodes are marked invalid and the field still uses the old offsets.
+	 */
+	private boolean isOnKeptBorder(int node, int newOffsetX, int newOffsetY,
+			int newOffsetZ) {
+		int nx = getX(node);
+		int ny = getY(node);
+		int nz = getZ(node);
+		for (int x = nx - 1; x <= nx + 1; x++) {
+			for (int y = ny - MAX_STEP_Y; y <= ny + MAX_STEP_Y; y++) {
+				for (int z = nz - 1; z <= nz + 1; z++) {
+					if (!isInWindow(x, y, z, newOffsetX, newOffsetY, newOffsetZ)) {
+						continue;
+					}
+					int neighbour = getIndexForBlockSafe(x, y, z);
+					if (neighbour < 0) {
+						// Scrolled in, never looked at.
+						return true;
+					}
+					if ((field.get(neighbour) & (FIELD_INVALID_MASK | FIELD_DISTANCE_SET_MASK)) == FIELD_DISTANCE_SET_MASK) {
+						// Reached, but not through the new start.
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isInWindow(int x, int y, int z, int offsetX,
+			int offsetY, int offsetZ) {
+		int dx = x - offsetX;
+		int dz = z - offsetZ;
+		int dy = y - offsetY;
+		return dx == (dx & SIZE_X_Z - 1) && dz == (dz & SIZE_X_Z - 1)
+				&& dy == (dy & Y_LEVEL - 1);
+	}
+
+	/**
+	 * Applies the queued block changes to the field.
+	 * <p>
+	 * All nodes that may see one of the changed blocks are invalidated together
+	 * with every node that was reached through them. Each visited node next to
+	 * an invalidated one or next to a changed node that was never reached is
+	 * then added to the queue again, so the search expands into the changed
+	 * region from its border. Distances that get smaller are passed on by
+	 * visiting nodes again.
+	 * 
+	 * @return <code>false</code> if the search needs to be restarted instead.
+	 */
+	private boolean repairField(int cx, int cy, int cz) {
+		repair.reset();
+		if (!blockChanges.drainTo(repair)) {
+			return false;
+		}
+		if (repair.seedCount == 0 && repair.unreachedCount == 0) {
+			return true;
 		}
-		LOGGER.debug(MARKER_PATH, "Current priority queue range: " + min + " to " + max);
+		repaired = true;
+		// Invalidate the seeds and everything reached through them.
+		int start = getIndexForBlock(cx, cy, cz);
+		boolean startChanged = false;
+		for (int i = 0; i < repair.seedCount; i++) {
+			if (repair.seeds[i] == start) {
+				startChanged = true;
+			} else {
+				invalidateSubtree(repair.seeds[i]);
+			}
+		}
+		int reopened = 0;
+		if (startChanged) {
+			reopened += repairStart(start);
+		}
+		for (int i = 0; i < repair.invalidCount; i++) {
+			reopened += reopenPredecessors(repair.invalid[i]);
+		}
+		for (int i = 0; i < repair.unreachedCount; i++) {
+			reopened += reopenPredecessors(repair.unreached[i]);
+		}
+		if (currentDest != null
+				&& (field.get(currentDest.destNode) & FIELD_INVALID_MASK) != 0) {
+			currentDest = null;
+			ratingsOutdated = true;
+		}
+		for (int i = 0; i < repair.invalidCount; i++) {
+			field.set(repair.invalid[i], 0);
+		}
+		LOGGER.debug(MARKER_PATH, "Repaired path finder field. Invalidated: {}, reopened: {}",
+				repair.invalidCount, reopened);
+		return true;
+	}
+
+	/**
+	 * The start cannot be invalidated, we are standing there. Only the nodes
+	 * that were reached from the start over an edge that is gone or got more
+	 * expensive are invalidated. Then the start is visited again.
+	 * 
+	 * @return How many nodes were added to the queue.
+	 */
+	private int repairStart(int start) {
+		if (!isVisited(start)) {
+			return 0;
+		}
+		final int[] neighbours = getNeighbours(start).clone();
+		final int sx = getX(start);
+		final int sy = getY(start);
+		final int sz = getZ(start);
+		for (int x = sx - 1; x <= sx + 1; x++) {
+			for (int y = sy - MAX_STEP_Y; y <= sy + MAX_STEP_Y; y++) {
+				for (int z = sz - 1; z <= sz + 1; z++) {
+					int child = getIndexForBlockSafe(x, y, z);
+					if (child >= 0
+							&& child != start
+							&& (field.get(child) & (FIELD_INVALID_MASK | FIELD_DISTANCE_SET_MASK)) == FIELD_DISTANCE_SET_MASK
+							&& x - getFromDirectionX(child) == sx
+							&& y - getFromDirectionY(child) == sy
+							&& z - getFromDirectionZ(child) == sz
+							&& (!contains(neighbours, child) || getDistance(start)
+									+ distanceFor(start, child) > getDistance(child))) {
+						invalidateSubtree(child);
+					}
+				}
+			}
+		}
+		clearVisited(start);
+		pqAdd(start, getDistance(start), heuristic(start));
+		return 1;
+	}
+
+	private static boolean contains(int[] nodes, int node) {
+		for (int n : nodes) {
+			if (n == node) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Marks a node invalid. Then marks all nodes that have their distance from
+	 * that node.
+	 */
+	private void invalidateSubtree(int node) {
+		if ((field.get(node) & (FIELD_INVALID_MASK | FIELD_DISTANCE_SET_MASK)) != FIELD_DISTANCE_SET_MASK) {
+			return;
+		}
+		int first = repair.invalidCount;
+		field.or(node, FIELD_INVALID_MASK);
+		repair.addInvalid(node);
+		for (int i = first; i < repair.invalidCount; i++) {
+			int parent = repair.invalid[i];
+			int px = getX(parent);
+			int py = getY(parent);
+			int pz = getZ(parent);
+			for (int x = px - 1; x <= px + 1; x++) {
+				for (int y = py - MAX_STEP_Y; y <= py + MAX_STEP_Y; y++) {
+					for (int z = pz - 1; z <= pz + 1; z++) {
+						int child = getIndexForBlockSafe(x, y, z);
+						if (child >= 0
+								&& (field.get(child) & (FIELD_INVALID_MASK | FIELD_DISTANCE_SET_MASK)) == FIELD_DISTANCE_SET_MASK
+								&& x - getFromDirectionX(child) == px
+								&& y - getFromDirectionY(child) == py
+								&& z - getFromDirectionZ(child) == pz) {
+							field.or(child, FIELD_INVALID_MASK);
+							repair.addInvalid(child);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Puts the valid, visited nodes from which we may reach the given node
+	 * back into the queue.
+	 * 
+	 * @return How many nodes were added to the queue.
+	 */
+	private int reopenPredecessors(int node) {
+		int nx = getX(node);
+		int ny = getY(node);
+		int nz = getZ(node);
+		int reopened = 0;
+		for (int x = nx - 1; x <= nx + 1; x++) {
+			for (int y = ny - MAX_STEP_Y; y <= ny + MAX_STEP_Y; y++) {
+				for (int z = nz - 1; z <= nz + 1; z++) {
+					int from = getIndexForBlockSafe(x, y, z);
+					if (from >= 0
+							&& (field.get(from) & (FIELD_INVALID_MASK | FIELD_VISITED_MASK)) == FIELD_VISITED_MASK) {
+						clearVisited(from);
+						pqAdd(from, getDistance(from), heuristic(from));
+						reopened++;
+					}
+				}
+			}
+		}
+		return reopened;
+	}
+
+	/**
+	 * Collects the nodes that may be affected by block changes.
+	 */
+	private class FieldRepair implements BlockChangeVisitor {
+		int[] seeds = new int[64];
+		int seedCount;
+		/**
+		 * Nodes that may see a changed block but were never reached. They may
+		 * have become passable.
+		 */
+		int[] unreached = new int[64];
+		int unreachedCount;
+		int[] invalid = new int[256];
+		int invalidCount;
+
+		void reset() {
+			seedCount = 0;
+			unreachedCount = 0;
+			invalidCount = 0;
+		}
+
+		@Override
+		public void blockChanged(int x, int y, int z) {
+			// A node looks at the blocks around its feet, two blocks below
+			// and three blocks above it.
+			for (int nx = x - 1; nx <= x + 1; nx++) {
+				for (int ny = y - 3; ny <= y + 2; ny++) {
+					for (int nz = z - 1; nz <= z + 1; nz++) {
+						addSeed(getIndexForBlockSafe(nx, ny, nz));
+					}
+				}
+			}
+		}
+
+		@Override
+		public void chunkChanged(int chunkX, int chunkZ) {
+			for (int x = chunkX << 4; x < (chunkX + 1) << 4; x++) {
+				for (int z = chunkZ << 4; z < (chunkZ + 1) << 4; z++) {
+					for (int y = data.offsetY; y < data.offsetY + Y_LEVEL; y++) {
+						addSeed(getIndexForBlockSafe(x, y, z));
+					}
+				}
+			}
+		}
+
+		private void addSeed(int node) {
+			if (node < 0) {
+				return;
+			}
+			if ((field.get(node) & FIELD_DISTANCE_SET_MASK) == 0) {
+				if (unreachedCount >= unreached.length) {
+					unreached = Arrays.copyOf(unreached, unreached.length * 2);
+				}
+				unreached[unreachedCount++] = node;
+			} else {
+				if (seedCount >= seeds.length) {
+					seeds = Arrays.copyOf(seeds, seeds.length * 2);
+				}
+				seeds[seedCount++] = node;
+			}
+		}
+
+		void addInvalid(int node) {
+			if (invalidCount >= invalid.length) {
+				invalid = Arrays.copyOf(invalid, invalid.length * 2);
+			}
+			invalid[invalidCount++] = node;
+		}
+	}
+
+	private void pqStats() {
+		LOGGER.debug(MARKER_PATH, "Current priority queue range: " + pq.peekKey() + " to " + pq.maxKey()
+				+ ", size: " + pq.size());
 	}
 
 	private boolean hasTimeLeft(long startTime) {
 		return startTime + MAX_RUN_TIME > System.currentTimeMillis();
 	}
 
+	/**
+	 * Rates all visited nodes again. Needed when the start moved or a new
+	 * search continues on the field.
+	 */
+	private void rateVisitedNodes() {
+		currentDest = null;
+		int count = 0;
+		for (int i = 0; i < visitedCount; i++) {
+			int node = visitedNodes[i];
+			// Skip nodes that are not visited any more and duplicates.
+			if ((field.get(node) & (FIELD_VISITED_MASK | FIELD_INVALID_MASK)) != FIELD_VISITED_MASK) {
+				continue;
+			}
+			field.or(node, FIELD_INVALID_MASK);
+			visitedNodes[count++] = node;
+			final float rating = rateDestination(node);
+			if (rating >= 0) {
+				final Dest newDest = new Dest(node, rating);
+				if (currentDest == null || newDest.compareTo(currentDest) < 0) {
+					currentDest = newDest;
+				}
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			field.andNot(visitedNodes[i], FIELD_INVALID_MASK);
+		}
+		visitedCount = count;
+		statsVisited = count;
+		ratingsOutdated = false;
+	}
+
+	private void addVisited(int node) {
+		if (visitedCount >= visitedNodes.length) {
+			visitedNodes = Arrays.copyOf(visitedNodes, visitedNodes.length * 2);
+		}
+		visitedNodes[visitedCount++] = node;
+	}
+
+	/**
+	 * Checks if a new search may continue on the field of the last one. The
+	 * field is then moved to the new start and repaired where blocks changed.
+	 * <p>
+	 * This requires that all block changes are passed to
+	 * {@link #getBlockChangeListener()} and that neighbours and distances only
+	 * depend on the world.
+	 * 
+	 * @return <code>true</code> if the field may be reused.
+	 */
+	protected boolean isFieldReusable() {
+		return false;
+	}
+
+	/**
+	 * Called when a search found its destination. The field is kept for the
+	 * next search if it can be reused, otherwise it is given back to the pool.
+	 */
+	private void searchFinished() {
+		if (!isFieldReusable()) {
+			terminated();
+			return;
+		}
+		isRunning = false;
+		currentDest = null;
+		ratingsOutdated = true;
+	}
+
 	private void terminated() {
 		isRunning = false;
-		field = null;
+		visitedCount = 0;
 		pqClear();
+		if (field != null) {
+			PathFinderFieldStorage.release(field);
+			field = null;
+			PathFinderQueue.release(pq);
+			pq = null;
+		}
+		if (trace != null) {
+			trace.close();
+			trace = null;
+		}
 		currentDest = null;
+		blockChanges.clear();
 	}
 
 	public void abort() {
@@ -345,6 +865,25 @@ public class PathFinderField implements Comparator<Integer> {
 		return 1;
 	}
 
+	/**
+	 * An estimate for the distance that is still needed to get from this node
+	 * to the best destination. Nodes are visited ordered by distance +
+	 * heuristic, so a good estimate lets the search go straight to the
+	 * destination instead of flooding the whole field.
+	 * <p>
+	 * The estimate may never be larger than the real distance, and it may not
+	 * drop by more than {@link #distanceFor(int, int)} when going to a
+	 * neighbour. Only use this if {@link #rateDestination(int, int, int, int)}
+	 * returns the distance for all destinations.
+	 * 
+	 * @param node
+	 *            The node
+	 * @return The estimate. The default is 0, which is a plain Dijkstra search.
+	 */
+	protected int heuristic(int node) {
+		return 0;
+	}
+
 	protected void noPathFound() {
 		LOGGER.info(MARKER_PATH, "Path finder did not find a path. Positions visited: {}", statsVisited);
 	}
@@ -433,139 +972,68 @@ public class PathFinderField implements Comparator<Integer> {
 						+ getFromDirectionX(nodeId) + ", fromY="
 						+ getFromDirectionY(nodeId) + ", fromZ="
 						+ getFromDirectionZ(nodeId) + ", data="
-						+ Integer.toHexString(field[nodeId]));
+						+ Integer.toHexString(field.get(nodeId)));
 	}
 
 	private void pqClear() {
-		// pqSize = 0;
-		pq.clear();
-		pqMinDistance = -1;
-		Arrays.fill(pqByDistanceFill, 0);
+		if (pq != null) {
+			pq.clear();
+		}
+		if (trace != null) {
+			trace.clear();
+		}
 	}
 
 	private boolean pqEmpty() {
-		// return pqSize == 0;
-		return pq.isEmpty() && pqMinDistance < 0;
-	}
-
-	private void pqUpdate(int n, int oldDistance, int distance) {
-		pqRemove(n, oldDistance);
-		pqAdd(n, distance);
-	}
-
-	private void pqRemove(int n, int oldDistance) {
-		if (pqMinDistance >= 0
-				&& oldDistance < pqMinDistance + FAST_DISTANCE_ACCESS) {
-			int slot = pqSlotFor(oldDistance);
-			int[] slotArray = pqByDistance[slot];
-			int fill = pqByDistanceFill[slot];
-			pqByDistanceFill[slot] = fill - 1;
-			boolean found = false;
-			for (int i = 0; i < fill - 1; i++) {
-				if (slotArray[i] == n) {
-					slotArray[i] = slotArray[fill - 1];
-					found = true;
-					break;
-				}
-			}
-			if (!found && slotArray[fill - 1] != n) {
-				LOGGER.error(MARKER_PATH, "Warning: Trying to remove " + n
-						+ " which is not in this list (d=" + oldDistance + ")");
-				// search it in other lists...
-				for (int list = 0; list < FAST_DISTANCE_ACCESS; list++) {
-					int distance = list + pqMinDistance;
-					for (int i = 0; i < pqByDistanceFill[pqSlotFor(distance)]; i++) {
-						if (pqByDistance[pqSlotFor(distance)][i] == n) {
-							LOGGER.debug(MARKER_PATH, "    -> Found it for d="
-									+ distance);
-						}
-					}
-				}
-			}
+		return pq.isEmpty();
+	}
 
-			if (fill == 1 && oldDistance == pqMinDistance) {
-				pqFindNextMin();
-			}
-		} else {
-			pq.remove(n);
+	private void pqUpdate(int n, int oldDistance, int distance, int heuristic) {
+		if (trace != null) {
+			trace.update(n, oldDistance + heuristic, distance + heuristic);
 		}
+		pq.update(n, oldDistance + heuristic, distance + heuristic);
 	}
 
-	private void pqAdd(int node, int distance) {
+	private void pqAdd(int node, int distance, int heuristic) {
 		if (getDistance(node) != distance) {
 			throw new IllegalArgumentException("Got: " + distance
 					+ " but real distance is " + getDistance(node));
 		}
-		if (pqMinDistance < 0) {
-			pqMinDistance = distance;
-		}
-		while (distance < pqMinDistance) {
-			// Does not happen often, but we need to handle it.
-			pqMinDistance--;
-
-			int slotToEmpty = pqSlotFor(pqMinDistance);
-			for (int i = 0; i < pqByDistanceFill[slotToEmpty]; i++) {
-				pq.offer(pqByDistance[slotToEmpty][i]);
-			}
-			pqByDistanceFill[slotToEmpty] = 0;
-		}
-
-		if (distance < pqMinDistance + FAST_DISTANCE_ACCESS) {
-			int slot = pqSlotFor(distance);
-			int[] slotArray = pqByDistance[slot];
-			int fill = pqByDistanceFill[slot];
-			pqByDistanceFill[slot] = fill + 1;
-			if (slotArray.length <= fill + 1) {
-				slotArray = Arrays.copyOf(slotArray, slotArray.length * 2);
-				pqByDistance[slot] = slotArray;
-			}
-			slotArray[fill] = node;
-		} else {
-			pq.offer(node);
+		if (trace != null) {
+			trace.add(node, distance + heuristic);
 		}
-	}
-
-	private int pqSlotFor(int distance) {
-		return distance & (FAST_DISTANCE_ACCESS - 1);
+		pq.add(node, distance + heuristic);
 	}
 
 	/**
-	 * Only allowed if pqSize < 0. Otherwise, the behaviour is undefined.
+	 * Only allowed if the queue is not empty. Otherwise, the behaviour is
+	 * undefined.
 	 * 
-	 * @return
+	 * @return The next node or -1 if only outdated entries were left.
 	 */
 	private int pqPoll() {
-		if (pqMinDistance >= 0) {
-			int slot = pqSlotFor(pqMinDistance);
-			int fill = pqByDistanceFill[slot];
-			int result = pqByDistance[slot][fill - 1];
-			pqByDistanceFill[slot] = fill - 1;
-			if (fill == 1) {
-				pqFindNextMin();
+		int node;
+		do {
+			int key = pq.peekKey();
+			node = pq.poll();
+			if (!isVisited(node) && (!repaired || isCurrentEntry(node, key))) {
+				if (trace != null) {
+					trace.poll();
+				}
+				return node;
 			}
-			return result;
-		} else {
-			return pq.poll();
-		}
+			// Outdated entry left from a distance update.
+		} while (!pq.isEmpty());
+		return -1;
 	}
 
-	private void pqFindNextMin() {
-		int nextMin = -1;
-		int max = pqMinDistance + FAST_DISTANCE_ACCESS;
-		if (!pq.isEmpty()) {
-			max = Math.max(max, pq.poll());
-		}
-		for (int d = pqMinDistance; d < max; d++) {
-			pqMinDistance = d;
-			while (!pq.isEmpty() && getDistance(pq.peek()) == d) {
-				pqAdd(pq.poll(), d);
-			}
-
-			if (pqByDistanceFill[pqSlotFor(d)] > 0) {
-				nextMin = d;
-				break;
-			}
-		}
-		pqMinDistance = nextMin;
+	/**
+	 * After a repair, the queue may contain entries of nodes that were
+	 * invalidated or got a larger distance.
+	 */
+	private boolean isCurrentEntry(int node, int key) {
+		return isInQueue(node)
+				&& getDistance(node) + heuristic(node) == key;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * The int array used by the {@link PathFinderField}. It is allocated once and
+ * then reused for every search.
+ * <p>
+ * Instead of zero-filling the whole array on each restart, the array is split
+ * into pages. Each page remembers the epoch it was last written in. Starting a
+ * new search only increments the epoch, so all pages become stale at once. A
+ * stale page reads as 0 and is cleared the first time it is written again.
+ */
+public final class PathFinderFieldStorage {
+	private static final int PAGE_BITS = 12;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	/**
+	 * Storages that are currently not used by any path finder.
+	 */
+	private static final ArrayDeque<PathFinderFieldStorage> POOL = new ArrayDeque<>();
+	private static int statsAllocated;
+	private static int statsReused;
+
+	private final int[] data;
+	private final int[] pageEpoch;
+	private int epoch = 1;
+
+	private PathFinderFieldStorage(int size) {
+		if ((size & PAGE_SIZE - 1) != 0) {
+			throw new IllegalArgumentException("Size needs to be a multiple of " + PAGE_SIZE);
+		}
+		data = new int[size];
+		pageEpoch = new int[size >> PAGE_BITS];
+	}
+
+	/**
+	 * Get an empty storage. Reuses a released storage if there is one.
+	 *
+	 * @param size
+	 *            The number of ints required.
+	 * @return A storage that reads as all zero.
+	 */
+	public static synchronized PathFinderFieldStorage acquire(int size) {
+		PathFinderFieldStorage storage;
+		while ((storage = POOL.poll()) != null) {
+			if (storage.data.length == size) {
+				statsReused++;
+				storage.clear();
+				return storage;
+			}
+		}
+		statsAllocated++;
+		return new PathFinderFieldStorage(size);
+	}
+
+	/**
+	 * Returns a storage to the pool. It may not be used by the caller
+	 * afterwards.
+	 *
+	 * @param storage
+	 *            The storage.
+	 */
+	public static synchronized void release(PathFinderFieldStorage storage) {
+		POOL.push(storage);
+	}
+
+	/**
+	 * @return How many storages were allocated since the game started.
+	 */
+	public static synchronized int getStatsAllocated() {
+		return statsAllocated;
+	}
+
+	/**
+	 * @return How often a pooled storage could be reused instead.
+	 */
+	public static synchronized int getStatsReused() {
+		return statsReused;
+	}
+
+	/**
+	 * Lets all values read as 0 again.
+	 */
+	public void clear() {
+		epoch++;
+		if (epoch == 0) {
+			// Overflow. Every page might be seen as current now.
+			Arrays.fill(pageEpoch, 0);
+			epoch = 1;
+		}
+	}
+
+	public int get(int index) {
+		return pageEpoch[index >> PAGE_BITS] == epoch ? data[index] : 0;
+	}
+
+	public void set(int index, int value) {
+		touch(index);
+		data[index] = value;
+	}
+
+	public void or(int index, int bits) {
+		touch(index);
+		data[index] |= bits;
+	}
+
+	public void andNot(int index, int bits) {
+		touch(index);
+		data[index] &= ~bits;
+	}
+
+	private void touch(int index) {
+		int page = index >> PAGE_BITS;
+		if (pageEpoch[page] != epoch) {
+			int start = page << PAGE_BITS;
+			Arrays.fill(data, start, start + PAGE_SIZE, 0);
+			pageEpoch[page] = epoch;
+		}
+	}
+}
@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * A bucket queue for node ids of the {@link PathFinderField}.
+ * <p>
+ * There is one bucket for each key in the range 0..{@link #MAX_KEY}. A two
+ * level bitmap is used to find the next non-empty bucket, so polling never
+ * scans more than a few longs. Larger keys are rare, they are stored in a
+ * binary heap that is only used once all buckets are empty.
+ * <p>
+ * Decreasing the key of a node is O(1): The node is simply added again with the
+ * new key. The old entry stays in the queue and is returned later. The caller
+ * needs to skip it, which the path finder does by checking if the node was
+ * already visited. Tracking the position of each node to remove it instead
+ * would cost a random access into a large array on every add.
+ * <p>
+ * Nodes inside one bucket are returned last in, first out.
+ */
+public final class PathFinderQueue {
+	public static final int MAX_KEY = 0xffff;
+	private static final int BUCKETS = MAX_KEY + 1;
+	private static final int INITIAL_BUCKET_SIZE = 16;
+
+	private static final ArrayDeque<PathFinderQueue> POOL = new ArrayDeque<>();
+
+	private final int[][] buckets = new int[BUCKETS][];
+	private final int[] bucketFill = new int[BUCKETS];
+	/**
+	 * One bit per bucket, set if the bucket is not empty.
+	 */
+	private final long[] used = new long[BUCKETS >> 6];
+	/**
+	 * One bit per long in {@link #used}, set if that long is not 0.
+	 */
+	private final long[] usedSummary = new long[BUCKETS >> 12];
+	/**
+	 * Arrays of buckets that were emptied. They are reused for new buckets,
+	 * so only a few arrays are used and they stay in the CPU cache.
+	 */
+	private int[][] spareBuckets = new int[16][];
+	private int spareBucketCount;
+	/**
+	 * The number of entries in the buckets.
+	 */
+	private int bucketSize;
+	/**
+	 * The smallest key in the buckets.
+	 */
+	private int minKey;
+	/**
+	 * A binary heap for the keys above {@link #MAX_KEY}.
+	 */
+	private int[] overflowKeys = new int[INITIAL_BUCKET_SIZE];
+	private int[] overflowNodes = new int[INITIAL_BUCKET_SIZE];
+	private int overflowSize;
+
+	public PathFinderQueue() {
+	}
+
+	/**
+	 * Get an empty queue. Reuses a released queue if there is one.
+	 *
+	 * @return An empty queue.
+	 */
+	public static synchronized PathFinderQueue acquire() {
+		PathFinderQueue queue = POOL.poll();
+		if (queue == null) {
+			return new PathFinderQueue();
+		}
+		queue.clear();
+		return queue;
+	}
+
+	/**
+	 * Returns a queue to the pool. It may not be used by the caller afterwards.
+	 *
+	 * @param queue
+	 *            The queue.
+	 */
+	public static synchronized void release(PathFinderQueue queue) {
+		POOL.push(queue);
+	}
+
+	public boolean isEmpty() {
+		return bucketSize == 0 && overflowSize == 0;
+	}
+
+	/**
+	 * @return The number of entries, including outdated ones.
+	 */
+	public int size() {
+		return bucketSize + overflowSize;
+	}
+
+	/**
+	 * @return The smallest key in the queue. Undefined if the queue is empty.
+	 */
+	public int peekKey() {
+		return bucketSize > 0 ? minKey : overflowKeys[0];
+	}
+
+	/**
+	 * @return The largest key in the queue. Undefined if the queue is empty.
+	 */
+	public int maxKey() {
+		if (overflowSize > 0) {
+			int max = overflowKeys[0];
+			for (int i = 1; i < overflowSize; i++) {
+				max = Math.max(max, overflowKeys[i]);
+			}
+			return max;
+		}
+		for (int summary = usedSummary.length - 1; summary >= 0; summary--) {
+			if (usedSummary[summary] != 0) {
+				int word = summary << 6 | 63 - Long.numberOfLeadingZeros(usedSummary[summary]);
+				return word << 6 | 63 - Long.numberOfLeadingZeros(used[word]);
+			}
+		}
+		return -1;
+	}
+
+	public void add(int node, int key) {
+		if (key > MAX_KEY) {
+			addOverflow(node, key);
+			return;
+		}
+		int[] bucket = buckets[key];
+		int fill = bucketFill[key];
+		if (bucket == null) {
+			bucket = spareBucketCount > 0 ? spareBuckets[--spareBucketCount]
+					: new int[INITIAL_BUCKET_SIZE];
+			buckets[key] = bucket;
+		} else if (bucket.length <= fill) {
+			bucket = Arrays.copyOf(bucket, bucket.length * 2);
+			buckets[key] = bucket;
+		}
+		bucket[fill] = node;
+		bucketFill[key] = fill + 1;
+		if (fill == 0) {
+			markUsed(key);
+		}
+		if (bucketSize == 0 || key < minKey) {
+			minKey = key;
+		}
+		bucketSize++;
+	}
+
+	/**
+	 * Decreases the key of a node. The entry with the old key is not removed.
+	 *
+	 * @param node
+	 *            The node, which needs to be in the queue.
+	 * @param oldKey
+	 *            The key the node was added with.
+	 * @param newKey
+	 *            The new key. Needs to be smaller than the old one.
+	 */
+	public void update(int node, int oldKey, int newKey) {
+		if (oldKey != newKey) {
+			add(node, newKey);
+		}
+	}
+
+	/**
+	 * Removes the node with the smallest key. Only allowed if the queue is not
+	 * empty. The node may be an outdated entry of a node that was already
+	 * returned with a smaller key.
+	 *
+	 * @return The node.
+	 */
+	public int poll() {
+		if (bucketSize == 0) {
+			return pollOverflow();
+		}
+		int key = minKey;
+		int fill = bucketFill[key] - 1;
+		int node = buckets[key][fill];
+		bucketFill[key] = fill;
+		bucketSize--;
+		if (fill == 0) {
+			markUnused(key);
+			recycleBucket(key);
+			if (bucketSize > 0) {
+				minKey = nextUsed(key);
+			}
+		}
+		return node;
+	}
+
+	public void clear() {
+		for (int summary = 0; summary < usedSummary.length; summary++) {
+			long summaryBits = usedSummary[summary];
+			while (summaryBits != 0) {
+				int word = summary << 6 | Long.numberOfTrailingZeros(summaryBits);
+				summaryBits &= summaryBits - 1;
+				long bits = used[word];
+				while (bits != 0) {
+					int key = word << 6 | Long.numberOfTrailingZeros(bits);
+					bucketFill[key] = 0;
+					recycleBucket(key);
+					bits &= bits - 1;
+				}
+				used[word] = 0;
+			}
+			usedSummary[summary] = 0;
+		}
+		bucketSize = 0;
+		minKey = 0;
+		overflowSize = 0;
+	}
+
+	private void recycleBucket(int key) {
+		if (spareBucketCount >= spareBuckets.length) {
+			spareBuckets = Arrays.copyOf(spareBuckets, spareBuckets.length * 2);
+		}
+		spareBuckets[spareBucketCount++] = buckets[key];
+		buckets[key] = null;
+	}
+
+	private void addOverflow(int node, int key) {
+		if (overflowSize >= overflowKeys.length) {
+			overflowKeys = Arrays.copyOf(overflowKeys, overflowSize * 2);
+			overflowNodes = Arrays.copyOf(overflowNodes, overflowSize * 2);
+		}
+		int i = overflowSize++;
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (overflowKeys[parent] <= key) {
+				break;
+			}
+			overflowKeys[i] = overflowKeys[parent];
+			overflowNodes[i] = overflowNodes[parent];
+			i = parent;
+		}
+		overflowKeys[i] = key;
+		overflowNodes[i] = node;
+	}
+
+	private int pollOverflow() {
+		int node = overflowNodes[0];
+		int size = --overflowSize;
+		int key = overflowKeys[size];
+		int moved = overflowNodes[size];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size
+					&& overflowKeys[child + 1] < overflowKeys[child]) {
+				child++;
+			}
+			if (key <= overflowKeys[child]) {
+				break;
+			}
+			overflowKeys[i] = overflowKeys[child];
+			overflowNodes[i] = overflowNodes[child];
+			i = child;
+		}
+		overflowKeys[i] = key;
+		overflowNodes[i] = moved;
+		return node;
+	}
+
+	private void markUsed(int key) {
+		int word = key >> 6;
+		used[word] |= 1L << key;
+		usedSummary[word >> 6] |= 1L << word;
+	}
+
+	private void markUnused(int key) {
+		int word = key >> 6;
+		used[word] &= ~(1L << key);
+		if (used[word] == 0) {
+			usedSummary[word >> 6] &= ~(1L << word);
+		}
+	}
+
+	/**
+	 * Finds the next used bucket. There needs to be one.
+	 */
+	private int nextUsed(int key) {
+		int word = key >> 6;
+		long bits = used[word] & -1L << key;
+		if (bits != 0) {
+			return word << 6 | Long.numberOfTrailingZeros(bits);
+		}
+		int summary = word >> 6;
+		long summaryBits = usedSummary[summary] & -2L << word;
+		while (summaryBits == 0) {
+			summaryBits = usedSummary[++summary];
+		}
+		word = summary << 6 | Long.numberOfTrailingZeros(summaryBits);
+		return word << 6 | Long.numberOfTrailingZeros(used[word]);
+	}
+}
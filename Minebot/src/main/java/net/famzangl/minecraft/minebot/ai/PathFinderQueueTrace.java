@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Records all operations the {@link PathFinderField} does on its queue, so
+ * that they can be replayed by the queue benchmark.
+ * <p>
+ * Recording is enabled by setting the system property
+ * <code>minebot.pathfinder.trace</code> to a directory. One file is written per
+ * search.
+ */
+public final class PathFinderQueueTrace {
+	private static final Logger LOGGER = LogManager.getLogger(PathFinderQueueTrace.class);
+	public static final String TRACE_DIRECTORY_PROPERTY = "minebot.pathfinder.trace";
+	public static final int MAGIC = 0x4d425154;
+
+	public static final byte OP_ADD = 0;
+	public static final byte OP_UPDATE = 1;
+	public static final byte OP_POLL = 2;
+	public static final byte OP_CLEAR = 3;
+
+	private static int traceCounter;
+
+	private DataOutputStream out;
+
+	private PathFinderQueueTrace(File file) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(MAGIC);
+	}
+
+	/**
+	 * Start a new trace file if tracing is enabled.
+	 *
+	 * @return The trace or <code>null</code> if tracing is disabled.
+	 */
+	public static PathFinderQueueTrace startIfEnabled() {
+		String directory = System.getProperty(TRACE_DIRECTORY_PROPERTY);
+		if (directory == null) {
+			return null;
+		}
+		File file = new File(directory, "queue-" + System.currentTimeMillis() + "-" + nextTraceNumber() + ".trace");
+		try {
+			LOGGER.debug("Recording path finder queue trace to {}", file);
+			return new PathFinderQueueTrace(file);
+		} catch (IOException e) {
+			LOGGER.warn("Could not start queue trace in {}", file, e);
+			return null;
+		}
+	}
+
+	private static synchronized int nextTraceNumber() {
+		return traceCounter++;
+	}
+
+	public void add(int node, int key) {
+		write(OP_ADD, node, key, 0);
+	}
+
+	public void update(int node, int oldKey, int newKey) {
+		write(OP_UPDATE, node, oldKey, newKey);
+	}
+
+	public void poll() {
+		write(OP_POLL, 0, 0, 0);
+	}
+
+	public void clear() {
+		write(OP_CLEAR, 0, 0, 0);
+	}
+
+	private void write(byte op, int node, int key, int newKey) {
+		if (out == null) {
+			return;
+		}
+		try {
+			out.writeByte(op);
+			if (op == OP_ADD || op == OP_UPDATE) {
+				out.writeInt(node);
+				out.writeInt(key);
+			}
+			if (op == OP_UPDATE) {
+				out.writeInt(newKey);
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Could not write queue trace. Stopping it.", e);
+			close();
+		}
+	}
+
+	public void close() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				LOGGER.warn("Could not close queue trace.", e);
+			}
+			out = null;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package net.famzangl.minecraft.minebot.ai.command;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.ParseResults;
 import com.mojang.brigadier.StringReader;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
@@ -12,6 +13,7 @@ import com.mojang.brigadier.tree.RootCommandNode;
 import net.famzangl.minecraft.minebot.ai.AIHelper;
 import net.famzangl.minecraft.minebot.ai.commands.Commands;
 import net.famzangl.minecraft.minebot.ai.strategy.AIStrategy;
+import net.minecraft.client.Minecraft;
 import net.minecraft.command.ISuggestionProvider;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,6 +21,8 @@ import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -29,6 +33,27 @@ public class CommandRegistry {
     private IAIControllable controllable;
     private final CommandDispatcher<IAIControllable> commands = new CommandDispatcher<>();
 
+    /**
+     * How many parsed commands we keep.
+     */
+    private static final int PARSE_CACHE_SIZE = 128;
+
+    /**
+     * The source all cached parse results are bound to.
+     */
+    private final ForwardingControllable parsedSource = new ForwardingControllable();
+
+    /**
+     * The last parsed commands, least recently used first. Guarded by itself.
+     */
+    private final LinkedHashMap<String, ParseResults<IAIControllable>> parseCache = new LinkedHashMap<String, ParseResults<IAIControllable>>(
+            16, .75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ParseResults<IAIControllable>> eldest) {
+            return size() > PARSE_CACHE_SIZE;
+        }
+    };
+
     public CommandRegistry() {
         LiteralArgumentBuilder<IAIControllable> minebot = Commands.literal("minebot");
         LiteralArgumentBuilder<IAIControllable> minebuild = Commands.literal("minebuild");
@@ -71,35 +96,101 @@ public class CommandRegistry {
 
     public AIStrategy evaluateCommand(AIHelper helper, String command) throws CommandSyntaxException {
         StrategyReceiver receiver = new StrategyReceiver(helper);
-        commands.execute(command, receiver);
+        execute(parse(command), receiver);
         return receiver.get();
     }
 
     public AIStrategy evaluateCommandWithSaferule(AIHelper helper, String command) throws CommandSyntaxException {
         StrategyReceiver receiver = new StrategyReceiver(helper);
-        commands.execute(command, receiver);
+        execute(parse(command), receiver);
         return receiver.get();
     }
 
+    /**
+     * Parses a command. The same commands are used over and over again by
+     * scripts, so the last parsed commands are cached.
+     *
+     * @param command The command without the leading slash.
+     * @return The parsed command. It can only be executed by
+     * {@link #execute(ParseResults, IAIControllable)}.
+     */
+    public ParseResults<IAIControllable> parse(String command) {
+        synchronized (parseCache) {
+            ParseResults<IAIControllable> parsed = parseCache.get(command);
+            if (parsed == null) {
+                parsed = commands.parse(command, parsedSource);
+                if (parsed.getExceptions().isEmpty() && !parsed.getReader().canRead()) {
+                    // Errors are only reported once, no need to cache them.
+                    parseCache.put(command, parsed);
+                }
+            }
+            return parsed;
+        }
+    }
+
+    /**
+     * Parses a command without using the cache. Use this for commands that
+     * are only run once or that are kept by the caller, so that they do not
+     * push the commands users repeat out of the cache.
+     *
+     * @param command The command without the leading slash.
+     * @return The parsed command. It can only be executed by
+     * {@link #execute(ParseResults, IAIControllable)}.
+     */
+    public ParseResults<IAIControllable> parseUncached(String command) {
+        return commands.parse(command, parsedSource);
+    }
+
+    /**
+     * Checks if the command is handled by us.
+     *
+     * @param message The chat message
+     * @return <code>true</code> if the message is a minebot command.
+     */
+    public boolean isOwnCommand(String message) {
+        for (CommandNode<IAIControllable> literal : commands.getRoot().getChildren()) {
+            if (message.startsWith("/" + ((LiteralCommandNode<IAIControllable>) literal).getLiteral())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Executes a parsed command. Needs to be called on the client thread.
+     *
+     * @param parsed The result of {@link #parse(String)}
+     * @param source The source to execute the command for.
+     * @return The command result.
+     * @throws CommandSyntaxException If the command could not be parsed.
+     */
+    public int execute(ParseResults<IAIControllable> parsed, IAIControllable source) throws CommandSyntaxException {
+        IAIControllable outer = parsedSource.target;
+        parsedSource.target = source;
+        try {
+            return commands.execute(parsed);
+        } finally {
+            parsedSource.target = outer;
+        }
+    }
+
     public boolean interceptCommand(String message) {
         try {
             StringReader reader = new StringReader(message);
             if (reader.canRead()) {
                 char first = reader.read();
                 if (first == '/') {
-                    commands.execute(reader, controllable);
+                    execute(parse(reader.getRemaining()), controllable);
                     return true;
                 }
             }
         } catch (Throwable e) {
             // Do not send on to server if message starts with /minebot
-            for (CommandNode<IAIControllable> literal : commands.getRoot().getChildren()) {
-                if (message.startsWith("/" + ((LiteralCommandNode<IAIControllable>) literal).getLiteral())) {
-                    // Show chat message to client. TODO: Use nice minecraft message
-                    AIChatController.addChatLine("ERROR while evaluating: "
-                            + e.getMessage());
-                    LOGGER.warn("Error during command evaluation", e);
-                }
+            if (isOwnCommand(message)) {
+                // Show chat message to client. TODO: Use nice minecraft message
+                AIChatController.addChatLine("ERROR while evaluating: "
+                        + e.getMessage());
+                LOGGER.warn("Error during command evaluation", e);
             }
             // Otherwise ignored, let Minecraft handle this
         }
@@ -156,6 +247,46 @@ public class CommandRegistry {
         return ((CommandContext<IAIControllable>) (CommandContext<?>) suggestionContext).copyFor(controllable);
     }
 
+    /**
+     * Brigadier binds the source when parsing. Cached parse results are bound
+     * to this source, which forwards to the source of the current execution.
+     */
+    private static class ForwardingControllable implements IAIControllable {
+        private IAIControllable target;
+
+        private IAIControllable getTarget() {
+            if (target == null) {
+                throw new IllegalStateException("No command is executed.");
+            }
+            return target;
+        }
+
+        @Override
+        public Minecraft getMinecraft() {
+            return getTarget().getMinecraft();
+        }
+
+        @Override
+        public AIHelper getAiHelper() {
+            return getTarget().getAiHelper();
+        }
+
+        @Override
+        public int requestUseStrategy(AIStrategy strategy) {
+            return getTarget().requestUseStrategy(strategy);
+        }
+
+        @Override
+        public int requestUseStrategy(AIStrategy strategy, SafeStrategyRule rule) {
+            return getTarget().requestUseStrategy(strategy, rule);
+        }
+
+        @Override
+        public StackBuilder getStackBuilder() {
+            return getTarget().getStackBuilder();
+        }
+    }
+
     private static class StrategyReceiver implements IAIControllable {
         private final AIHelper helper;
         AIStrategy strategy;
@@ -172,6 +303,7 @@ public class CommandRegistry {
 
         @Override
         public int requestUseStrategy(AIStrategy strategy) {
+            this.strategy = strategy;
             return 0;
         }
 
@@ -17,23 +17,57 @@
 package net.famzangl.minecraft.minebot.ai.commands;
 
 import net.famzangl.minecraft.minebot.ai.AIHelper;
+import net.famzangl.minecraft.minebot.ai.command.AIChatController;
 import net.famzangl.minecraft.minebot.ai.command.AICommand;
 import net.famzangl.minecraft.minebot.ai.command.AICommandInvocation;
 import net.famzangl.minecraft.minebot.ai.command.AICommandParameter;
 import net.famzangl.minecraft.minebot.ai.command.ParameterType;
 import net.famzangl.minecraft.minebot.ai.strategy.AIStrategy;
 import net.famzangl.minecraft.minebot.ai.strategy.RunFileStrategy;
+import net.famzangl.minecraft.minebot.ai.strategy.RunOnceStrategy;
+import net.famzangl.minecraft.minebot.build.reverse.BuildPlan;
 
 import java.io.File;
+import java.io.IOException;
 
-@AICommand(helpText = "Run build commands from a file.", name = "minebuild")
+@AICommand(helpText = "Run build commands from a file or schedule a "
+		+ BuildPlan.FILE_EXTENSION + " build plan.", name = "minebuild")
 public class CommandLoad {
 
+	private static final class LoadBuildPlanStrategy extends RunOnceStrategy {
+		private final File file;
+
+		private LoadBuildPlanStrategy(File file) {
+			this.file = file;
+		}
+
+		@Override
+		protected void singleRun(AIHelper helper) {
+			try {
+				BuildPlan plan = BuildPlan.load(file);
+				// Same as the /minebuild reset a build script starts with.
+				helper.buildManager.reset();
+				int skipped = helper.buildManager.addTasks(plan,
+						helper.getPlayerPosition());
+				if (skipped > 0) {
+					AIChatController.addChatLine("Could not schedule "
+							+ skipped + " blocks.");
+				}
+			} catch (IOException e) {
+				AIChatController.addChatLine("Could not load " + file + ": "
+						+ e.getMessage());
+			}
+		}
+	}
+
 	@AICommandInvocation()
 	public static AIStrategy run(
 			AIHelper helper,
 			@AICommandParameter(type = ParameterType.FIXED, fixedName = "load", description = "") String nameArg,
 			@AICommandParameter(type = ParameterType.FILE, relativeToSettingsFile = "build", description = "") File file) {
+		if (file.getName().endsWith(BuildPlan.FILE_EXTENSION)) {
+			return new LoadBuildPlanStrategy(file);
+		}
 		return new RunFileStrategy(file);
 	}
 }
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai.commands;
+
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import net.famzangl.minecraft.minebot.ai.command.AIChatController;
+import net.famzangl.minecraft.minebot.ai.command.AICommand;
+import net.famzangl.minecraft.minebot.ai.command.IAIControllable;
+import net.famzangl.minecraft.minebot.ai.profiler.TickProfiler;
+import net.famzangl.minecraft.minebot.ai.profiler.TickProfiler.Entry;
+import net.famzangl.minecraft.minebot.settings.MinebotSettings;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.List;
+
+@AICommand(helpText = "Show how long strategies, tasks and searches take.", name = "minebot")
+public class CommandProfile {
+	/**
+	 * How many lines we print to the chat.
+	 */
+	private static final int CHAT_LINES = 8;
+
+	public static void register(LiteralArgumentBuilder<IAIControllable> dispatcher) {
+		dispatcher.then(
+				Commands.literal("profile")
+						.executes(CommandProfile::runShow)
+						.then(
+								Commands.literal("reset")
+										.executes(CommandProfile::runReset)
+						)
+						.then(
+								Commands.literal("dump")
+										.executes(CommandProfile::runDump)
+						)
+		);
+	}
+
+	private static int runShow(CommandContext<IAIControllable> context) {
+		List<Entry> entries = TickProfiler.getEntries();
+		if (entries.isEmpty()) {
+			AIChatController.addChatLine("Nothing was profiled yet.");
+			return 0;
+		}
+		for (Entry entry : entries.subList(0, Math.min(CHAT_LINES, entries.size()))) {
+			AIChatController.addChatLine(entry.format());
+		}
+		if (entries.size() > CHAT_LINES) {
+			AIChatController.addChatLine((entries.size() - CHAT_LINES) + " more, use /minebot profile dump to see all.");
+		}
+		return 1;
+	}
+
+	private static int runReset(CommandContext<IAIControllable> context) {
+		TickProfiler.reset();
+		AIChatController.addChatLine("Profiler reset.");
+		return 1;
+	}
+
+	private static int runDump(CommandContext<IAIControllable> context) {
+		final File dir = MinebotSettings.getDataDirFile("dumps");
+		dir.mkdirs();
+		final DateFormat df = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss");
+		final String date = df.format(Calendar.getInstance().getTime());
+		final File file = new File(dir, date + ".profile.txt");
+		try (PrintStream out = new PrintStream(file)) {
+			TickProfiler.writeReport(out);
+		} catch (FileNotFoundException e) {
+			AIChatController.addChatLine("Could not write " + file + ": " + e.getMessage());
+			return 0;
+		}
+		AIChatController.addChatLine("Profile written to " + file);
+		return 1;
+	}
+}
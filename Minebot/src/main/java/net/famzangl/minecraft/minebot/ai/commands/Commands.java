@@ -93,6 +93,7 @@ public class Commands {
         CommandLumberjack.register(minebot);
         CommandMine.register(minebot);
         CommandPathfind.register(minebot);
+        CommandProfile.register(minebot);
         CommandRespawn.register(minebot);
         CommandResume.register(minebot);
         CommandStack.register(minebot);
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai.net;
+
+import java.util.Arrays;
+
+/**
+ * Collects the block and chunk changes reported on the client thread, so
+ * that they can be processed later on the thread that needs them.
+ */
+public class BlockChangeQueue implements ChunkListener {
+	public interface BlockChangeVisitor {
+		void blockChanged(int x, int y, int z);
+
+		void chunkChanged(int chunkX, int chunkZ);
+	}
+
+	/**
+	 * If more changes are queued, the receiver should not bother processing
+	 * them one by one.
+	 */
+	private static final int MAX_CHANGES = 4096;
+
+	private int[] blocks = new int[3 * 64];
+	private int blockCount;
+	private int[] chunks = new int[2 * 16];
+	private int chunkCount;
+	private boolean overflow;
+
+	// Swapped with the arrays above when draining.
+	private int[] drainBlocks = new int[3 * 64];
+	private int[] drainChunks = new int[2 * 16];
+
+	@Override
+	public synchronized void blockChanged(int x, int y, int z) {
+		if (blockCount >= MAX_CHANGES) {
+			overflow = true;
+			return;
+		}
+		if (blocks.length < blockCount * 3 + 3) {
+			blocks = Arrays.copyOf(blocks, blocks.length * 2);
+		}
+		blocks[blockCount * 3] = x;
+		blocks[blockCount * 3 + 1] = y;
+		blocks[blockCount * 3 + 2] = z;
+		blockCount++;
+	}
+
+	@Override
+	public synchronized void chunkChanged(int chunkX, int chunkZ) {
+		if (chunkCount >= MAX_CHANGES) {
+			overflow = true;
+			return;
+		}
+		if (chunks.length < chunkCount * 2 + 2) {
+			chunks = Arrays.copyOf(chunks, chunks.length * 2);
+		}
+		chunks[chunkCount * 2] = chunkX;
+		chunks[chunkCount * 2 + 1] = chunkZ;
+		chunkCount++;
+	}
+
+	public synchronized boolean isEmpty() {
+		return blockCount == 0 && chunkCount == 0 && !overflow;
+	}
+
+	public synchronized void clear() {
+		blockCount = 0;
+		chunkCount = 0;
+		overflow = false;
+	}
+
+	/**
+	 * Passes all queued changes to the visitor and clears the queue. This
+	 * should only be called by one thread.
+	 * 
+	 * @param visitor
+	 *            The visitor
+	 * @return <code>false</code> if there were too many changes. The visitor
+	 *         is not called then.
+	 */
+	public boolean drainTo(BlockChangeVisitor visitor) {
+		int[] drainedBlocks;
+		int drainedBlockCount;
+		int[] drainedChunks;
+		int drainedChunkCount;
+		synchronized (this) {
+			if (overflow) {
+				clear();
+				return false;
+			}
+			drainedBlocks = blocks;
+			drainedBlockCount = blockCount;
+			drainedChunks = chunks;
+			drainedChunkCount = chunkCount;
+			blocks = drainBlocks;
+			chunks = drainChunks;
+			clear();
+		}
+		for (int i = 0; i < drainedChunkCount; i++) {
+			visitor.chunkChanged(drainedChunks[i * 2], drainedChunks[i * 2 + 1]);
+		}
+		for (int i = 0; i < drainedBlockCount; i++) {
+			visitor.blockChanged(drainedBlocks[i * 3], drainedBlocks[i * 3 + 1],
+					drainedBlocks[i * 3 + 2]);
+		}
+		synchronized (this) {
+			drainBlocks = drainedBlocks;
+			drainChunks = drainedChunks;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import net.minecraft.network.play.server.SChatPacket;
+
+/**
+ * The last chat messages we received. Only a fixed number of messages is
+ * kept, older ones are dropped.
+ * <p>
+ * Each message gets a sequence number. Readers remember the sequence after
+ * the last message they saw and then only read the new messages. Reading is
+ * possible from any thread.
+ *
+ * @author Michael Zangl
+ */
+public class ChatHistory {
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * A ring of messages with ascending sequence numbers.
+	 */
+	public static class MessageRing {
+		private final AtomicReferenceArray<PersistentChat> messages;
+		private final int mask;
+		/**
+		 * The number of messages ever added. Written after the message was
+		 * stored.
+		 */
+		private volatile long added;
+
+		private MessageRing(int capacity) {
+			if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+				throw new IllegalArgumentException(
+						"Capacity needs to be a power of two: " + capacity);
+			}
+			messages = new AtomicReferenceArray<>(capacity);
+			mask = capacity - 1;
+		}
+
+		/**
+		 * Only called by one writer at a time.
+		 */
+		void add(PersistentChat message) {
+			long index = added;
+			messages.set((int) index & mask, message);
+			added = index + 1;
+		}
+
+		/**
+		 * Gets all stored messages with a sequence number of at least the
+		 * given one. This only looks at the new messages.
+		 *
+		 * @param sequence
+		 *            The first sequence number to return.
+		 * @return The messages, oldest first.
+		 */
+		public List<PersistentChat> getSince(long sequence) {
+			long end = added;
+			long start = Math.max(0, end - messages.length());
+			ArrayList<PersistentChat> result = new ArrayList<>();
+			long lastSequence = Long.MAX_VALUE;
+			for (long i = end - 1; i >= start; i--) {
+				PersistentChat message = messages.get((int) i & mask);
+				// The slot may have been overwritten while we were reading.
+				if (message == null || message.getSequence() < sequence
+						|| message.getSequence() >= lastSequence) {
+					break;
+				}
+				result.add(message);
+				lastSequence = message.getSequence();
+			}
+			Collections.reverse(result);
+			return result;
+		}
+
+		public int getCapacity() {
+			return messages.length();
+		}
+	}
+
+	/**
+	 * Stores the messages matching a filter. It keeps them even if the
+	 * history already dropped them.
+	 */
+	public static class Index extends MessageRing {
+		private final Predicate<PersistentChat> filter;
+
+		private Index(Predicate<PersistentChat> filter, int capacity) {
+			super(capacity);
+			this.filter = filter;
+		}
+	}
+
+	private final MessageRing messages;
+	private final CopyOnWriteArrayList<Index> indexes = new CopyOnWriteArrayList<>();
+	private volatile long nextSequence;
+
+	public ChatHistory() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            The number of messages to keep. Needs to be a power of two.
+	 */
+	public ChatHistory(int capacity) {
+		messages = new MessageRing(capacity);
+	}
+
+	/**
+	 * Adds a received message to the history.
+	 *
+	 * @param packet
+	 *            The chat packet.
+	 * @return The stored message.
+	 */
+	public synchronized PersistentChat add(SChatPacket packet) {
+		PersistentChat message = new PersistentChat(packet, nextSequence);
+		messages.add(message);
+		for (Index index : indexes) {
+			if (index.filter.test(message)) {
+				index.add(message);
+			}
+		}
+		nextSequence++;
+		return message;
+	}
+
+	/**
+	 * @return The sequence number the next message will get.
+	 */
+	public long getNextSequence() {
+		return nextSequence;
+	}
+
+	/**
+	 * @return All stored messages.
+	 */
+	public MessageRing getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @see MessageRing#getSince(long)
+	 */
+	public List<PersistentChat> getSince(long sequence) {
+		return messages.getSince(sequence);
+	}
+
+	/**
+	 * @return All messages that are still stored.
+	 */
+	public List<PersistentChat> getAll() {
+		return messages.getSince(0);
+	}
+
+	/**
+	 * Starts indexing messages. The stored messages that match are added to
+	 * the index immediately.
+	 *
+	 * @param filter
+	 *            The messages to index.
+	 * @param capacity
+	 *            The number of messages the index keeps. A power of two.
+	 * @return The index. Remove it using {@link #removeIndex(Index)} when it
+	 *         is not needed any more.
+	 */
+	public synchronized Index addIndex(Predicate<PersistentChat> filter,
+			int capacity) {
+		Index index = new Index(filter, capacity);
+		for (PersistentChat message : getAll()) {
+			if (filter.test(message)) {
+				index.add(message);
+			}
+		}
+		indexes.add(index);
+		return index;
+	}
+
+	/**
+	 * Indexes all messages whose text contains the pattern.
+	 *
+	 * @see #addIndex(Predicate, int)
+	 */
+	public Index addPatternIndex(Pattern pattern, int capacity) {
+		return addIndex(m -> pattern.matcher(m.getText()).find(), capacity);
+	}
+
+	/**
+	 * Indexes all chat messages a player sent.
+	 *
+	 * @see #addIndex(Predicate, int)
+	 */
+	public Index addSenderIndex(String sender, int capacity) {
+		return addIndex(m -> sender.equals(m.getSender()), capacity);
+	}
+
+	public int getCapacity() {
+		return messages.getCapacity();
+	}
+
+	public void removeIndex(Index index) {
+		indexes.remove(index);
+	}
+}
@@ -1,5 +1,22 @@
 package net.famzangl.minecraft.minebot.ai.net;
 
+/**
+ * Receives changes of the world. All methods are called on the client thread
+ * right before the change is applied to the world, so the changed blocks
+ * cannot be read inside of them.
+ */
 public interface ChunkListener {
 	void chunkChanged(int chunkX, int chunkZ);
+
+	/**
+	 * A single block was changed. By default, this is reported as a change of
+	 * the whole chunk.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 */
+	default void blockChanged(int x, int y, int z) {
+		chunkChanged(x >> 4, z >> 4);
+	}
 }
@@ -1,8 +1,10 @@
 package net.famzangl.minecraft.minebot.ai.net;
 
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.network.play.IClientPlayNetHandler;
 import net.minecraft.network.IPacket;
 import net.minecraft.network.NetworkManager;
+import net.minecraft.network.PacketThreadUtil;
 import net.minecraft.network.play.server.SAdvancementInfoPacket;
 import net.minecraft.network.play.server.SAnimateBlockBreakPacket;
 import net.minecraft.network.play.server.SAnimateHandPacket;
@@ -108,6 +110,16 @@ public class MinebotClientPlayNetHandler implements IClientPlayNetHandler {
         this.handlers = handlers;
     }
 
+    /**
+     * Packets that change the world are handled on the client thread. The
+     * interceptors then see the change right before it is applied, and no
+     * one can read the world in between.
+     */
+    private void toClientThread(IPacket<IClientPlayNetHandler> packetIn) {
+        // Throws to stop the network thread if the packet was enqueued.
+        PacketThreadUtil.checkThreadAndEnqueue(packetIn, this, Minecraft.getInstance());
+    }
+
     @Override
     public void handleSpawnObject(SSpawnObjectPacket packetIn) {
         handlers.withInterceptors(packetIn, parentHandler::handleSpawnObject);
@@ -175,11 +187,13 @@ public class MinebotClientPlayNetHandler implements IClientPlayNetHandler {
 
     @Override
     public void handleBlockAction(SBlockActionPacket packetIn) {
+        toClientThread(packetIn);
         handlers.withInterceptors(packetIn, parentHandler::handleBlockAction);
     }
 
     @Override
     public void handleBlockChange(SChangeBlockPacket packetIn) {
+        toClientThread(packetIn);
         handlers.withInterceptors(packetIn, parentHandler::handleBlockChange);
     }
 
@@ -190,6 +204,7 @@ public class MinebotClientPlayNetHandler implements IClientPlayNetHandler {
 
     @Override
     public void handleMultiBlockChange(SMultiBlockChangePacket packetIn) {
+        toClientThread(packetIn);
         handlers.withInterceptors(packetIn, parentHandler::handleMultiBlockChange);
     }
 
@@ -270,6 +285,7 @@ public class MinebotClientPlayNetHandler implements IClientPlayNetHandler {
 
     @Override
     public void handleChunkData(SChunkDataPacket packetIn) {
+        toClientThread(packetIn);
         handlers.withInterceptors(packetIn, parentHandler::handleChunkData);
     }
 
@@ -37,8 +37,6 @@ import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
 
 import javax.annotation.ParametersAreNonnullByDefault;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -67,7 +65,7 @@ public class MinebotNetHandler implements NetworkHelper {
 
 	private LinkedHashMap<Integer, String> lastSendTabComplete = new LinkedHashMap<>();
 
-	private final ArrayList<PersistentChat> chatMessages = new ArrayList<PersistentChat>();
+	private final ChatHistory chatHistory = new ChatHistory();
 
 	public MinebotNetHandler() {
 		interceptors.addOutgoingInterceptor(CChatMessagePacket.class, this::sendPacketChatMessage);
@@ -191,9 +189,9 @@ public class MinebotNetHandler implements NetworkHelper {
 	}
 
 	private void blockChange(BlockPos pos) {
-		int chunkPosX = pos.getX() >> 4;
-		int chunkPosZ = pos.getZ() >> 4;
-		fireChunkChange(chunkPosX, chunkPosZ);
+		for (ChunkListener l : listeners) {
+			l.blockChanged(pos.getX(), pos.getY(), pos.getZ());
+		}
 	}
 
 	private void fireChunkChange(int chunkPosX, int chunkPosZ) {
@@ -214,7 +212,7 @@ public class MinebotNetHandler implements NetworkHelper {
 
 	public InterceptResult handleChat(SChatPacket packetIn) {
 		LOGGER.trace(MARKER_CHAT, "Received chat package: " + packetIn.hashCode() + ": " + packetIn.getChatComponent());
-		chatMessages.add(new PersistentChat(packetIn));
+		chatHistory.add(packetIn);
 		return InterceptResult.pass();
 	}
 
@@ -223,8 +221,14 @@ public class MinebotNetHandler implements NetworkHelper {
 		return InterceptResult.pass();
 	}
 
+	@Override
 	public List<PersistentChat> getChatMessages() {
-		return Collections.unmodifiableList(chatMessages);
+		return chatHistory.getAll();
+	}
+
+	@Override
+	public ChatHistory getChatHistory() {
+		return chatHistory;
 	}
 
 	private void injectInto(ClientPlayNetHandler oldHandler) {
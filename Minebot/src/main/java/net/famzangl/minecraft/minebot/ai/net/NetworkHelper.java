@@ -15,9 +15,17 @@ public interface NetworkHelper {
 	void removeChunkChangeListener(ChunkListener l);
 
 	/**
-	 * Gets a list of chat messages received since game start.
+	 * Gets the chat messages received since game start. Only the last
+	 * messages are kept.
 	 * 
 	 * @return The list of chat messages.
 	 */
 	public List<PersistentChat> getChatMessages();
+
+	/**
+	 * Gets the chat history. Use this to only read new messages.
+	 * 
+	 * @return The chat history.
+	 */
+	public ChatHistory getChatHistory();
 }
@@ -2,6 +2,7 @@ package net.famzangl.minecraft.minebot.ai.net;
 
 import net.minecraft.network.play.server.SChatPacket;
 import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.TranslationTextComponent;
 
 public class PersistentChat {
 
@@ -11,9 +12,35 @@ public class PersistentChat {
 
     private final long time = System.currentTimeMillis();
 
-    public PersistentChat(SChatPacket packetIn) {
+    private final long sequence;
+
+    private final String text;
+
+    private final String sender;
+
+    public PersistentChat(SChatPacket packetIn, long sequence) {
         chat = !packetIn.isSystem();
         message = packetIn.getChatComponent();
+        this.sequence = sequence;
+        text = message.getString();
+        sender = findSender(message);
+    }
+
+    /**
+     * Player messages are sent as chat.type.text or chat.type.emote with the
+     * player name as first argument.
+     */
+    private static String findSender(ITextComponent message) {
+        if (message instanceof TranslationTextComponent) {
+            TranslationTextComponent translation = (TranslationTextComponent) message;
+            Object[] args = translation.getFormatArgs();
+            if (translation.getKey().startsWith("chat.type.")
+                    && args.length > 0) {
+                return args[0] instanceof ITextComponent ? ((ITextComponent) args[0])
+                        .getString() : String.valueOf(args[0]);
+            }
+        }
+        return null;
     }
 
     public ITextComponent getMessage() {
@@ -28,10 +55,32 @@ public class PersistentChat {
         return time;
     }
 
+    /**
+     * @return The number of messages received before this one.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The message text without formatting.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return The player that sent this message or <code>null</code> if it
+     *         is not a player chat message.
+     */
+    public String getSender() {
+        return sender;
+    }
+
     @Override
     public String toString() {
-        return "PersistentChat [message=" + message + ", chat=" + chat
-                + "]";
+        return "PersistentChat [sequence=" + sequence + ", message="
+                + message + ", chat=" + chat + "]";
     }
 
 }
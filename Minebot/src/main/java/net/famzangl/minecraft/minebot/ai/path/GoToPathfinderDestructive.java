@@ -36,6 +36,17 @@ public class GoToPathfinderDestructive extends MovePathFinder {
         return targetArea.contains(world, x, y, z) ? distance : -1;
     }
 
+    @Override
+    protected int heuristic(int node) {
+        return targetArea.getDistanceLowerBound(getX(node), getY(node), getZ(node));
+    }
+
+    @Override
+    protected boolean isFieldReusable() {
+        // The target area and therefore the heuristic change on every search.
+        return false;
+    }
+
     @Override
     protected void noPathFound() {
         if (statsVisited < 50) {
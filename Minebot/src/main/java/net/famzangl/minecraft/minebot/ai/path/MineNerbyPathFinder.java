@@ -81,6 +81,12 @@ public class MineNerbyPathFinder extends MineBySettingsPathFinder {
 				&& isNearbyArea(cx, cy, cz);
 	}
 
+	@Override
+	protected boolean isFieldReusable() {
+		// The nearby area moves with the player.
+		return false;
+	}
+
 	private boolean isNearbyArea(int cx, int cy, int cz) {
 		return Math.abs(playerX - cx) <= RADIUS_HORIZONTAL
 				&& Math.abs(playerY - cy) <= RADIUS_VERTICAL
@@ -120,6 +126,12 @@ public class MineNerbyPathFinder extends MineBySettingsPathFinder {
 		}
 	}
 
+	@Override
+	public boolean canSearchAsync() {
+		// The activation point is changed by the strategy.
+		return false;
+	}
+
 	public void setActivationPoint(BlockPos activationPosition) {
 		this.activationPosition = activationPosition;
 	}
@@ -119,6 +119,12 @@ public abstract class MinePathfinder extends MovePathFinder {
 	protected void onPreRunSearch(BlockPos playerPosition) {
 	}
 
+	@Override
+	public boolean canSearchAsync() {
+		// Mining only looks at the world and the settings.
+		return true;
+	}
+
 	protected abstract BlockFloatMap getFactorProvider();
 
 	protected abstract BlockFloatMap getPointsProvider();
@@ -19,10 +19,15 @@ package net.famzangl.minecraft.minebot.ai.path;
 import net.famzangl.minecraft.minebot.ai.AIHelper;
 import net.famzangl.minecraft.minebot.ai.BlockItemFilter;
 import net.famzangl.minecraft.minebot.ai.PathFinderField;
+import net.famzangl.minecraft.minebot.ai.net.NetworkHelper;
 import net.famzangl.minecraft.minebot.ai.path.world.BlockSet;
 import net.famzangl.minecraft.minebot.ai.path.world.BlockSets;
 import net.famzangl.minecraft.minebot.ai.path.world.Pos;
 import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldSnapshot;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldWithDelta;
+import net.famzangl.minecraft.minebot.ai.profiler.TickProfiler;
+import net.famzangl.minecraft.minebot.ai.profiler.TickProfiler.Phase;
 import net.famzangl.minecraft.minebot.ai.task.AITask;
 import net.famzangl.minecraft.minebot.ai.task.move.*;
 import net.famzangl.minecraft.minebot.settings.MinebotSettings;
@@ -34,6 +39,7 @@ import net.minecraft.util.math.BlockPos;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 
 /**
@@ -49,7 +55,8 @@ public class MovePathFinder extends PathFinderField {
 	private static final Logger LOGGER = LogManager.getLogger(MovePathFinder.class);
 
 	/**
-	 * Blocks that are destructable faster.
+	 * Blocks that are destructable faster. Only used if the dig costs are not
+	 * known.
 	 */
 	protected final static BlockSet fastDestructableBlocks = BlockSet.builder().add(
 			Blocks.DIRT,
@@ -124,9 +131,50 @@ public class MovePathFinder extends PathFinderField {
 
 	private volatile BlockPos currentTarget;
 
+	/**
+	 * The dig costs for the next search. Set on the client thread.
+	 */
+	private volatile int[] nextDigCosts;
+	/**
+	 * The cost of digging through each block state for the current search, or
+	 * <code>null</code> if it is not known.
+	 */
+	protected int[] digCosts;
+
+	/**
+	 * Caches which positions have safe sides. Only set while we receive block
+	 * changes, since the cache would be outdated otherwise.
+	 */
+	private MoveScanner scanner;
+	/**
+	 * If the scanner can be used for the current world.
+	 */
+	private boolean useScanner;
+	/**
+	 * Set while we receive block changes.
+	 */
+	private boolean listening;
+	/**
+	 * The world and dig costs of the last search. The field of that search
+	 * is only reused if they match.
+	 */
+	private WorldData fieldWorld;
+	private int[] fieldDigCosts;
+
 	public MovePathFinder() {
+		this(MinebotSettings.getSettings());
+	}
+
+	/**
+	 * Creates a path finder that uses the given settings instead of the ones
+	 * in the settings file. Used for the benchmarks, that run without a game.
+	 * 
+	 * @param settings
+	 *            The compiled settings.
+	 */
+	public MovePathFinder(MinebotSettingsRoot settings) {
 		super();
-		settings = MinebotSettings.getSettings();
+		this.settings = settings;
 		pathSettings = loadSettings(settings);
 
 		upwardsBuildBlocks = pathSettings.getUpwardsBuildBlocks();
@@ -167,7 +215,126 @@ public class MovePathFinder extends PathFinderField {
 		this.helper = helper;
 		this.world = world;
 		this.receiver = receiver;
-		return runSearch(playerPosition);
+		// Benchmarks search without a helper and use the default costs.
+		if (helper != null && !(world instanceof WorldSnapshot)) {
+			nextDigCosts = helper.getDigCosts();
+		}
+		digCosts = nextDigCosts;
+		if (fieldWorld != world) {
+			switchWorld(world);
+		}
+		// The scanner only knows the real world, not the expected one. It
+		// may only be used on the client thread.
+		useScanner = scanner != null && world.getCurrentState() == world
+				&& !(world instanceof WorldSnapshot);
+		if (useScanner) {
+			long start = TickProfiler.start();
+			scanner.setWorld(world.getBackingWorld());
+			scanner.prefetch(playerPosition.getX(), playerPosition.getY(),
+					playerPosition.getZ(), 2);
+			TickProfiler.end(Phase.SCAN, scanner.getClass(), start);
+		}
+		long hits = world.getStatsCacheHits();
+		long misses = world.getStatsCacheMisses();
+		long start = TickProfiler.start();
+		boolean finished = runSearch(playerPosition);
+		TickProfiler.end(Phase.PATH_SEARCH, getClass(), start);
+		fieldDigCosts = digCosts;
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Chunk cache during path finding: "
+					+ (world.getStatsCacheHits() - hits) + " hits, "
+					+ (world.getStatsCacheMisses() - misses) + " misses");
+		}
+		return finished;
+	}
+
+	/**
+	 * Checks if this path finder may search on a {@link WorldSnapshot} on a
+	 * different thread. This requires that the search only accesses
+	 * {@link #world} and the settings, and no other game state.
+	 * 
+	 * @return <code>true</code> if the search may run asynchronously.
+	 */
+	public boolean canSearchAsync() {
+		return false;
+	}
+
+	/**
+	 * Copies the part of the world this path finder may search. Needs to be
+	 * called on the client thread.
+	 * 
+	 * @param helper
+	 *            The helper to get the real world and the dig costs from.
+	 * @return The snapshot around the player.
+	 */
+	public WorldSnapshot takeSnapshot(AIHelper helper) {
+		// The search thread may not look at the inventory.
+		nextDigCosts = helper.getDigCosts();
+		WorldData world = helper.getWorld();
+		BlockPos player = world.getPlayerPosition();
+		// The search looks at up to 3 blocks above the field.
+		return new WorldSnapshot(world, player.add(
+				-HORIZONTAL_SEARCH_DISTANCE - 1, -VERTICAL_SEARCH_DISTANCE - 3,
+				-HORIZONTAL_SEARCH_DISTANCE - 1), player.add(
+				HORIZONTAL_SEARCH_DISTANCE + 1, VERTICAL_SEARCH_DISTANCE + 3,
+				HORIZONTAL_SEARCH_DISTANCE + 1));
+	}
+
+	/**
+	 * Starts receiving block changes. This lets the path finder repair running
+	 * searches and cache which blocks can be walked to.
+	 * 
+	 * @param networkHelper
+	 *            The network helper to get the changes from.
+	 */
+	public void startListening(NetworkHelper networkHelper) {
+		scanner = new MoveScanner();
+		networkHelper.addChunkChangeListener(getBlockChangeListener());
+		networkHelper.addChunkChangeListener(scanner);
+		listening = true;
+	}
+
+	/**
+	 * Stops receiving block changes.
+	 * 
+	 * @param networkHelper
+	 *            The network helper passed to
+	 *            {@link #startListening(NetworkHelper)}
+	 */
+	public void stopListening(NetworkHelper networkHelper) {
+		listening = false;
+		networkHelper.removeChunkChangeListener(getBlockChangeListener());
+		if (scanner != null) {
+			networkHelper.removeChunkChangeListener(scanner);
+			scanner = null;
+		}
+	}
+
+	/**
+	 * The field was computed for an other world. If both worlds only differ in
+	 * the blocks replaced by a {@link WorldWithDelta}, those blocks are
+	 * reported as changed. Otherwise, the field is dropped.
+	 */
+	private void switchWorld(WorldData world) {
+		if (fieldWorld != null
+				&& fieldWorld.getCurrentState() == world.getCurrentState()) {
+			if (fieldWorld instanceof WorldWithDelta) {
+				((WorldWithDelta) fieldWorld)
+						.reportReplacedBlocks(getBlockChangeListener());
+			}
+			if (world instanceof WorldWithDelta) {
+				((WorldWithDelta) world)
+						.reportReplacedBlocks(getBlockChangeListener());
+			}
+		} else {
+			abort();
+		}
+		fieldWorld = world;
+	}
+
+	@Override
+	protected boolean isFieldReusable() {
+		return listening && Arrays.equals(digCosts, fieldDigCosts);
 	}
 
 	/**
@@ -203,13 +370,26 @@ public class MovePathFinder extends PathFinderField {
 	 * @return true if we can go there
 	 */
 	protected boolean isSafeToTravel(int currentNode, int cx, int cy, int cz) {
-		return BlockSets.safeSideAround(world, cx, cy + 1, cz)
-				&& isAllowedPosition(cx, cy, cz)
-				&& BlockSets.safeSideAround(world, cx, cy, cz)
+		return isAllowedPosition(cx, cy, cz)
+				&& hasSafeSides(cx, cy, cz)
 				&& checkHeadBlock(currentNode, cx, cy, cz)
 				&& checkGroundBlock(currentNode, cx, cy, cz);
 	}
 
+	/**
+	 * Checks the sides of the feet and the head.
+	 */
+	private boolean hasSafeSides(int cx, int cy, int cz) {
+		if (useScanner) {
+			int scanned = scanner.getSafeSides(cx, cy, cz);
+			if (scanned >= 0) {
+				return scanned != 0;
+			}
+		}
+		return BlockSets.safeSideAround(world, cx, cy + 1, cz)
+				&& BlockSets.safeSideAround(world, cx, cy, cz);
+	}
+
 	/**
 	 * Are we allowed to travel there, only looking at the blocks that we need.
 	 * 
@@ -380,6 +560,8 @@ public class MovePathFinder extends PathFinderField {
 		if (asFloor && shortFootBlocks.isAt(world, x, y, z) || !asFloor
 				&& shortHeadBlocks.isAt(world, x, y, z)) {
 			return 0;
+		} else if (digCosts != null) {
+			return digCosts[world.getBlockStateId(x, y, z)];
 		} else if (fastDestructableBlocks.isAt(world, x, y, z)) {
 			// fast breaking gives bonus.
 			return 1;
@@ -16,390 +16,170 @@
  *******************************************************************************/
 package net.famzangl.minecraft.minebot.ai.path;
 
-import net.famzangl.minecraft.minebot.ai.AIHelper;
-import net.famzangl.minecraft.minebot.ai.PathFinderField;
-import net.famzangl.minecraft.minebot.ai.path.world.BlockSet;
+import net.famzangl.minecraft.minebot.ai.net.ChunkListener;
 import net.famzangl.minecraft.minebot.ai.path.world.BlockSets;
-import net.minecraft.block.Block;
-import net.minecraft.block.BlockState;
-import net.minecraft.entity.Entity;
-import net.minecraft.entity.monster.CreeperEntity;
-import net.minecraft.entity.monster.SkeletonEntity;
-import net.minecraft.entity.monster.SpiderEntity;
-import net.minecraft.entity.monster.ZombieEntity;
-import net.minecraft.util.ClassInheritanceMultiMap;
-import net.minecraft.util.palette.PalettedContainer;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldData.ChunkAccessorUnmodified;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.BitArray;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.ChunkSection;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Scanns the area around a given position for blocks. The scanner is
- * chunk-oriented.
+ * Scans the area around the player for positions that have safe sides at the
+ * feet and at the head. This is the same as
+ * {@link BlockSets#safeSideAround(net.famzangl.minecraft.minebot.ai.path.world.WorldData, int, int, int)}
+ * for both blocks, which is the most expensive part of checking if a position
+ * can be walked to.
  * <p>
- * Scanning order:
+ * The scanner is section-oriented. The blocks of each 16x16x16 section are
+ * copied on the client thread. Then the section is scanned in two steps, both
+ * on a background thread:
  * <p>
- * With {@link ScanChunkTask}: Scan the chunk (16x16x16) from Minecraft. (This
- * might need to be in sync with a game cycle. ??) This includes block state and
- * other stuff. <br>
- * Mark it for propagation in all directions.
+ * {@link ScannedSection#blocksScanned}: Read the copied blocks and remember
+ * which of them are safe sides.
  * <p>
- * With PropagateChunkTask: Check for incomming propagations. If there are
- * pending scans in neighbours, re-schedule as soon as they are complete (each
- * neighbour has a pending queue for this). Propagate blocks from each of the 6
- * directions. Propagate entities from each of the 6 directions. Then propagate
- * entities as long as there are changes (from all 6 directions in any order).
- * 
+ * {@link ScannedSection#safeSides}: As soon as the section, the sections next
+ * to it and the ones above them are scanned, combine the sides of every
+ * position.
+ * <p>
+ * Sections that are not scanned yet are reported as unknown, so that the path
+ * finder never needs to wait for the scanner. The scanner needs to receive all
+ * chunk changes to drop the sections that changed.
+ *
  * @author michael
  *
  */
-public class MoveScanner {
+public class MoveScanner implements ChunkListener {
+	private static final Logger LOGGER = LogManager.getLogger(MoveScanner.class);
+
 	/**
-	 * A 16 x 16 x 16 scanned cube.
-	 * 
-	 * @author michael
-	 *
+	 * How many chunks this scanner keeps in each direction. Power of 2! Should
+	 * be more than the path finder field size.
 	 */
-	public static class ScannedChunk implements Comparable<ScannedChunk> {
-		/**
-		 * When basic block scanning finished. This is just reading block and
-		 * entity postions from the chunk.
-		 */
-		public final DependWaitEvent blockScanningDone = new DependWaitEvent();
-		/**
-		 * The #BLOCK_HAS_GOOD_SIDES_TEMP flag was set.
-		 */
-		public final DependWaitEvent sideTempScanningDone = new DependWaitEvent();
-		/**
-		 * The BLOCK_IS_SAFE_TO_GO flag was set.
-		 */
-		public final DependWaitEvent safeToGoScanningDone = new DependWaitEvent();
-		public final ReadWriteLock blockLock = new ReentrantReadWriteLock();
+	private static final int CHUNK_SLOTS_X_Z = 32;
+	private static final int CHUNK_SLOTS_Y = 16;
+	private static final int SECTION_WORDS = 16 * 16 * 16 / 64;
 
-		private final int blockOffset;
-		/**
-		 * Our local block flags.
-		 */
-		private final short[] blocks;
-		private final byte[] dangerZone;
-		private static final int DEFAULT_POSITION_FLAGS = 0;
+	/**
+	 * Used for everything above the world. It only contains air.
+	 */
+	private static final CompletableFuture<long[]> ALL_SAFE;
+	static {
+		long[] allSafe = new long[SECTION_WORDS];
+		Arrays.fill(allSafe, -1);
+		ALL_SAFE = CompletableFuture.completedFuture(allSafe);
+	}
 
-		/**
-		 * What we want to propagate to our neighbours. This can be: <li>The
-		 * head-Flag
-		 */
-		private final int[] propagationFlags = new int[] { 0, 0, 0, 0, 0, 0 };
+	private static final ExecutorService SCAN_THREADS;
+	static {
+		AtomicInteger threadCount = new AtomicInteger();
+		SCAN_THREADS = Executors.newFixedThreadPool(
+				Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+				r -> {
+					Thread thread = new Thread(r, "minebot-move-scanner-"
+							+ threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/**
+	 * A 16 x 16 x 16 scanned cube. The bits are ordered like Minecraft orders
+	 * the blocks of a section: y, z, x.
+	 *
+	 * @author michael
+	 *
+	 */
+	private static class ScannedSection {
 		private final int chunkX;
 		private final int chunkY;
 		private final int chunkZ;
-
-		public ScannedChunk(int chunkX, int chunkY, int chunkZ, short[] blocks,
-				byte[] dangerZone, int blockOffset) {
-			this.chunkX = chunkX;
-			this.chunkY = chunkY;
-			this.chunkZ = chunkZ;
-			this.blocks = blocks;
-			this.dangerZone = dangerZone;
-			this.blockOffset = blockOffset;
-		}
-
 		/**
-		 * Does a scan of this chunk. Calling policy: You (only) need to hold a
-		 * write lock of this chunk.
-		 * 
-		 * @param chunk
-		 * @param chunkY
-		 * @param policy
+		 * One bit per block, set if the block is a safe side.
 		 */
-		public void scanBlocks(Chunk chunk, int chunkY, ScannerPolicy policy) {
-			ChunkSection storage = chunk.getSections()[chunkY];
-			
-			PalettedContainer<BlockState> data = storage.getData();
-//			char[] array = storage.getData();
-			for (int y = 0; y < 16; y++) {
-				for (int z = 0; z < 16; z++) {
-					int oResult = local(0, y, z);
-//					int oFrom = (y << 8 | z << 4);
-					for (int x = 0; x < 16; x ++) {
-//						int data = array[oFrom + x];
-//						
-//						blocks[oResult + x] = (short) (policy.getPositionFlags(data) | DEFAULT_POSITION_FLAGS);
-						blocks[oResult + x] = (short) (policy.getPositionFlags(data.get(x, y, z)) | DEFAULT_POSITION_FLAGS);
-					}
-				}
-			}
-
-			@SuppressWarnings("unchecked")
-			ClassInheritanceMultiMap entities = chunk.getEntityLists()[chunkY];
-			for (Object o : entities) {
-				Entity e = (Entity) o;
-				int distance = policy.getDangerDistanceFor(e);
-				if (distance > 0) {
-					int lx = ((int) Math.floor(e.getPosX() + .5)) & 0xf;
-					int ly = ((int) Math.floor(e.getPosY() + .5)) & 0xf;
-					int lz = ((int) Math.floor(e.getPosZ() + .5)) & 0xf;
-					int local = local(lx, ly, lz);
-					if (dangerZone[local] < distance) {
-						dangerZone[local] = (byte) distance;
-					}
-				}
-			}
-			blockScanningDone.enterState();
-		}
-
-		/**
-		 * Requires read lock of fromDirection-chunk and write lock of this one.
-		 * 
-		 * @param fromDirection
-		 */
-		// public void propagateBlockChanges(Direction fromDirection,
-		// short flagsToMerge, short flagToRevoke) {
-		// for (int y = 0; y < 16; y++) {
-		// if (local(0, y + fromDirection.offsetY, 0) < 0
-		// || local(0, y + fromDirection.offsetY, 0) >= blocks.length) {
-		// continue;
-		// }
-		// for (int z = 0; z < 16; z++) {
-		// for (int x = 0; x < 16; x++) {
-		// int from = local(x + fromDirection.offsetX, z
-		// + fromDirection.offsetZ, z
-		// + fromDirection.offsetZ);
-		// int to = local(x, y, z);
-		// if ((blocks[from] & flagsToMerge) != 0) {
-		// blocks[to] |= BLOCK_IS_NOT_SAFE_TO_GO;
-		// }
-		// }
-		// }
-		// }
-		// }
-
+		private final CompletableFuture<long[]> blocksScanned;
 		/**
-		 * Requires read lock for adjacent chunks.
+		 * One bit per position, set if the feet and the head have safe sides.
+		 * <code>null</code> as long as the neighbours are not scanned.
 		 */
-		public void computeHasSafeSides() {
-			for (int y = 0; y < 16; y++) {
-				// if (y == 16 && chunkY == 16) {
-				// // the top row is just not accessible.
-				// continue;
-				// }
-				for (int z = 0; z < 16; z++) {
-					for (int x = 0; x < 16; x++) {
-						boolean safeSide = side(blocks[local(x + 1, y, z)])
-								&& side(blocks[local(x - 1, y, z)])
-								&& side(blocks[local(x, y, z + 1)])
-								&& side(blocks[local(x, y, z - 1)]);
-						if (safeSide) {
-							blocks[local(x, y, z)] |= BLOCK_HAS_GOOD_SIDES_TEMP;
-						} // TODO: Delete on second run.
-					}
-				}
-			}
-
-			sideTempScanningDone.enterState();
-		}
+		private volatile long[] safeSides;
+		private boolean safeSidesScheduled;
 
-		public void computeIsSafeToGo() {
-			for (int y = 0; y < 16; y++) {
-				if (y >= 15 && chunkY >= 15 || chunkY == 0 && y == 0) {
-					// the top row is just not accessible.
-					continue;
-				}
-				for (int z = 0; z < 16; z++) {
-					for (int x = 0; x < 16; x++) {
-						boolean safeToGo = safeSidesAndFoot(blocks[local(x, y,
-								z)])
-								&& safeSidesAndHead(blocks[local(x, y + 1, z)])
-								&& safeGround(blocks[local(x, y - 1, z)])
-								&& safeCeiling(blocks[local(x, y + 2, z)]);
-						if (safeToGo) {
-							blocks[local(x, y, z)] |= BLOCK_IS_SAFE_TO_GO;
-						} // TODO: Delete on second run.
-					}
-				}
-			}
-
-			safeToGoScanningDone.enterState();
-		}
-
-		private boolean side(short flagSet) {
-			return (flagSet & BLOCK_IS_SAFE_SIDE) == BLOCK_IS_SAFE_SIDE;
-		}
-
-		private boolean safeSidesAndHead(short flagSet) {
-			return (flagSet & (BLOCK_IS_SAFE_SIDE | BLOCK_IS_SAFE_HEAD)) == (BLOCK_IS_SAFE_SIDE | BLOCK_IS_SAFE_HEAD);
-		}
-
-		private boolean safeSidesAndFoot(short flagSet) {
-			return (flagSet & (BLOCK_IS_SAFE_SIDE | BLOCK_IS_SAFE_FOOT)) == (BLOCK_IS_SAFE_SIDE | BLOCK_IS_SAFE_FOOT);
-		}
-
-		private boolean safeGround(short flagSet) {
-			return (flagSet & BLOCK_IS_SAFE_GROUND) != 0;
-		}
-
-		private boolean safeCeiling(short flagSet) {
-			return (flagSet & BLOCK_IS_SAFE_HEAD) != 0;
-		}
-
-		public int getBlockData(int lx, int ly, int lz) {
-			return this.blocks[local(lx, ly, lz)] & 255;
-
-		}
-
-		private int local(int lx, int ly, int lz) {
-			return ly * STRIDE_Y + lz * STRIDE_Z + lx * STRIDE_X + blockOffset;
+		public ScannedSection(int chunkX, int chunkY, int chunkZ,
+				BitArray ids) {
+			this.chunkX = chunkX;
+			this.chunkY = chunkY;
+			this.chunkZ = chunkZ;
+			blocksScanned = ids == null ? ALL_SAFE : CompletableFuture
+					.supplyAsync(() -> scanBlocks(ids), SCAN_THREADS);
 		}
 
-		/**
-		 * Locks one chunk for writing and the rest for reading. Might reorder
-		 * the read lock array.
-		 * 
-		 * @param writeLock
-		 * @param readLock
-		 */
-		public static void lock(ScannedChunk writeLock,
-				ScannedChunk... readLock) {
-			Arrays.sort(readLock);
-			boolean writeLocked = false;
-			for (int i = 0; i < readLock.length; i++) {
-				if (!writeLocked && writeLock.compareTo(readLock[i]) < 0) {
-					writeLock.blockLock.writeLock().lock();
-					writeLocked = true;
-				}
-				readLock[i].blockLock.readLock().lock();
-			}
-			if (!writeLocked) {
-				writeLock.blockLock.writeLock().lock();
-			}
+		public boolean isAt(int chunkX, int chunkY, int chunkZ) {
+			return this.chunkX == chunkX && this.chunkY == chunkY
+					&& this.chunkZ == chunkZ;
 		}
 
 		@Override
-		public int compareTo(ScannedChunk o) {
-			if (chunkY == o.chunkY) {
-				if (chunkZ == o.chunkZ) {
-					return chunkX - o.chunkX;
-				} else {
-					return chunkZ - o.chunkZ;
-				}
-			} else {
-				return chunkY - o.chunkY;
-			}
-		}
-
-		public static void unlock(ScannedChunk writeLock,
-				ScannedChunk[] readLock) {
-			for (int i = 0; i < readLock.length; i++) {
-				readLock[i].blockLock.readLock().unlock();
-			}
-			writeLock.blockLock.writeLock().unlock();
+		public String toString() {
+			return "ScannedSection [chunkX=" + chunkX + ", chunkY=" + chunkY
+					+ ", chunkZ=" + chunkZ + "]";
 		}
 	}
 
 	/**
-	 * This is an dependend state for any task. It allows tasks to wait for the
-	 * state and at the same time atomically lock the state so that the state
-	 * may only be exited as soon as the task finished work.
-	 * 
-	 * @author michael
-	 *
+	 * The section array. Sections are stored at their coordinates modulo the
+	 * array size. Only accessed on the client thread.
 	 */
-	public static class DependWaitEvent {
-
-		private final boolean stateReached = false;
-		/**
-		 * Task list has two meanings:
-		 * <p>
-		 * If stateReached == false it is a list of tasks to notify when state
-		 * reached.
-		 * <p>
-		 * if stateReached == true it is a list of tasks inside us.
-		 */
-		private final LinkedList<DependingTask> taskList = new LinkedList<DependingTask>();
+	private final ScannedSection[] sections = new ScannedSection[CHUNK_SLOTS_X_Z
+			* CHUNK_SLOTS_X_Z * CHUNK_SLOTS_Y];
 
-		private final Object mutex = new Object();
+	private ClientWorld world;
 
-		/**
-		 * 
-		 * @param task
-		 * @return <code>true</code> if the lock is acquired, false if this task
-		 *         was set on the wait queue to be notified.
-		 */
-		public boolean enterWithTask(DependingTask task) {
-			synchronized (mutex) {
-				taskList.add(task);
-				if (stateReached) {
-					return true;
-				} else {
-					return false;
-				}
-			}
-		}
-
-		/**
-		 * Releases the lock held by this task. Ignored if it has no lock.
-		 * 
-		 * @param task
-		 */
-		public void exitWithTask(DependingTask task) {
-			synchronized (mutex) {
-				if (stateReached) {
-					taskList.remove(task);
-					mutex.notifyAll();
-				}
-			}
-		}
-
-		/**
-		 * Notifies that the state was entered.
-		 */
-		public void enterState() {
-			synchronized (mutex) {
-				if (stateReached) {
-					throw new IllegalStateException();
-				}
-				while (!taskList.isEmpty()) {
-					DependingTask task = taskList.remove();
-					task.dependencyReached();
-				}
-				mutex.notifyAll();
-			}
+	/**
+	 * Sets the world to scan. Drops everything if the world changed.
+	 *
+	 * @param world
+	 *            The minecraft world.
+	 */
+	public void setWorld(ClientWorld world) {
+		if (this.world != world) {
+			clear();
+			this.world = world;
 		}
+	}
 
-		/**
-		 * Exits this state. Blocks until all tasks requireing this state are
-		 * done.
-		 */
-		public void exitState() {
-			synchronized (mutex) {
-				if (!stateReached) {
-					throw new IllegalStateException();
-				}
-				while (!taskList.isEmpty()) {
-					try {
-						mutex.wait();
-					} catch (InterruptedException e) {
-					}
-				}
-			}
-
-		}
+	/**
+	 * Drops all scanned sections.
+	 */
+	public void clear() {
+		Arrays.fill(sections, null);
+	}
 
-		public void waitForEvent() {
-			synchronized (mutex) {
-				while (!stateReached) {
-					try {
-						mutex.wait();
-					} catch (InterruptedException e) {
+	/**
+	 * Starts scanning the sections around a position in the background.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param chunkRadius
+	 *            How many chunks to scan in each direction.
+	 */
+	public void prefetch(int x, int y, int z, int chunkRadius) {
+		for (int chunkX = (x >> 4) - chunkRadius; chunkX <= (x >> 4)
+				+ chunkRadius; chunkX++) {
+			for (int chunkZ = (z >> 4) - chunkRadius; chunkZ <= (z >> 4)
+					+ chunkRadius; chunkZ++) {
+				for (int chunkY = (y >> 4) - 1; chunkY <= (y >> 4) + 1; chunkY++) {
+					if (chunkY >= 0 && chunkY < CHUNK_SLOTS_Y) {
+						requestSafeSides(getSection(chunkX, chunkY, chunkZ));
 					}
 				}
 			}
@@ -407,314 +187,196 @@ public class MoveScanner {
 	}
 
 	/**
-	 * A simple tasks that depends on a common goal.
-	 * 
-	 * @author michael
+	 * Checks if the feet and the head at a position have safe sides. Starts a
+	 * scan of that section if it is not known yet.
 	 *
+	 * @param x
+	 * @param y
+	 *            The feet position
+	 * @param z
+	 * @return 1 if the sides are safe, 0 if they are not safe, -1 if the
+	 *         section was not scanned yet.
 	 */
-	public static abstract class DependingTask implements Runnable {
-		private ThreadPoolExecutor threadPool;
-
-		public List<DependWaitEvent> waitingOnEvents() {
-			return Collections.emptyList();
+	public int getSafeSides(int x, int y, int z) {
+		if (y < 0 || y >= CHUNK_SLOTS_Y * 16 || world == null) {
+			return -1;
+		}
+		ScannedSection section = sections[slot(x >> 4, y >> 4, z >> 4)];
+		long[] safeSides;
+		if (section == null || !section.isAt(x >> 4, y >> 4, z >> 4)) {
+			requestSafeSides(getSection(x >> 4, y >> 4, z >> 4));
+			return -1;
+		} else if ((safeSides = section.safeSides) == null) {
+			requestSafeSides(section);
+			return -1;
+		} else {
+			int index = (y & 15) << 8 | (z & 15) << 4 | x & 15;
+			return (int) (safeSides[index >> 6] >>> index) & 1;
 		}
+	}
 
-		@Override
-		public final synchronized void run() {
-			List<DependWaitEvent> depends = waitingOnEvents();
-			try {
-				for (DependWaitEvent e : depends) {
-					if (!e.enterWithTask(this)) {
-						// We are added to wait queue.
-						return;
-					}
-				}
-				doRun();
-			} finally {
-				for (DependWaitEvent e : depends) {
-					e.exitWithTask(this);
+	@Override
+	public void chunkChanged(int chunkX, int chunkZ) {
+		// Positions next to the chunk look at its blocks.
+		for (int x = chunkX - 1; x <= chunkX + 1; x++) {
+			for (int z = chunkZ - 1; z <= chunkZ + 1; z++) {
+				for (int y = 0; y < CHUNK_SLOTS_Y; y++) {
+					invalidate(x, y, z);
 				}
 			}
 		}
-
-		public abstract void doRun();
-
-		public void setThreadPoolToUse(ThreadPoolExecutor threadPool) {
-			this.threadPool = threadPool;
-		}
-
-		public void dependencyReached() {
-			threadPool.execute(this);
-		}
 	}
 
-	public static class DependingTaskScheduler {
-		private final ThreadPoolExecutor threadPool;
-
-		public DependingTaskScheduler() {
-			threadPool = new ThreadPoolExecutor(4, 20, 60, TimeUnit.SECONDS,
-					new LinkedBlockingQueue<Runnable>());
+	@Override
+	public void blockChanged(int x, int y, int z) {
+		// The block is a side of the blocks next to it. They are the feet or
+		// the head of a position.
+		for (int cx = x - 1 >> 4; cx <= x + 1 >> 4; cx++) {
+			for (int cz = z - 1 >> 4; cz <= z + 1 >> 4; cz++) {
+				for (int cy = y - 1 >> 4; cy <= y >> 4; cy++) {
+					invalidate(cx, cy, cz);
+				}
+			}
 		}
+	}
 
-		public void addTask(DependingTask task) {
-			task.setThreadPoolToUse(threadPool);
-			threadPool.execute(task);
+	private void invalidate(int chunkX, int chunkY, int chunkZ) {
+		if (chunkY < 0 || chunkY >= CHUNK_SLOTS_Y) {
+			return;
 		}
-
-		@Override
-		protected void finalize() throws Throwable {
-			threadPool.shutdown();
+		int slot = slot(chunkX, chunkY, chunkZ);
+		ScannedSection section = sections[slot];
+		if (section != null && section.isAt(chunkX, chunkY, chunkZ)) {
+			sections[slot] = null;
 		}
 	}
 
 	/**
-	 * Scan a chunk and produce a scanned chunk.
-	 * 
-	 * @author michael
-	 *
+	 * Gets a section and starts scanning its blocks if it is not there.
 	 */
-	public static class ScanChunkTask extends DependingTask {
-
-		private final ScannerPolicy policy;
-		private final ScannedChunk chunk;
-		private final Chunk mcChunk;
-
-		public ScanChunkTask(ScannedChunk chunk, ScannerPolicy policy,
-				Chunk mcChunk) {
-			this.chunk = chunk;
-			this.policy = policy;
-			this.mcChunk = mcChunk;
-		}
-
-		@Override
-		public void doRun() {
-			Lock writeLock = chunk.blockLock.writeLock();
-			writeLock.lock();
-			try {
-				chunk.scanBlocks(mcChunk, chunk.chunkY, policy);
-			} finally {
-				writeLock.unlock();
-			}
+	private ScannedSection getSection(int chunkX, int chunkY, int chunkZ) {
+		int slot = slot(chunkX, chunkY, chunkZ);
+		ScannedSection section = sections[slot];
+		if (section == null || !section.isAt(chunkX, chunkY, chunkZ)) {
+			// The scan threads may not read the section, Minecraft changes
+			// it on the client thread.
+			Chunk chunk = world.getChunk(chunkX, chunkZ);
+			ChunkSection storage = chunk.getSections()[chunkY];
+			BitArray ids = storage == null || ChunkSection.isEmpty(storage) ? null
+					: new ChunkAccessorUnmodified(chunk).copySection(chunkY);
+			section = new ScannedSection(chunkX, chunkY, chunkZ, ids);
+			sections[slot] = section;
 		}
+		return section;
 	}
 
-	public class PropagateSidesOfChunkTask extends DependingTask {
-
-		private final ScannedChunk chunk;
-
-		/**
-		 * 
-		 * @param chunk
-		 */
-		public PropagateSidesOfChunkTask(ScannedChunk chunk) {
-			this.chunk = chunk;
-		}
-
-		@Override
-		public void doRun() {
-			ScannedChunk[] readLocks = new ScannedChunk[] {
-					getChunk(chunk.chunkX + 1, chunk.chunkY, chunk.chunkZ),
-					getChunk(chunk.chunkX - 1, chunk.chunkY, chunk.chunkZ),
-					getChunk(chunk.chunkX, chunk.chunkY, chunk.chunkZ + 1),
-					getChunk(chunk.chunkX, chunk.chunkY, chunk.chunkZ - 1) };
-
-			try {
-				// accquire negative lock first.
-
-				ScannedChunk.lock(chunk, readLocks);
-				chunk.computeHasSafeSides();
-			} finally {
-
-				ScannedChunk.unlock(chunk, readLocks);
-			}
+	private CompletableFuture<long[]> getBlocksScanned(int chunkX, int chunkY,
+			int chunkZ) {
+		if (chunkY >= CHUNK_SLOTS_Y) {
+			return ALL_SAFE;
 		}
+		return getSection(chunkX, chunkY, chunkZ).blocksScanned;
 	}
 
-	public class PropagateSafeToGoTask extends DependingTask {
-
-		private final ScannedChunk chunk;
-
-		/**
-		 * 
-		 * @param chunk
-		 */
-		public PropagateSafeToGoTask(ScannedChunk chunk) {
-			this.chunk = chunk;
-		}
-
-		@Override
-		public void doRun() {
-			ScannedChunk up = getChunk(chunk.chunkX, chunk.chunkY + 1,
-					chunk.chunkZ);
-			ScannedChunk down = getChunk(chunk.chunkX, chunk.chunkY - 1,
-					chunk.chunkZ);
-			ScannedChunk[] readLocks;
-			if (chunk.chunkY == 0) {
-				readLocks = new ScannedChunk[] { up };
-			} else if (chunk.chunkY >= 15) {
-				readLocks = new ScannedChunk[] { down };
-			} else {
-				readLocks = new ScannedChunk[] { up, down };
+	/**
+	 * Schedules the side computation as soon as all neighbours are scanned.
+	 */
+	private void requestSafeSides(ScannedSection section) {
+		if (section.safeSidesScheduled) {
+			return;
+		}
+		section.safeSidesScheduled = true;
+		// Same section and the one above, each with their neighbours.
+		@SuppressWarnings("unchecked")
+		CompletableFuture<long[]>[] scanned = new CompletableFuture[10];
+		for (int dy = 0; dy <= 1; dy++) {
+			int y = section.chunkY + dy;
+			scanned[dy * 5] = getBlocksScanned(section.chunkX, y, section.chunkZ);
+			scanned[dy * 5 + 1] = getBlocksScanned(section.chunkX + 1, y, section.chunkZ);
+			scanned[dy * 5 + 2] = getBlocksScanned(section.chunkX - 1, y, section.chunkZ);
+			scanned[dy * 5 + 3] = getBlocksScanned(section.chunkX, y, section.chunkZ + 1);
+			scanned[dy * 5 + 4] = getBlocksScanned(section.chunkX, y, section.chunkZ - 1);
+		}
+		CompletableFuture.allOf(scanned).thenRunAsync(() -> {
+			long[][] blocks = new long[scanned.length][];
+			for (int i = 0; i < scanned.length; i++) {
+				blocks[i] = scanned[i].join();
 			}
+			section.safeSides = computeSafeSides(blocks);
+		}, SCAN_THREADS).exceptionally(e -> {
+			LOGGER.error("Could not scan {}", section, e);
+			return null;
+		});
+	}
 
-			try {
-				// accquire negative lock first.
-
-				ScannedChunk.lock(chunk, readLocks);
-				chunk.computeIsSafeToGo();
-			} finally {
-
-				ScannedChunk.unlock(chunk, readLocks);
-			}
-		}
+	private int slot(int chunkX, int chunkY, int chunkZ) {
+		return (chunkY * CHUNK_SLOTS_X_Z + (chunkZ & CHUNK_SLOTS_X_Z - 1))
+				* CHUNK_SLOTS_X_Z + (chunkX & CHUNK_SLOTS_X_Z - 1);
 	}
 
 	/**
-	 * This tells a scanner what blocks to scan for.
-	 * 
-	 * @author michael
+	 * Reads the block ids copied from a section.
 	 *
+	 * @param ids
+	 *            The ids, as returned by
+	 *            {@link ChunkAccessorUnmodified#copySection(int)}.
+	 * @return One bit for each block that is a safe side.
 	 */
-	public class ScannerPolicy {
-
-		private final BlockSet safeCeiling = BlockSets.SAFE_CEILING;
-		private final BlockSet safeHead = BlockSets.HEAD_CAN_WALK_THROUGH;
-		private final BlockSet safeFoot = BlockSets.FEET_CAN_WALK_THROUGH;
-		private final BlockSet safeFloor = BlockSets.SAFE_GROUND;
-		private final BlockSet safeSide = BlockSets.SAFE_SIDE;
-
-		/**
-		 * Gets all flags (except safe_to_go) for the given block.
-		 * 
-		 * @param blockIndex
-		 * @return A short (packed int an int).
-		 */
-		int getPositionFlags(int blockWithMeta) {
-			int flag = 0;
-			if (safeCeiling.contains(blockWithMeta)) {
-				flag |= BLOCK_IS_SAFE_CEILING;
-			}
-			if (safeHead.contains(blockWithMeta)) {
-				flag |= BLOCK_IS_SAFE_HEAD;
-			}
-			if (safeFoot.contains(blockWithMeta)) {
-				flag |= BLOCK_IS_SAFE_FOOT;
-			}
-			if (safeFloor.contains(blockWithMeta)) {
-				flag |= BLOCK_IS_SAFE_GROUND;
+	private static long[] scanBlocks(BitArray ids) {
+		long[] bits = new long[SECTION_WORDS];
+		int lastId = -1;
+		boolean lastSafe = false;
+		for (int index = 0; index < 16 * 16 * 16; index++) {
+			int id = ids.getAt(index);
+			if (id != lastId) {
+				// Most blocks are the same as the one before.
+				lastId = id;
+				lastSafe = BlockSets.SAFE_SIDE.contains(id);
 			}
-			if (safeSide.contains(blockWithMeta)) {
-				flag |= BLOCK_IS_SAFE_SIDE;
-			}
-			return flag;
-		}
-
-		public int getPositionFlags(BlockState iBlockState) {
-			return Block.BLOCK_STATE_IDS.get(iBlockState);
-		}
-
-		public int getDangerDistanceFor(Entity e) {
-			if (e instanceof SpiderEntity) {
-				return 20;
-			} else if (e instanceof SkeletonEntity) {
-				return 30;
-			} else if (e instanceof CreeperEntity) {
-				return 20;
-			} else if (e instanceof ZombieEntity) {
-				return 20;
-			} else {
-				return 0;
+			if (lastSafe) {
+				bits[index >> 6] |= 1L << index;
 			}
 		}
+		return bits;
 	}
 
 	/**
-	 * How many chunks this scanner scans. Should be more than
-	 * {@link PathFinderField#SIZE_X_Z}. The real available size is smaller by 1
-	 * chunk in each direction.
-	 */
-	private final static int CHUNK_SIZE_X_Z = 22;
-	private final static int CHUNK_SIZE_Y = 16;
-	private final static ScannedChunk EMPTY_SCANNED_CHUNK = null;
-
-	public static final int BLOCK_IS_SAFE_TO_GO = 0x100;
-	public static final int BLOCK_IS_SAFE_SIDE = 0x200;
-	public static final int BLOCK_IS_SAFE_GROUND = 0x400;
-	public static final int BLOCK_IS_SAFE_CEILING = 0x800;
-	public static final int BLOCK_IS_SAFE_FOOT = 0x1000;
-	public static final int BLOCK_IS_SAFE_HEAD = 0x2000;
-	// Airlike blocks that might be walked/shot through by entities.
-	public static final int BLOCK_IS_AIRLIKE = 0x4000;
-	// A temporary flag used to indicate that the head part (sides + ceiling +
-	// head block) is safe.
-	public static final int BLOCK_HAS_GOOD_SIDES_TEMP = 0x1000;
-
-	private final int baseChunkX = 0;
-	private final int baseChunkZ = 0;
-	public static final int STRIDE_X = 1;
-	public static final int STRIDE_Y = CHUNK_SIZE_X_Z * 16 * CHUNK_SIZE_Y * 16;
-	public static final int STRIDE_Z = CHUNK_SIZE_X_Z * 16;
-
-	private final DependingTaskScheduler scheduler = new DependingTaskScheduler();
-
-	/**
-	 * The cunk array.
-	 */
-	private final ScannedChunk[] chunks = new ScannedChunk[CHUNK_SIZE_X_Z
-			* CHUNK_SIZE_X_Z * CHUNK_SIZE_Y];
-	/**
-	 * An array of block information. It is ordered by y/z/x. You can use
-	 * STRIDE_Y, STRIDE_Z and STRIDE_X to get plus one in each direction.
-	 * Locking is done by the {@link ScannedChunk} objects.
+	 * Combines the safe side bits.
+	 *
+	 * @param blocks
+	 *            The scanned blocks, ordered as in
+	 *            {@link #requestSafeSides(ScannedSection)}
+	 * @return The safe sides bits for the center section.
 	 */
-	private final short[] blocks = new short[chunks.length * 16 * 16 * 16];
-	private final byte[] dangerZone = new byte[chunks.length * 16 * 16 * 16];
-
-	private final ScannerPolicy policy = new ScannerPolicy();
-	private final AIHelper helper;
-
-	public MoveScanner(AIHelper helper) {
-		this.helper = helper;
-	}
-
-	public void centerAround(int x, int z) {
-		int newBaseChunkX = x >> 4;
-		int newBaseChunkZ = z >> 4;
-		if (newBaseChunkX != baseChunkX || newBaseChunkZ != baseChunkZ) {
-			// TODO: safe old stuff.
-			Arrays.fill(chunks, null);
+	private static long[] computeSafeSides(long[][] blocks) {
+		// Sides of one layer, including the lowest layer of the section above.
+		int[] sides = new int[17 * 16];
+		for (int y = 0; y < 17; y++) {
+			int offset = y < 16 ? 0 : 5;
+			int ly = y & 15;
+			for (int z = 0; z < 16; z++) {
+				int row = row(blocks[offset], ly, z);
+				int east = row >>> 1 | (row(blocks[offset + 1], ly, z) & 1) << 15;
+				int west = (row << 1 | row(blocks[offset + 2], ly, z) >>> 15) & 0xffff;
+				int south = z < 15 ? row(blocks[offset], ly, z + 1)
+						: row(blocks[offset + 3], ly, 0);
+				int north = z > 0 ? row(blocks[offset], ly, z - 1)
+						: row(blocks[offset + 4], ly, 15);
+				sides[y << 4 | z] = east & west & south & north;
+			}
 		}
-	}
 
-	public ScannedChunk getChunk(int chunkX, int chunkY, int chunkZ) {
-		if (chunkX < baseChunkX + 1
-				|| chunkX >= baseChunkX + CHUNK_SIZE_X_Z - 1
-				|| chunkZ < baseChunkZ + 1
-				|| chunkZ >= baseChunkZ + CHUNK_SIZE_X_Z - 1 || chunkY < 0
-				|| chunkY >= CHUNK_SIZE_Y) {
-			return EMPTY_SCANNED_CHUNK;
-		}
-		synchronized (chunks) {
-			int i = chunkIndex(chunkX, chunkY, chunkZ);
-			if (chunks[i] == null) {
-				chunks[i] = new ScannedChunk(chunkX, chunkY, chunkZ, blocks,
-						dangerZone, chunkY * STRIDE_Y * 16
-								+ (chunkZ % CHUNK_SIZE_X_Z) * STRIDE_Z * 16
-								+ (chunkX % CHUNK_SIZE_X_Z) * STRIDE_X * 16);
-				Chunk mcChunk = helper.getMinecraft().world
-						.getChunk(chunkX, chunkZ);
-				scheduler
-						.addTask(new ScanChunkTask(chunks[i], policy, mcChunk));
-				scheduler.addTask(new PropagateSidesOfChunkTask(chunks[i]));
-				scheduler.addTask(new PropagateSafeToGoTask(chunks[i]));
+		long[] safeSides = new long[SECTION_WORDS];
+		for (int y = 0; y < 16; y++) {
+			for (int z = 0; z < 16; z++) {
+				long row = sides[y << 4 | z] & sides[y + 1 << 4 | z];
+				safeSides[y << 2 | z >> 2] |= row << ((z & 3) << 4);
 			}
-			chunks[i].safeToGoScanningDone.waitForEvent();
-			return chunks[i];
 		}
+		return safeSides;
 	}
 
-	private int chunkIndex(int chunkX, int chunkY, int chunkZ) {
-		return chunkY * CHUNK_SIZE_X_Z * CHUNK_SIZE_X_Z + chunkZ
-				% CHUNK_SIZE_X_Z * CHUNK_SIZE_X_Z + chunkX % CHUNK_SIZE_X_Z;
+	private static int row(long[] bits, int y, int z) {
+		return (int) (bits[y << 2 | z >> 2] >>> ((z & 3) << 4)) & 0xffff;
 	}
 }
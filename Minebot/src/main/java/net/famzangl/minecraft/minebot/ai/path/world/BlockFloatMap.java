@@ -14,6 +14,13 @@ public class BlockFloatMap {
 	private float[] floats = new float[] {Float.NaN, Float.NaN, Float.NaN, Float.NaN};
 	private float defaultValue = Float.NaN;
 
+	/**
+	 * Set by {@link #compile()}. Cleared whenever the map changes.
+	 */
+	private transient boolean compiled;
+	private transient float compiledMax;
+	private transient BlockSet compiledUsedBlocks;
+
 	public BlockFloatMap() {
 	}
 
@@ -26,6 +33,17 @@ public class BlockFloatMap {
 			throw new IllegalArgumentException("Default is NaN.");
 		}
 		this.defaultValue = defaultValue;
+		compiled = false;
+	}
+
+	/**
+	 * Computes {@link #getMax()} and {@link #getUsedBlocks()} once, so that
+	 * they are cheap to get until the map is changed again.
+	 */
+	public void compile() {
+		compiledMax = computeMax();
+		compiledUsedBlocks = computeUsedBlocks();
+		compiled = true;
 	}
 
 	public float get(BlockState blockAndMeta) {
@@ -42,6 +60,10 @@ public class BlockFloatMap {
 	}
 
 	public float getMax() {
+		return compiled ? compiledMax : computeMax();
+	}
+
+	private float computeMax() {
 		float max = defaultValue;
 		for (float f : floats) {
 			if (!Float.isNaN(f) && (f > max || Float.isNaN(max))) {
@@ -63,6 +85,7 @@ public class BlockFloatMap {
 			this.floats = newFloats;
 		}
 		floats[stateId] = value;
+		compiled = false;
 	}
 
 	public float getDefaultValue() {
@@ -75,6 +98,10 @@ public class BlockFloatMap {
 	}
 
 	public BlockSet getUsedBlocks() {
+		return compiled ? compiledUsedBlocks : computeUsedBlocks();
+	}
+
+	private BlockSet computeUsedBlocks() {
 		BlockSet.Builder builder = BlockSet.builder();
 		for (int i = 0; i < floats.length; i++) {
 			if (!Float.isNaN(floats[i])) {
@@ -13,12 +13,18 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.util.math.shapes.VoxelShape;
+import net.minecraft.util.palette.IPalette;
 import net.minecraft.util.palette.PalettedContainer;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.ChunkSection;
 
+import net.famzangl.minecraft.minebot.ai.utils.BlockCuboid;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 import javax.annotation.Nonnull;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.stream.Stream;
 
 /**
@@ -28,14 +34,28 @@ import java.util.stream.Stream;
  * @author Michael Zangl
  */
 public class WorldData {
+	private static final Logger LOGGER = LogManager.getLogger(WorldData.class);
 	private static final int BARRIER_ID = BlockSet.getStateId(Blocks.BARRIER.getDefaultState());
 	private static final int AIR_ID = BlockSet.getStateId(Blocks.AIR.getDefaultState());
-	private static final int CACHE_ENTRIES = 10;
 	/**
-	 * A cache pos that may never occur naturally.
+	 * Size of the chunk cache. Power of 2! A path finder field spans about 300
+	 * chunks.
+	 */
+	private static final int CACHE_BITS = 10;
+	private static final int CACHE_SIZE = 1 << CACHE_BITS;
+	/**
+	 * How many slots are checked for a chunk. Power of 2!
 	 */
-	private static final int CACHE_INVALID = 0x10000000;
+	private static final int CACHE_PROBES = 8;
 	private static final double FLOOR_HEIGHT = .55;
+	/**
+	 * Sections with more bits use the global palette.
+	 */
+	private static final int MAX_LOCAL_PALETTE_BITS = 8;
+
+	public interface BlockStateVisitor {
+		void visit(int blockStateId, int x, int y, int z);
+	}
 
 	private static class FastBlockStorageAccess {
 		private static final int FORCED_SIZE = MathHelper.log2DeBruijn(Block.BLOCK_STATE_IDS.size());
@@ -43,12 +63,16 @@ public class WorldData {
 		
 		private static final Field BITS_FIELD;
 		private static final Field STORAGE_FIELD;
+		private static final Field PALETTE_FIELD;
 		private BitArray array;
 		static {
 			BITS_FIELD = Stream.of(PalettedContainer.class.getDeclaredFields()).filter(f -> f.getType() == Integer.TYPE).findFirst().get();
 			BITS_FIELD.setAccessible(true);
 			STORAGE_FIELD = Stream.of(PalettedContainer.class.getDeclaredFields()).filter(f -> f.getType() == BitArray.class).findFirst().get();
 			STORAGE_FIELD.setAccessible(true);
+			// The registry palette is final, the current one is not.
+			PALETTE_FIELD = Stream.of(PalettedContainer.class.getDeclaredFields()).filter(f -> f.getType() == IPalette.class && !Modifier.isFinal(f.getModifiers())).findFirst().get();
+			PALETTE_FIELD.setAccessible(true);
 		}
 
 		public FastBlockStorageAccess(ChunkSection extendedBlockStorage) {
@@ -70,12 +94,71 @@ public class WorldData {
 			int index = ly << 8 | lz << 4 | lx;
 			return array.getAt(index);
 		}
-		
+
+		/**
+		 * Checks the palette of a section that we did not access yet.
+		 * 
+		 * @return <code>false</code> if none of the blocks is in the palette.
+		 */
+		@SuppressWarnings("unchecked")
+		public static boolean paletteMayContain(ChunkSection section,
+				BlockSet blocks) {
+			PalettedContainer<BlockState> data = section.getData();
+			try {
+				int bits = BITS_FIELD.getInt(data);
+				if (bits > MAX_LOCAL_PALETTE_BITS) {
+					// Global palette, we would need to read all blocks.
+					return true;
+				}
+				IPalette<BlockState> palette = (IPalette<BlockState>) PALETTE_FIELD
+						.get(data);
+				for (int i = 0; i < 1 << bits; i++) {
+					BlockState state = palette.get(i);
+					if (state == null) {
+						break;
+					} else if (blocks.contains(state)) {
+						return true;
+					}
+				}
+				return false;
+			} catch (IllegalAccessException e) {
+				LOGGER.error("Cannot read the palette of a chunk section.", e);
+				return true;
+			}
+		}
+
+		/**
+		 * @return A copy of the block ids that is not modified by Minecraft.
+		 */
+		public BitArray copyIds() {
+			return new BitArray(FORCED_SIZE, 16 * 16 * 16,
+					array.getBackingLongArray().clone());
+		}
+	}
+
+	/**
+	 * Remembers which sections may contain a block set.
+	 */
+	private static final class SectionFilter {
+		private final BlockSet blocks;
+		private final int checked;
+		private final int mayContain;
+
+		public SectionFilter(BlockSet blocks, int checked, int mayContain) {
+			this.blocks = blocks;
+			this.checked = checked;
+			this.mayContain = mayContain;
+		}
 	}
 
 	public static abstract class ChunkAccessor {
 		protected ChunkSection[] blockStorage;
 		private FastBlockStorageAccess[] access;
+		/**
+		 * The last set passed to {@link #sectionMayContain(int, BlockSet)}.
+		 * Scans often ask for the same set for each column.
+		 */
+		private volatile SectionFilter lastFilter;
 
 		public int getBlockIdWithMeta(int x, int y, int z) {
 			int blockId = 0;
@@ -98,6 +181,72 @@ public class WorldData {
 
 			return blockId;
 		}
+
+		/**
+		 * Checks if a section may contain one of the given blocks. This is
+		 * fast, since it only looks at the section palette.
+		 * 
+		 * @param chunkY
+		 *            The section
+		 * @param blocks
+		 *            The blocks to search.
+		 * @return <code>false</code> if the section does not contain any of
+		 *         the blocks.
+		 */
+		public boolean sectionMayContain(int chunkY, BlockSet blocks) {
+			if (chunkY < 0 || chunkY >= 16) {
+				return true;
+			}
+			SectionFilter filter = lastFilter;
+			if (filter == null || filter.blocks != blocks) {
+				filter = new SectionFilter(blocks, 0, 0);
+			}
+			int bit = 1 << chunkY;
+			if ((filter.checked & bit) == 0) {
+				boolean mayContain = computeSectionMayContain(chunkY, blocks);
+				lastFilter = new SectionFilter(blocks, filter.checked | bit,
+						mayContain ? filter.mayContain | bit
+								: filter.mayContain);
+				return mayContain;
+			}
+			return (filter.mayContain & bit) != 0;
+		}
+
+		protected boolean computeSectionMayContain(int chunkY, BlockSet blocks) {
+			if (blockStorage == null || chunkY >= blockStorage.length) {
+				return true;
+			}
+			ChunkSection section = blockStorage[chunkY];
+			if (section == null) {
+				return blocks.contains(AIR_ID);
+			} else if (section.isEmpty()) {
+				// Only air, but maybe cave air.
+				return containsAny(blocks, BlockSets.AIR);
+			} else {
+				return FastBlockStorageAccess.paletteMayContain(section,
+						blocks);
+			}
+		}
+
+		/**
+		 * Copies the block ids of one section. Needs to be called on the
+		 * client thread.
+		 * 
+		 * @param chunkY
+		 *            The section
+		 * @return The ids or <code>null</code> if the section only contains
+		 *         air.
+		 */
+		public BitArray copySection(int chunkY) {
+			if (blockStorage == null || chunkY < 0
+					|| chunkY >= blockStorage.length
+					|| blockStorage[chunkY] == null) {
+				return null;
+			}
+			// Creates the fast access if it is missing.
+			getBlockIdWithMeta(0, chunkY << 4, 0);
+			return access[chunkY].copyIds();
+		}
 	}
 
 	public static class ChunkAccessorUnmodified extends ChunkAccessor {
@@ -107,10 +256,36 @@ public class WorldData {
 		}
 	}
 
-	private final long[] cachedPos = new long[CACHE_ENTRIES];
-	private final ChunkAccessor[] cached = new ChunkAccessor[CACHE_ENTRIES];
+	/**
+	 * An entry of the chunk cache. Entries are never modified, so a reader on
+	 * a different thread either sees a complete entry or the one that was
+	 * there before.
+	 */
+	private static final class CachedChunk {
+		private final long position;
+		private final int generation;
+		private final ChunkAccessor accessor;
+
+		public CachedChunk(long position, int generation,
+				ChunkAccessor accessor) {
+			this.position = position;
+			this.generation = generation;
+			this.accessor = accessor;
+		}
+	}
+
+	/**
+	 * An open addressed table of chunks. Entries of an older generation are
+	 * treated as empty.
+	 */
+	private final CachedChunk[] cached = new CachedChunk[CACHE_SIZE];
+	private volatile int cacheGeneration;
 
 	private int chunkCacheReplaceCounter = 0;
+	// Not synchronized, so they may be a bit off when scanning from other
+	// threads.
+	private long statsCacheHits;
+	private long statsCacheMisses;
 
 	protected final ClientWorld theWorld;
 	private final ClientPlayerEntity thePlayerToGetPositionFrom;
@@ -145,25 +320,120 @@ public class WorldData {
 	private ChunkAccessor getChunkAccessor(int x, int z) {
 		int chunkX = x >> 4;
 		int chunkZ = z >> 4;
-		ChunkAccessor chunk = null;
 		long posForCache = cachePosition(chunkX, chunkZ);
-
-		for (int i = 0; i < CACHE_ENTRIES; i++) {
-			if (cachedPos[i] == posForCache) {
-				return cached[i];
+		int generation = cacheGeneration;
+		int firstSlot = cacheSlot(posForCache);
+		int freeSlot = -1;
+
+		for (int i = 0; i < CACHE_PROBES; i++) {
+			int slot = firstSlot + i & CACHE_SIZE - 1;
+			CachedChunk entry = cached[slot];
+			if (entry == null || entry.generation != generation) {
+				// Entries are only added in one generation, so the chunk
+				// cannot be in a later slot.
+				freeSlot = slot;
+				break;
+			} else if (entry.position == posForCache) {
+				statsCacheHits++;
+				return entry.accessor;
 			}
 		}
 
-		chunk = generateChunkAccessor(chunkX, chunkZ);
+		statsCacheMisses++;
+		ChunkAccessor chunk = generateChunkAccessor(chunkX, chunkZ);
+		if (freeSlot < 0) {
+			// All slots used. Replace one of them.
+			freeSlot = firstSlot
+					+ (chunkCacheReplaceCounter++ & CACHE_PROBES - 1)
+					& CACHE_SIZE - 1;
+		}
+		cached[freeSlot] = new CachedChunk(posForCache, generation, chunk);
+		return chunk;
+	}
 
-		cachedPos[chunkCacheReplaceCounter] = posForCache;
-		cached[chunkCacheReplaceCounter] = chunk;
+	private static boolean containsAny(BlockSet blocks, BlockSet candidates) {
+		for (BlockState state : candidates) {
+			if (blocks.contains(state)) {
+				return true;
+			}
+		}
+		return false;
+	}
 
-		chunkCacheReplaceCounter++;
-		if (chunkCacheReplaceCounter >= CACHE_ENTRIES) {
-			chunkCacheReplaceCounter = 0;
+	/**
+	 * Checks if a chunk section may contain one of the blocks, without
+	 * reading the blocks.
+	 * 
+	 * @param chunkX
+	 *            The chunk x coordinate
+	 * @param sectionY
+	 *            The section y coordinate (0..15)
+	 * @param chunkZ
+	 *            The chunk z coordinate
+	 * @param blocks
+	 *            The blocks to search.
+	 * @return <code>false</code> if none of the blocks is in the section.
+	 */
+	public boolean sectionMayContain(int chunkX, int sectionY, int chunkZ,
+			BlockSet blocks) {
+		ChunkAccessor chunk = getChunkAccessor(chunkX << 4, chunkZ << 4);
+		return chunk == null ? blocks.contains(BARRIER_ID) : chunk
+				.sectionMayContain(sectionY, blocks);
+	}
+
+	/**
+	 * Visits all blocks in the area that are in the given set. Sections that
+	 * cannot contain any of the blocks are skipped.
+	 * 
+	 * @param area
+	 *            The area to scan.
+	 * @param blocks
+	 *            The blocks to search.
+	 * @param visitor
+	 *            Gets each matching block, ordered by chunk.
+	 */
+	public void forEachMatching(BlockCuboid<?> area, BlockSet blocks,
+			BlockStateVisitor visitor) {
+		BlockPos min = area.getMin();
+		BlockPos max = area.getMax();
+		for (int chunkX = min.getX() >> 4; chunkX <= max.getX() >> 4; chunkX++) {
+			int minX = Math.max(min.getX(), chunkX << 4);
+			int maxX = Math.min(max.getX(), chunkX << 4 | 15);
+			for (int chunkZ = min.getZ() >> 4; chunkZ <= max.getZ() >> 4; chunkZ++) {
+				int minZ = Math.max(min.getZ(), chunkZ << 4);
+				int maxZ = Math.min(max.getZ(), chunkZ << 4 | 15);
+				ChunkAccessor chunk = getChunkAccessor(chunkX << 4,
+						chunkZ << 4);
+				for (int sectionY = min.getY() >> 4; sectionY <= max.getY() >> 4; sectionY++) {
+					int minY = Math.max(min.getY(), sectionY << 4);
+					int maxY = Math.min(max.getY(), sectionY << 4 | 15);
+					boolean inWorld = sectionY >= 0 && sectionY < 16;
+					if (inWorld
+							&& !(chunk == null ? blocks.contains(BARRIER_ID)
+									: chunk.sectionMayContain(sectionY, blocks))) {
+						continue;
+					}
+					// Unloaded chunks and blocks above the world are handled
+					// by getBlockStateId()
+					boolean fast = inWorld && chunk != null;
+					for (int y = minY; y <= maxY; y++) {
+						for (int z = minZ; z <= maxZ; z++) {
+							for (int x = minX; x <= maxX; x++) {
+								int id = fast ? chunk.getBlockIdWithMeta(x, y,
+										z) : getBlockStateId(x, y, z);
+								if (blocks.contains(id)) {
+									visitor.visit(id, x, y, z);
+								}
+							}
+						}
+					}
+				}
+			}
 		}
-		return chunk;
+	}
+
+	private static int cacheSlot(long posForCache) {
+		return (int) (posForCache * 0x9E3779B97F4A7C15L >>> 64 - CACHE_BITS);
 	}
 
 	protected ChunkAccessor generateChunkAccessor(int chunkX, int chunkZ) {
@@ -182,13 +452,54 @@ public class WorldData {
 		return (long) chunkX << 32 | (chunkZ & 0xffffffffl);
 	}
 
-	public void invalidateChunkCache() {
-		for (int i = 0; i < CACHE_ENTRIES; i++) {
-			// chunk coord would be invalid.
-			cachedPos[i] = CACHE_INVALID;
+	/**
+	 * Replaces the accessor of one chunk if it is in the cache. Use this
+	 * instead of {@link #invalidateChunkCache()} if only one chunk changed.
+	 * 
+	 * @param chunkX
+	 *            The chunk x coordinate
+	 * @param chunkZ
+	 *            The chunk z coordinate
+	 * @param accessor
+	 *            The new accessor for that chunk.
+	 */
+	protected void replaceCachedChunk(int chunkX, int chunkZ,
+			ChunkAccessor accessor) {
+		long posForCache = cachePosition(chunkX, chunkZ);
+		int generation = cacheGeneration;
+		int firstSlot = cacheSlot(posForCache);
+		for (int i = 0; i < CACHE_PROBES; i++) {
+			int slot = firstSlot + i & CACHE_SIZE - 1;
+			CachedChunk entry = cached[slot];
+			if (entry == null || entry.generation != generation) {
+				return;
+			} else if (entry.position == posForCache) {
+				cached[slot] = new CachedChunk(posForCache, generation,
+						accessor);
+				return;
+			}
 		}
 	}
 
+	public void invalidateChunkCache() {
+		// All entries get outdated at once.
+		cacheGeneration++;
+	}
+
+	/**
+	 * @return How often a chunk was found in the cache.
+	 */
+	public long getStatsCacheHits() {
+		return statsCacheHits;
+	}
+
+	/**
+	 * @return How often a chunk was not in the cache.
+	 */
+	public long getStatsCacheMisses() {
+		return statsCacheMisses;
+	}
+
 	public ClientWorld getBackingWorld() {
 		return theWorld;
 	}
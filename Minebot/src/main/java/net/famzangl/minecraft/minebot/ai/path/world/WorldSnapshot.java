@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai.path.world;
+
+import net.minecraft.block.Blocks;
+import net.minecraft.util.BitArray;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * A copy of the blocks in an area of the world. It is never modified, so it
+ * can be read on any thread while Minecraft changes the real world.
+ * <p>
+ * Only the block ids and the player position are copied. Blocks outside the
+ * area are barriers.
+ *
+ * @author Michael Zangl
+ */
+public class WorldSnapshot extends WorldData {
+	private static final int BARRIER_ID = BlockSet.getStateId(Blocks.BARRIER
+			.getDefaultState());
+
+	private static class SnapshotChunk extends ChunkAccessor {
+		private final int minChunkY;
+		/**
+		 * The copied sections, starting at {@link #minChunkY}. A
+		 * <code>null</code> section contains air.
+		 */
+		private final BitArray[] sections;
+
+		public SnapshotChunk(ChunkAccessor chunk, int minChunkY, int maxChunkY) {
+			this.minChunkY = minChunkY;
+			sections = new BitArray[maxChunkY - minChunkY + 1];
+			for (int i = 0; i < sections.length; i++) {
+				sections[i] = chunk.copySection(minChunkY + i);
+			}
+		}
+
+		@Override
+		protected boolean computeSectionMayContain(int chunkY, BlockSet blocks) {
+			int section = chunkY - minChunkY;
+			if (section < 0 || section >= sections.length) {
+				return blocks.contains(BARRIER_ID);
+			}
+			return sections[section] != null || blocks.contains(0);
+		}
+
+		@Override
+		public int getBlockIdWithMeta(int x, int y, int z) {
+			int section = (y >> 4) - minChunkY;
+			if (section < 0 || section >= sections.length) {
+				return BARRIER_ID;
+			}
+			BitArray ids = sections[section];
+			return ids == null ? 0 : ids.getAt((y & 15) << 8 | (z & 15) << 4
+					| x & 15);
+		}
+	}
+
+	private final int minChunkX;
+	private final int minChunkZ;
+	private final int sizeChunkX;
+	private final int sizeChunkZ;
+	private final SnapshotChunk[] chunks;
+
+	private final BlockPos playerPosition;
+	private final Vec3d exactPlayerPosition;
+	private final long worldTime;
+
+	/**
+	 * Copies an area of the world. Needs to be called on the client thread.
+	 *
+	 * @param world
+	 *            The real world.
+	 * @param min
+	 *            The minimum block to copy.
+	 * @param max
+	 *            The maximum block to copy.
+	 */
+	public WorldSnapshot(WorldData world, BlockPos min, BlockPos max) {
+		super(world.theWorld, null);
+		if (world.getCurrentState() != world) {
+			throw new IllegalArgumentException(
+					"Cannot make a snapshot of a delta.");
+		}
+		minChunkX = min.getX() >> 4;
+		minChunkZ = min.getZ() >> 4;
+		sizeChunkX = (max.getX() >> 4) - minChunkX + 1;
+		sizeChunkZ = (max.getZ() >> 4) - minChunkZ + 1;
+		int minChunkY = Math.max(0, min.getY() >> 4);
+		int maxChunkY = Math.min(15, max.getY() >> 4);
+		chunks = new SnapshotChunk[sizeChunkX * sizeChunkZ];
+		for (int z = 0; z < sizeChunkZ; z++) {
+			for (int x = 0; x < sizeChunkX; x++) {
+				ChunkAccessor chunk = new ChunkAccessorUnmodified(
+						theWorld.getChunk(minChunkX + x, minChunkZ + z));
+				chunks[z * sizeChunkX + x] = new SnapshotChunk(chunk,
+						minChunkY, maxChunkY);
+			}
+		}
+		playerPosition = world.getPlayerPosition();
+		exactPlayerPosition = world.getExactPlayerPosition();
+		worldTime = world.getWorldTime();
+	}
+
+	@Override
+	protected ChunkAccessor generateChunkAccessor(int chunkX, int chunkZ) {
+		int x = chunkX - minChunkX;
+		int z = chunkZ - minChunkZ;
+		if (x < 0 || x >= sizeChunkX || z < 0 || z >= sizeChunkZ) {
+			return null;
+		}
+		return chunks[z * sizeChunkX + x];
+	}
+
+	@Override
+	public BlockPos getPlayerPosition() {
+		return playerPosition;
+	}
+
+	@Override
+	public Vec3d getExactPlayerPosition() {
+		return exactPlayerPosition;
+	}
+
+	@Override
+	public long getWorldTime() {
+		return worldTime;
+	}
+}
@@ -1,5 +1,6 @@
 package net.famzangl.minecraft.minebot.ai.path.world;
 
+import net.famzangl.minecraft.minebot.ai.net.ChunkListener;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.world.ClientWorld;
@@ -13,6 +14,14 @@ import org.apache.logging.log4j.MarkerManager;
 import java.util.Arrays;
 import java.util.Hashtable;
 
+/**
+ * A world with some blocks replaced. The replaced blocks are stored per chunk
+ * section.
+ * <p>
+ * Worlds can be forked in constant time. Parent and child share all replaced
+ * sections. Whoever writes to a shared chunk first copies it, but only the
+ * section that is written to gets copied.
+ */
 public class WorldWithDelta extends WorldData {
 	private static final Marker MARKER_WORLD_DELTA = MarkerManager
 			.getMarker("worlddata");
@@ -20,6 +29,15 @@ public class WorldWithDelta extends WorldData {
 			.getLogger(WorldWithDelta.class);
 
 	private Hashtable<Long, ChunkWithDelta> chunkDeltas = new Hashtable<Long, ChunkWithDelta>();
+	/**
+	 * If the chunk table is used by a fork, too.
+	 */
+	private boolean chunkDeltasShared;
+	/**
+	 * Chunks that are owned by this token may be modified. Changed on every
+	 * fork.
+	 */
+	private Object owner = new Object();
 
 	private BlockPos playerPosition;
 
@@ -29,16 +47,39 @@ public class WorldWithDelta extends WorldData {
 		private final ClientWorld theWorld;
 		private final int chunkX;
 		private final int chunkZ;
+		private final Object owner;
 
 		private static final char NOT_REPLACED = 0xffff;
 
 		private char[][] replacedBlockIds = new char[0][];
+		/**
+		 * A bit for each section in {@link #replacedBlockIds} that was
+		 * created for this chunk and is not shared.
+		 */
+		private int ownedSections;
 
-		public ChunkWithDelta(ClientWorld theWorld, int chunkX, int chunkZ) {
+		public ChunkWithDelta(ClientWorld theWorld, int chunkX, int chunkZ,
+				Object owner) {
 			super();
 			this.theWorld = theWorld;
 			this.chunkX = chunkX;
 			this.chunkZ = chunkZ;
+			this.owner = owner;
+		}
+
+		/**
+		 * Creates a copy that shares all sections with this chunk.
+		 * 
+		 * @param newOwner
+		 *            The owner of the copy.
+		 * @return The copy.
+		 */
+		public ChunkWithDelta copy(Object newOwner) {
+			ChunkWithDelta copy = new ChunkWithDelta(theWorld, chunkX, chunkZ,
+					newOwner);
+			copy.replacedBlockIds = replacedBlockIds.clone();
+			copy.blockStorage = blockStorage;
+			return copy;
 		}
 
 		@Override
@@ -66,6 +107,21 @@ public class WorldWithDelta extends WorldData {
 			return super.getBlockIdWithMeta(x, y, z);
 		}
 
+		@Override
+		public boolean sectionMayContain(int chunkY, BlockSet blocks) {
+			// Not cached, since the delta may still change.
+			if (chunkY >= 0 && chunkY < replacedBlockIds.length
+					&& replacedBlockIds[chunkY] != null) {
+				return true;
+			}
+			if (blockStorage == null) {
+				blockStorage = theWorld.getChunk(chunkX, chunkZ)
+						.getSections();
+			}
+			return chunkY < 0 || chunkY >= 16
+					|| computeSectionMayContain(chunkY, blocks);
+		}
+
 		public void replaceBlock(int x, int y, int z, int blockWithMeta) {
 			int chunkY = y >> 4;
 			if (chunkY >= replacedBlockIds.length) {
@@ -73,10 +129,15 @@ public class WorldWithDelta extends WorldData {
 						chunkY + 1);
 			}
 			char[] replacements = replacedBlockIds[chunkY];
-			if (replacements == null) {
-				replacements = new char[16 * 16 * 16];
-				Arrays.fill(replacements, NOT_REPLACED);
+			if ((ownedSections & 1 << chunkY) == 0) {
+				if (replacements == null) {
+					replacements = new char[16 * 16 * 16];
+					Arrays.fill(replacements, NOT_REPLACED);
+				} else {
+					replacements = replacements.clone();
+				}
 				replacedBlockIds[chunkY] = replacements;
+				ownedSections |= 1 << chunkY;
 			}
 			final int lx = x & 15;
 			final int ly = y & 15;
@@ -87,6 +148,55 @@ public class WorldWithDelta extends WorldData {
 		public void invalidateCache() {
 			blockStorage = null;
 		}
+
+		/**
+		 * Checks if all replaced blocks of this chunk are the same in an
+		 * other world.
+		 *
+		 * @param world
+		 *            The world to compare with.
+		 * @return <code>true</code> if there is no difference.
+		 */
+		public boolean hasSameBlocksIn(WorldData world) {
+			for (int chunkY = 0; chunkY < replacedBlockIds.length; chunkY++) {
+				char[] replacements = replacedBlockIds[chunkY];
+				if (replacements == null) {
+					continue;
+				}
+				for (int index = 0; index < replacements.length; index++) {
+					if (replacements[index] != NOT_REPLACED
+							&& replacements[index] != world.getBlockStateId(
+									chunkX << 4 | index & 15,
+									chunkY << 4 | index >> 8,
+									chunkZ << 4 | index >> 4 & 15)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Reports the position of every replaced block as changed.
+		 *
+		 * @param listener
+		 *            The listener to send the positions to.
+		 */
+		public void reportReplacedBlocks(ChunkListener listener) {
+			for (int chunkY = 0; chunkY < replacedBlockIds.length; chunkY++) {
+				char[] replacements = replacedBlockIds[chunkY];
+				if (replacements == null) {
+					continue;
+				}
+				for (int index = 0; index < replacements.length; index++) {
+					if (replacements[index] != NOT_REPLACED) {
+						listener.blockChanged(chunkX << 4 | index & 15,
+								chunkY << 4 | index >> 8,
+								chunkZ << 4 | index >> 4 & 15);
+					}
+				}
+			}
+		}
 	}
 
 	public WorldWithDelta(WorldData currentWorld) {
@@ -99,6 +209,31 @@ public class WorldWithDelta extends WorldData {
 		this.playerPosition = currentWorld.getPlayerPosition();
 	}
 
+	protected WorldWithDelta(WorldWithDelta parent) {
+		super(parent.theWorld, null);
+		this.currentWorld = parent.currentWorld;
+		this.playerPosition = parent.playerPosition;
+		this.chunkDeltas = parent.chunkDeltas;
+		this.chunkDeltasShared = true;
+	}
+
+	/**
+	 * Creates a child world that starts with all changes of this world.
+	 * Changes to the child are not visible in this world and the other way
+	 * round. This is cheap, nothing is copied until one of the worlds is
+	 * changed.
+	 * 
+	 * @return The child. It does not record anything, even if this world
+	 *         does.
+	 */
+	public WorldWithDelta fork() {
+		WorldWithDelta child = new WorldWithDelta(this);
+		// The existing chunks are now shared.
+		owner = new Object();
+		chunkDeltasShared = true;
+		return child;
+	}
+
 	protected ChunkAccessor generateChunkAccessor(int chunkX, int chunkZ) {
 		ChunkAccessor chunk;
 		chunk = chunkDeltas.get(cachePosition(chunkX, chunkZ));
@@ -135,12 +270,50 @@ public class WorldWithDelta extends WorldData {
 
 		long key = cachePosition(chunkX, chunkZ);
 		ChunkWithDelta delta = chunkDeltas.get(key);
-		if (delta == null) {
-			delta = new ChunkWithDelta(theWorld, chunkX, chunkZ);
+		if (delta == null || delta.owner != owner) {
+			delta = delta == null ? new ChunkWithDelta(theWorld, chunkX,
+					chunkZ, owner) : delta.copy(owner);
+			if (chunkDeltasShared) {
+				chunkDeltas = new Hashtable<Long, ChunkWithDelta>(chunkDeltas);
+				chunkDeltasShared = false;
+			}
 			chunkDeltas.put(key, delta);
+			// Only the accessor of this chunk changed.
+			replaceCachedChunk(chunkX, chunkZ, delta);
 		}
 		delta.replaceBlock(x, y, z, blockWithMeta);
-		invalidateChunkCache();
+	}
+
+	/**
+	 * Checks if the blocks replaced in this world are the same in an other
+	 * world. This is the case if the tasks this delta was planned for changed
+	 * the real world as expected.
+	 *
+	 * @param world
+	 *            The world to compare with.
+	 * @return <code>true</code> if this world only differs from the other
+	 *         world in blocks that were not replaced.
+	 */
+	public boolean hasSameBlocksIn(WorldData world) {
+		for (ChunkWithDelta chunk : chunkDeltas.values()) {
+			if (!chunk.hasSameBlocksIn(world)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reports all blocks in which this world may differ from
+	 * {@link #getCurrentState()} as changed.
+	 *
+	 * @param listener
+	 *            The listener to send the positions to.
+	 */
+	public void reportReplacedBlocks(ChunkListener listener) {
+		for (ChunkWithDelta chunk : chunkDeltas.values()) {
+			chunk.reportReplacedBlocks(listener);
+		}
 	}
 
 	@Override
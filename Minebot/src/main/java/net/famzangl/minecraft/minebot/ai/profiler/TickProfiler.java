@@ -0,0 +1,182 @@
+package net.famzangl.minecraft.minebot.ai.profiler;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures how long the parts of the bot take. For each phase, a
+ * {@link TimingHistogram} is kept per strategy, task or path finder class.
+ * <p>
+ * Use it like this:
+ *
+ * <pre>
+ * long start = TickProfiler.start();
+ * try {
+ * 	...
+ * } finally {
+ * 	TickProfiler.end(Phase.TASK, task.getClass(), start);
+ * }
+ * </pre>
+ *
+ * Nested phases are measured inclusive, so the time of a task is part of the
+ * time of the strategy that runs it. Measuring does not allocate once the
+ * histogram for a class exists and may be done from any thread.
+ *
+ * @author Michael Zangl
+ */
+public class TickProfiler {
+	public enum Phase {
+		/**
+		 * The whole client tick of the bot.
+		 */
+		TICK("tick"),
+		STRATEGY("strategy"),
+		TASK("task"),
+		PATH_SEARCH("search"),
+		SCAN("scan"),
+		MAP_READER("map");
+
+		private final String name;
+
+		private Phase(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * The histogram of one class in one phase.
+	 */
+	public static class Entry {
+		private final Phase phase;
+		private final Class<?> type;
+		private final TimingHistogram histogram;
+
+		private Entry(Phase phase, Class<?> type, TimingHistogram histogram) {
+			this.phase = phase;
+			this.type = type;
+			this.histogram = histogram;
+		}
+
+		public Phase getPhase() {
+			return phase;
+		}
+
+		public Class<?> getType() {
+			return type;
+		}
+
+		public TimingHistogram getHistogram() {
+			return histogram;
+		}
+
+		/**
+		 * @return A line with the count and the timings in milliseconds.
+		 */
+		public String format() {
+			long count = histogram.getCount();
+			String name = type.getName();
+			name = name.substring(name.lastIndexOf('.') + 1);
+			return String.format(Locale.US,
+					"%-8s %-40s n=%-7d total=%.1fms mean=%.3fms"
+							+ " p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+					phase, name, count, toMillis(histogram.getTotalNanos()),
+					count == 0 ? 0 : toMillis(histogram.getTotalNanos())
+							/ count,
+					toMillis(histogram.getPercentileNanos(.5)),
+					toMillis(histogram.getPercentileNanos(.9)),
+					toMillis(histogram.getPercentileNanos(.99)),
+					toMillis(histogram.getMaxNanos()));
+		}
+
+		private static double toMillis(long nanos) {
+			return nanos / 1e6;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static final Map<Class<?>, TimingHistogram>[] HISTOGRAMS = new Map[Phase
+			.values().length];
+	static {
+		for (int i = 0; i < HISTOGRAMS.length; i++) {
+			HISTOGRAMS[i] = new ConcurrentHashMap<>();
+		}
+	}
+
+	private TickProfiler() {
+	}
+
+	/**
+	 * @return The start time to pass to
+	 *         {@link #end(Phase, Class, long)}.
+	 */
+	public static long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the time since the start.
+	 *
+	 * @param phase
+	 *            What was done.
+	 * @param type
+	 *            The class that did it.
+	 * @param start
+	 *            The value returned by {@link #start()}.
+	 */
+	public static void end(Phase phase, Class<?> type, long start) {
+		long nanos = System.nanoTime() - start;
+		Map<Class<?>, TimingHistogram> histograms = HISTOGRAMS[phase
+				.ordinal()];
+		TimingHistogram histogram = histograms.get(type);
+		if (histogram == null) {
+			histogram = histograms.computeIfAbsent(type,
+					t -> new TimingHistogram());
+		}
+		histogram.record(nanos);
+	}
+
+	/**
+	 * @return All histograms, the ones with the most total time first.
+	 */
+	public static List<Entry> getEntries() {
+		ArrayList<Entry> entries = new ArrayList<>();
+		for (Phase phase : Phase.values()) {
+			HISTOGRAMS[phase.ordinal()].forEach((type, histogram) -> {
+				if (histogram.getCount() > 0) {
+					entries.add(new Entry(phase, type, histogram));
+				}
+			});
+		}
+		entries.sort(Comparator.comparingLong((Entry e) -> e.histogram
+				.getTotalNanos()).reversed());
+		return entries;
+	}
+
+	/**
+	 * Writes all histograms, one per line.
+	 *
+	 * @param out
+	 *            Where to write to.
+	 */
+	public static void writeReport(PrintStream out) {
+		for (Entry entry : getEntries()) {
+			out.println(entry.format());
+		}
+	}
+
+	public static void reset() {
+		for (Map<Class<?>, TimingHistogram> histograms : HISTOGRAMS) {
+			histograms.values().forEach(TimingHistogram::reset);
+		}
+	}
+}
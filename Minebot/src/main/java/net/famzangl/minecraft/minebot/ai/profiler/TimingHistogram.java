@@ -0,0 +1,107 @@
+package net.famzangl.minecraft.minebot.ai.profiler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in nanoseconds. Durations are sorted into buckets
+ * that have a relative width of 1/8, so the percentiles have a relative error
+ * of at most 12.5%.
+ * <p>
+ * Recording does not allocate and may be done from any thread.
+ *
+ * @author Michael Zangl
+ */
+public class TimingHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = SUB_BUCKETS
+			+ (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		buckets.incrementAndGet(getBucket(nanos));
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		long max;
+		while ((max = maxNanos.get()) < nanos
+				&& !maxNanos.compareAndSet(max, nanos)) {
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * @param percentile
+	 *            The percentile, 0..1
+	 * @return The duration in nanoseconds, the middle of the bucket. 0 if
+	 *         nothing was recorded.
+	 */
+	public long getPercentileNanos(double percentile) {
+		long count = 0;
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			count += counts[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.min(count - 1,
+				Math.max(0, (long) Math.ceil(percentile * count) - 1));
+		for (int i = 0; i < BUCKETS; i++) {
+			rank -= counts[i];
+			if (rank < 0) {
+				return Math.min(getBucketMiddle(i), getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	private static int getBucket(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int mantissa = (int) (nanos >> (exponent - SUB_BUCKET_BITS))
+				& (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS
+				+ mantissa;
+	}
+
+	private static long getBucketMiddle(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+		int mantissa = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return (SUB_BUCKETS + mantissa) * width + width / 2;
+	}
+}
@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai.scanner;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.famzangl.minecraft.minebot.ai.net.ChunkListener;
+import net.famzangl.minecraft.minebot.ai.path.world.BlockSet;
+import net.famzangl.minecraft.minebot.ai.path.world.BlockSets;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldSnapshot;
+import net.famzangl.minecraft.minebot.ai.utils.BlockCuboid;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Remembers where the interesting blocks (chests, furnaces, ...) are. The
+ * index is kept per chunk section. Sections are scanned the first time they
+ * are needed and scanned again after the server sent a change for their
+ * chunk.
+ * <p>
+ * The index is kept for the whole game session, so searching the same area
+ * again does not need to scan it.
+ * <p>
+ * The live world is only read on the client thread. Other threads fill the
+ * index from a {@link Snapshot}.
+ *
+ * @author Michael Zangl
+ */
+public class BlockIndex implements ChunkListener {
+	private static final int SECTIONS = 16;
+	private static final int[] NO_BLOCKS = new int[0];
+
+	public interface IndexVisitor {
+		void visit(int blockStateId, int x, int y, int z);
+	}
+
+	/**
+	 * The blocks we index. A new version is created whenever a block is
+	 * added.
+	 */
+	private static class IndexedIds {
+		private final BlockSet ids;
+		private final int version;
+
+		public IndexedIds(BlockSet ids, int version) {
+			this.ids = ids;
+			this.version = version;
+		}
+	}
+
+	private static class SectionIndex {
+		private final int idsVersion;
+		/**
+		 * The positions in the section, as y << 8 | z << 4 | x.
+		 */
+		private final int[] positions;
+		private final int[] blockStateIds;
+
+		public SectionIndex(int idsVersion, int[] positions,
+				int[] blockStateIds) {
+			this.idsVersion = idsVersion;
+			this.positions = positions;
+			this.blockStateIds = blockStateIds;
+		}
+	}
+
+	private static class ChunkIndex {
+		private final AtomicReferenceArray<SectionIndex> sections = new AtomicReferenceArray<>(
+				SECTIONS);
+	}
+
+	/**
+	 * A copy of an area that can be indexed on any thread. Sections are only
+	 * stored in the chunk indexes that existed when the copy was made, so a
+	 * chunk that changed since then is not filled with old blocks.
+	 */
+	public final class Snapshot {
+		private final WorldSnapshot world;
+		private final BlockCuboid<?> area;
+		private final HashMap<Long, ChunkIndex> chunkIndexes = new HashMap<>();
+
+		private Snapshot(WorldData world, BlockCuboid<?> area) {
+			this.world = new WorldSnapshot(world, area.getMin(), area.getMax());
+			this.area = area;
+			BlockPos min = area.getMin();
+			BlockPos max = area.getMax();
+			for (int chunkX = min.getX() >> 4; chunkX <= max.getX() >> 4; chunkX++) {
+				for (int chunkZ = min.getZ() >> 4; chunkZ <= max.getZ() >> 4; chunkZ++) {
+					long key = chunkKey(chunkX, chunkZ);
+					chunkIndexes.put(key,
+							chunks.computeIfAbsent(key, k -> new ChunkIndex()));
+				}
+			}
+		}
+
+		/**
+		 * @return The copied blocks.
+		 */
+		public WorldData getWorld() {
+			return world;
+		}
+
+		/**
+		 * Visits all indexed blocks in the copied area. Scans the copied
+		 * sections that are not indexed yet.
+		 *
+		 * @param visitor
+		 *            Gets all blocks in the area that were added using
+		 *            {@link BlockIndex#addIds(BlockSet)}.
+		 */
+		public void forEach(IndexVisitor visitor) {
+			BlockIndex.this.forEach(world, area, chunkIndexes::get, visitor);
+		}
+	}
+
+	private interface ChunkIndexLookup {
+		ChunkIndex get(long key);
+	}
+
+	private final ConcurrentHashMap<Long, ChunkIndex> chunks = new ConcurrentHashMap<>();
+
+	/**
+	 * Chunks the server sent changes for. We get the changes before they are
+	 * applied to the world, so they are removed from the index on the next
+	 * client tick.
+	 */
+	private final Set<Long> changedChunks = ConcurrentHashMap.newKeySet();
+
+	private volatile IndexedIds indexed = new IndexedIds(BlockSets.EMPTY, 0);
+
+	private Object indexedWorld;
+
+	/**
+	 * Adds blocks to the index. Sections that were scanned before are scanned
+	 * again when they are needed.
+	 *
+	 * @param ids
+	 *            The blocks.
+	 */
+	public synchronized void addIds(BlockSet ids) {
+		IndexedIds current = indexed;
+		for (BlockState state : ids) {
+			if (!current.ids.contains(state)) {
+				indexed = new IndexedIds(BlockSet.builder().add(current.ids)
+						.add(ids).build(), current.version + 1);
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void chunkChanged(int chunkX, int chunkZ) {
+		changedChunks.add(chunkKey(chunkX, chunkZ));
+	}
+
+	/**
+	 * Removes the chunks that changed from the index. Needs to be called on
+	 * the client thread, after the changes were applied to the world. This is
+	 * done at the start of every client tick.
+	 */
+	public void applyChanges() {
+		for (Iterator<Long> it = changedChunks.iterator(); it.hasNext();) {
+			Long key = it.next();
+			it.remove();
+			chunks.remove(key);
+		}
+	}
+
+	public synchronized void clear() {
+		chunks.clear();
+		changedChunks.clear();
+	}
+
+	/**
+	 * Checks if the whole area was already scanned.
+	 *
+	 * @param world
+	 *            The world that will be scanned.
+	 * @param area
+	 *            The area.
+	 * @return <code>true</code> if
+	 *         {@link #forEach(WorldData, BlockCuboid, IndexVisitor)} does not
+	 *         need to read any blocks.
+	 */
+	public boolean isIndexed(WorldData world, BlockCuboid<?> area) {
+		checkWorld(world);
+		int version = indexed.version;
+		BlockPos min = area.getMin();
+		BlockPos max = area.getMax();
+		for (int chunkX = min.getX() >> 4; chunkX <= max.getX() >> 4; chunkX++) {
+			for (int chunkZ = min.getZ() >> 4; chunkZ <= max.getZ() >> 4; chunkZ++) {
+				ChunkIndex chunk = chunks.get(chunkKey(chunkX, chunkZ));
+				if (chunk == null) {
+					return false;
+				}
+				for (int sectionY = minSection(min); sectionY <= maxSection(max); sectionY++) {
+					SectionIndex section = chunk.sections.get(sectionY);
+					if (section == null || section.idsVersion != version) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Copies an area, so that it can be indexed on an other thread. Needs to
+	 * be called on the client thread.
+	 *
+	 * @param world
+	 *            The real world.
+	 * @param area
+	 *            The area to copy.
+	 * @return The copy.
+	 */
+	public Snapshot snapshot(WorldData world, BlockCuboid<?> area) {
+		checkWorld(world);
+		return new Snapshot(world, area);
+	}
+
+	/**
+	 * Visits all indexed blocks in the area. Scans the sections that are not
+	 * indexed yet. Needs to be called on the client thread, use
+	 * {@link #snapshot(WorldData, BlockCuboid)} on other threads.
+	 *
+	 * @param world
+	 *            The world to scan. Should not be a delta.
+	 * @param area
+	 *            The area.
+	 * @param visitor
+	 *            Gets all blocks in the area that were added using
+	 *            {@link #addIds(BlockSet)}.
+	 */
+	public void forEach(WorldData world, BlockCuboid<?> area,
+			IndexVisitor visitor) {
+		checkWorld(world);
+		forEach(world, area,
+				key -> chunks.computeIfAbsent(key, k -> new ChunkIndex()),
+				visitor);
+	}
+
+	private void forEach(WorldData world, BlockCuboid<?> area,
+			ChunkIndexLookup chunkIndexes, IndexVisitor visitor) {
+		BlockPos min = area.getMin();
+		BlockPos max = area.getMax();
+		for (int chunkX = min.getX() >> 4; chunkX <= max.getX() >> 4; chunkX++) {
+			for (int chunkZ = min.getZ() >> 4; chunkZ <= max.getZ() >> 4; chunkZ++) {
+				ChunkIndex chunk = chunkIndexes.get(chunkKey(chunkX, chunkZ));
+				for (int sectionY = minSection(min); sectionY <= maxSection(max); sectionY++) {
+					SectionIndex section = getSection(world, chunk, chunkX,
+							sectionY, chunkZ);
+					for (int i = 0; i < section.positions.length; i++) {
+						int pos = section.positions[i];
+						int x = chunkX << 4 | pos & 15;
+						int y = sectionY << 4 | pos >> 8;
+						int z = chunkZ << 4 | pos >> 4 & 15;
+						if (area.contains(world, x, y, z)) {
+							visitor.visit(section.blockStateIds[i], x, y, z);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private SectionIndex getSection(WorldData world, ChunkIndex chunk,
+			int chunkX, int sectionY, int chunkZ) {
+		IndexedIds ids = indexed;
+		SectionIndex section = chunk.sections.get(sectionY);
+		if (section == null || section.idsVersion != ids.version) {
+			section = scanSection(world, ids, chunkX, sectionY, chunkZ);
+			chunk.sections.set(sectionY, section);
+		}
+		return section;
+	}
+
+	private static SectionIndex scanSection(WorldData world, IndexedIds ids,
+			int chunkX, int sectionY, int chunkZ) {
+		BlockPos min = new BlockPos(chunkX << 4, sectionY << 4, chunkZ << 4);
+		IntArrayList positions = new IntArrayList();
+		IntArrayList foundIds = new IntArrayList();
+		world.forEachMatching(new BlockCuboid<>(min, min.add(15, 15, 15)),
+				ids.ids, (blockStateId, x, y, z) -> {
+					positions.add((y & 15) << 8 | (z & 15) << 4 | x & 15);
+					foundIds.add(blockStateId);
+				});
+		if (positions.isEmpty()) {
+			return new SectionIndex(ids.version, NO_BLOCKS, NO_BLOCKS);
+		}
+		return new SectionIndex(ids.version, positions.toIntArray(),
+				foundIds.toIntArray());
+	}
+
+	/**
+	 * Forgets the index if the player changed the world.
+	 */
+	private synchronized void checkWorld(WorldData world) {
+		if (world.getBackingWorld() != indexedWorld) {
+			chunks.clear();
+			changedChunks.clear();
+			indexedWorld = world.getBackingWorld();
+		}
+	}
+
+	private static int minSection(BlockPos min) {
+		return Math.max(0, min.getY() >> 4);
+	}
+
+	private static int maxSection(BlockPos max) {
+		return Math.min(SECTIONS - 1, max.getY() >> 4);
+	}
+
+	private static long chunkKey(int chunkX, int chunkZ) {
+		return (long) chunkX << 32 | chunkZ & 0xffffffffL;
+	}
+}
@@ -17,6 +17,7 @@
 package net.famzangl.minecraft.minebot.ai.scanner;
 
 import net.famzangl.minecraft.minebot.ai.path.WalkingPathfinder;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
 import net.minecraft.util.math.BlockPos;
 
 public class BlockRangeFinder extends WalkingPathfinder {
@@ -29,14 +30,19 @@ public class BlockRangeFinder extends WalkingPathfinder {
 	protected boolean runSearch(BlockPos playerPosition) {
 		if (rangeScanner == null) {
 			rangeScanner = constructScanner(playerPosition);
-			//TODO: Pass on a synchronized world instance...
-			rangeScanner.startAsync(world);
-			return false;
+			// Only the real world is indexed.
+			WorldData indexedWorld = helper.getWorld();
+			BlockIndex index = helper.getBlockIndex();
+			if (rangeScanner.isIndexed(indexedWorld, index)) {
+				rangeScanner.scanArea(indexedWorld, index);
+			} else {
+				rangeScanner.startAsync(indexedWorld, index);
+				return false;
+			}
 		} else if (!rangeScanner.isScaningFinished()) {
 			return false;
-		} else {
-			return super.runSearch(playerPosition);
 		}
+		return super.runSearch(playerPosition);
 	}
 
 	protected BlockRangeScanner constructScanner(BlockPos playerPosition) {
@@ -18,17 +18,35 @@ package net.famzangl.minecraft.minebot.ai.scanner;
 
 import net.famzangl.minecraft.minebot.ai.path.world.BlockSet;
 import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+import net.famzangl.minecraft.minebot.ai.profiler.TickProfiler;
+import net.famzangl.minecraft.minebot.ai.profiler.TickProfiler.Phase;
+import net.famzangl.minecraft.minebot.ai.scanner.BlockIndex.IndexVisitor;
+import net.famzangl.minecraft.minebot.ai.scanner.BlockIndex.Snapshot;
 import net.famzangl.minecraft.minebot.ai.utils.BlockCuboid;
 import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 public class BlockRangeScanner {
 	private static final int HORIZONTAL_SCAN = 100;
 	private static final int VERTICAL_SCAN = 20;
 	private final BlockPos center;
+
+	/**
+	 * Fills the block index from a copy of the area if the area was not
+	 * scanned before.
+	 */
+	private static final ExecutorService SCAN_THREAD = Executors
+			.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "Block range finder");
+				thread.setDaemon(true);
+				return thread;
+			});
 	
 	public interface BlockHandler {
 		BlockSet getIds();
@@ -43,7 +61,7 @@ public class BlockRangeScanner {
 	
 	private final ArrayList<BlockHandler> handlers = new ArrayList<BlockHandler>();
 	
-	private boolean scaningFinished;
+	private volatile boolean scaningFinished;
 
 	public BlockRangeScanner(BlockPos center) {
 		this.center = center;
@@ -60,35 +78,82 @@ public class BlockRangeScanner {
 		}
 	}
 
-	public void scanArea(WorldData world) {
-		BlockCuboid<WorldData> area = new BlockCuboid<>(center.add(-HORIZONTAL_SCAN,  -VERTICAL_SCAN, -HORIZONTAL_SCAN), center.add(HORIZONTAL_SCAN,  VERTICAL_SCAN, HORIZONTAL_SCAN));
-		area.accept((world1, x, y, z) -> {
-			int blockStateId = world1.getBlockStateId(x, y, z);
+	private BlockCuboid<WorldData> getArea() {
+		return new BlockCuboid<>(center.add(-HORIZONTAL_SCAN, -VERTICAL_SCAN,
+				-HORIZONTAL_SCAN), center.add(HORIZONTAL_SCAN, VERTICAL_SCAN,
+				HORIZONTAL_SCAN));
+	}
+
+	/**
+	 * Checks if the area can be scanned without reading the world.
+	 * 
+	 * @param world
+	 *            The world to scan.
+	 * @param index
+	 *            The index to use.
+	 * @return <code>true</code> if all blocks are in the index.
+	 */
+	public boolean isIndexed(WorldData world, BlockIndex index) {
+		for (BlockHandler handler : handlers) {
+			index.addIds(handler.getIds());
+		}
+		return index.isIndexed(world, getArea());
+	}
+
+	/**
+	 * Scans the area. Needs to be called on the client thread.
+	 * 
+	 * @param world
+	 *            The real world.
+	 * @param index
+	 *            The index to use.
+	 */
+	public void scanArea(WorldData world, BlockIndex index) {
+		for (BlockHandler handler : handlers) {
+			index.addIds(handler.getIds());
+		}
+		scanArea(world, visitor -> index.forEach(world, getArea(), visitor));
+	}
+
+	private void scanArea(WorldData world, Consumer<IndexVisitor> index) {
+		long start = TickProfiler.start();
+		index.accept((blockStateId, x, y, z) -> {
 			BlockHandler handler = handlersCache.length > blockStateId ? handlersCache[blockStateId] : null;
 			if (handler != null) {
-				handler.scanBlock(world1, blockStateId, x, y, z);
+				handler.scanBlock(world, blockStateId, x, y, z);
 			}
-		}, world);
+		});
 		for (BlockHandler handler : handlers) {
 			handler.scanningDone(world);
 		}
-		
+		TickProfiler.end(Phase.SCAN, getClass(), start);
+
 		scaningFinished = true;
 	}
 
-
-	public void startAsync(final WorldData world) {
-		new Thread("Block range finder") {
-			@Override
-			public void run() {
-				try {
-					scanArea(world);
-				} catch (Throwable t) {
-					t.printStackTrace();
-					scaningFinished = true;
-				}
-			};
-		}.start();
+	/**
+	 * Copies the area and scans the copy on an other thread. The handlers get
+	 * the copy instead of the real world. Needs to be called on the client
+	 * thread.
+	 * 
+	 * @param world
+	 *            The real world.
+	 * @param index
+	 *            The index to fill.
+	 */
+	public void startAsync(final WorldData world, final BlockIndex index) {
+		for (BlockHandler handler : handlers) {
+			index.addIds(handler.getIds());
+		}
+		final Snapshot snapshot = index.snapshot(world, getArea());
+		SCAN_THREAD.execute(() -> {
+			try {
+				scanArea(snapshot.getWorld(), snapshot::forEach);
+			} catch (Throwable t) {
+				t.printStackTrace();
+				scaningFinished = true;
+			}
+		});
 	}
 
 	public boolean isScaningFinished() {
@@ -11,6 +11,8 @@ public class ChatMessage {
 	public final String text;
 	public final String textFormatted;
 	public final boolean isChat;
+	public final double sequence;
+	public final String sender;
 
 	public ChatMessage(PersistentChat m, ScriptEngine engine)
 			throws ScriptException {
@@ -18,6 +20,9 @@ public class ChatMessage {
 		text = m.getMessage().getUnformattedComponentText();
 		textFormatted = m.getMessage().getFormattedText();
 		isChat = m.isChat();
+		// js has no long.
+		sequence = m.getSequence();
+		sender = m.getSender();
 	}
 
 	@Override
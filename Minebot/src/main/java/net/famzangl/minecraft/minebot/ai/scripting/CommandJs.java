@@ -37,6 +37,11 @@ import javax.script.ScriptException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @AICommand(name = "minebot", helpText = "Execute a javascript file.")
 public class CommandJs {
@@ -71,15 +76,74 @@ public class CommandJs {
 
 	}
 
+	/**
+	 * An action a script wants to run on the game thread.
+	 *
+	 * @param <T>
+	 *            The result type.
+	 */
+	public interface TickAction<T> {
+		T run(AIHelper helper) throws Exception;
+	}
+
+	/**
+	 * Lets the script thread access the game. None of these methods let the
+	 * game thread wait for the script.
+	 */
 	public interface TickProvider {
 
-		AIHelper getHelper();
+		/**
+		 * Runs an action on the game thread in the next tick.
+		 * 
+		 * @param action
+		 *            The action.
+		 * @return The result of the action.
+		 */
+		<T> CompletableFuture<T> runOnTick(TickAction<T> action);
 
-		void setActiveStrategy(ScriptStrategy strategy, AIHelper helper);
+		/**
+		 * Waits for a result on the script thread.
+		 * 
+		 * @param future
+		 *            The future.
+		 * @return The result
+		 * @throws ScriptException
+		 *             If the action failed with a checked exception.
+		 */
+		<T> T await(CompletableFuture<T> future) throws ScriptException;
 
+		/**
+		 * Gets the game state. The same state is returned until
+		 * {@link #tickDone()} is called.
+		 * 
+		 * @return The state of the last tick.
+		 * @throws ScriptException
+		 */
+		ScriptTickState getState() throws ScriptException;
+
+		/**
+		 * Waits until the next tick was handled and lets the script look at
+		 * the new state.
+		 * 
+		 * @throws ScriptException
+		 */
+		void waitForNextTick() throws ScriptException;
+
+		/**
+		 * Tells that the script is done with the current state.
+		 */
 		void tickDone();
 
-		void pauseForStrategy();
+		/**
+		 * Lets the game thread run a strategy for the script.
+		 * 
+		 * @param strategy
+		 *            The strategy or <code>null</code> to stop the current
+		 *            one.
+		 * @return A future that is completed when the strategy is done or
+		 *         was replaced.
+		 */
+		CompletableFuture<Void> setActiveStrategy(ScriptStrategy strategy);
 
 		ScriptEngine getEngine();
 
@@ -87,70 +151,41 @@ public class CommandJs {
 	}
 
 	/**
-	 * This class runs a given script file. The script is run in a new thread
-	 * that is interlocked with the game thread.
+	 * This class runs a given script file. The script is run in a new thread.
+	 * The script sends actions to the game thread and reads copies of the
+	 * game state, so the game thread never waits for the script.
 	 * 
 	 * @author michael
 	 *
 	 */
 	public static class ScriptRunner implements Runnable, TickProvider {
-		private static final class StrategyTicker implements Runnable {
-			private TickResult result;
-			private AIHelper helper;
-			private AIStrategy activeStrategy;
-
-			public StrategyTicker(AIHelper helper, AIStrategy activeStrategy) {
-				super();
-				this.helper = helper;
-				this.activeStrategy = activeStrategy;
-			}
-
-			@Override
-			public synchronized void run() {
-				try {
-					result = activeStrategy.gameTick(helper);
-				} finally {
-					if (result == null) {
-						LOGGER.error("Strategy returned null: "
-								+ activeStrategy);
-						result = TickResult.ABORT;
-					}
-					this.notifyAll();
-				}
-			}
-
-			public AIHelper getHelper() {
-				return helper;
-			}
-
-			public synchronized TickResult getResult() {
-				while (result == null) {
-					try {
-						this.wait();
-					} catch (InterruptedException e) {
-					}
-				}
-				return result;
-			}
-		}
-
 		private final DescriptionBuilder description;
 		private final File fileName;
-		private boolean finished;
-		private AIHelper tickHelper;
-		private final Object tickHelperMutex = new Object();
+		private volatile boolean finished;
+		private volatile boolean stopped;
+		private volatile Thread scriptThread;
+		/**
+		 * Actions that are run in the next game tick.
+		 */
+		private final ConcurrentLinkedQueue<Consumer<AIHelper>> tickActions = new ConcurrentLinkedQueue<>();
+		/**
+		 * Completed with a copy of the game state after the next tick, if the
+		 * script waits for one.
+		 */
+		private final AtomicReference<CompletableFuture<ScriptTickState>> nextState = new AtomicReference<>();
 		/**
-		 * guarded by tickHelperMutex
+		 * The state the script currently looks at. Only accessed by the
+		 * script thread.
+		 */
+		private ScriptTickState scriptState;
+		/**
+		 * Only accessed by the game thread.
 		 */
-		private boolean scriptInsideTick = false;
-		private boolean scriptWaitingForTick = false;
-		private boolean stopped;
 		private AIStrategy activeStrategy;
-		private final Object activeStrategyMutex = new Object();
+		private CompletableFuture<Void> activeStrategyDone;
 		private TaskError error;
 		private final Object errorMutex = new Object();
 		private ScriptEngine engine;
-		private StrategyTicker pendingTicker;
 
 		public ScriptRunner(File file) {
 			this.fileName = file;
@@ -159,12 +194,12 @@ public class CommandJs {
 
 		@Override
 		public void run() {
+			MineScript minescript = null;
 			try {
-				synchronized (tickHelperMutex) {
-					if (stopped) {
-						throw new ScriptException("Cannot reactivate.");
-					}
+				if (stopped) {
+					throw new ScriptException("Cannot reactivate.");
 				}
+				scriptThread = Thread.currentThread();
 				engine = generateScriptEngine();
 				FileReader fis;
 				try {
@@ -172,7 +207,8 @@ public class CommandJs {
 				} catch (FileNotFoundException e) {
 					throw new ScriptException("File was not found: " + fileName);
 				}
-				engine.put("minescript", new MineScript(this));
+				minescript = new MineScript(this);
+				engine.put("minescript", minescript);
 				engine.eval(fis);
 			} catch (Throwable e) {
 				LOGGER.error(MARKER_SCRIPT, () -> "Error while executing the script."
@@ -184,8 +220,11 @@ public class CommandJs {
 					error = new StringTaskError(e.getMessage());
 				}
 			} finally {
+				if (minescript != null) {
+					minescript.close();
+				}
+				scriptThread = null;
 				finished = true;
-				tickDone();
 			}
 		}
 
@@ -245,42 +284,39 @@ public class CommandJs {
 		}
 
 		public boolean isFinished() {
-			synchronized (tickHelperMutex) {
-				printError();
-				return finished;
-			}
+			printError();
+			return finished;
 		}
 
 		/**
-		 * Runs if we need to wait for a game tick.
+		 * Handles a game tick for the script. This runs the actions the
+		 * script requested and the active strategy, but never waits for the
+		 * script.
 		 * 
 		 * @param helper
-		 * @return
+		 * @return The result of the active strategy.
 		 */
 		public TickResult runForTick(AIHelper helper) {
 			printError();
 
+			Consumer<AIHelper> action;
+			while ((action = tickActions.poll()) != null) {
+				action.accept(helper);
+			}
+
 			TickResult tickResult = runStrategyGameTick(helper);
+
+			CompletableFuture<ScriptTickState> waiting = nextState
+					.getAndSet(null);
+			if (waiting != null) {
+				LOGGER.trace(MARKER_SYNC, "Sending game state to script.");
+				waiting.complete(new ScriptTickState(helper));
+			}
+
 			if (tickResult != null) {
 				return tickResult;
 			}
-			synchronized (tickHelperMutex) {
-				if (scriptWaitingForTick) {
-					tickHelper = helper;
-					scriptInsideTick = true;
-					scriptWaitingForTick = false;
-					tickHelperMutex.notifyAll();
-					while (scriptInsideTick) {
-						try {
-							tickHelperMutex.wait();
-						} catch (InterruptedException e) {
-						}
-					}
-					tickHelper = null;
-				}
-				return finished ? TickResult.NO_MORE_WORK
-						: TickResult.TICK_HANDLED;
-			}
+			return finished ? TickResult.NO_MORE_WORK : TickResult.TICK_HANDLED;
 		}
 
 		private void printError() {
@@ -293,58 +329,107 @@ public class CommandJs {
 		}
 
 		@Override
-		public void tickDone() {
-			synchronized (tickHelperMutex) {
-				LOGGER.trace(MARKER_SYNC, "Script requests that we resume.");
-				printError();
-				scriptInsideTick = false;
-				scriptWaitingForTick = false;
-				tickHelperMutex.notifyAll();
-			}
-
+		public <T> CompletableFuture<T> runOnTick(TickAction<T> action) {
+			CompletableFuture<T> result = new CompletableFuture<>();
+			tickActions.add(helper -> {
+				try {
+					result.complete(action.run(helper));
+				} catch (Exception e) {
+					result.completeExceptionally(e);
+				}
+			});
+			return result;
 		}
 
 		@Override
-		public AIHelper getHelper() {
-			synchronized (tickHelperMutex) {
-				LOGGER.trace(MARKER_SYNC,
-						"Synchronize to getting script helper.");
+		public <T> T await(CompletableFuture<T> future) throws ScriptException {
+			while (true) {
 				if (stopped) {
 					throw new RuntimeException("Stop.");
 				}
-				while (tickHelper == null) {
-					try {
-						scriptWaitingForTick = true;
-						tickHelperMutex.wait();
-					} catch (InterruptedException e) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					// check if we were stopped.
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					} else {
+						throw new ScriptException((Exception) cause);
 					}
 				}
-				scriptInsideTick = true;
-				return tickHelper;
 			}
 		}
 
-		public void stop() {
-			synchronized (tickHelperMutex) {
-				stopped = true;
+		@Override
+		public ScriptTickState getState() throws ScriptException {
+			if (scriptState == null) {
+				waitForNextTick();
 			}
+			return scriptState;
 		}
 
 		@Override
-		public void setActiveStrategy(ScriptStrategy strategy, AIHelper helper) {
-			synchronized (activeStrategyMutex) {
-				LOGGER.trace(MARKER_SYNC, "Change strategy to " + strategy);
-				if (activeStrategy != null) {
-					activeStrategy.setActive(false, helper);
-				}
-				activeStrategy = strategy == null ? null : strategy
-						.getStrategy();
-				if (activeStrategy != null) {
-					activeStrategy.setActive(true, helper);
+		public void waitForNextTick() throws ScriptException {
+			LOGGER.trace(MARKER_SYNC, "Script waits for the next tick.");
+			scriptState = await(nextState.updateAndGet(
+					f -> f == null ? new CompletableFuture<ScriptTickState>() : f));
+		}
+
+		@Override
+		public void tickDone() {
+			LOGGER.trace(MARKER_SYNC, "Script is done with the tick.");
+			printError();
+			scriptState = null;
+		}
+
+		/**
+		 * Stops the script. Needs to be called on the game thread.
+		 * 
+		 * @param helper
+		 *            The helper.
+		 */
+		public void stop(AIHelper helper) {
+			stopped = true;
+			changeStrategy(null, null, helper);
+			Thread thread = scriptThread;
+			if (thread != null) {
+				// wake it up if it waits for us.
+				thread.interrupt();
+			}
+		}
+
+		@Override
+		public CompletableFuture<Void> setActiveStrategy(ScriptStrategy strategy) {
+			CompletableFuture<Void> done = new CompletableFuture<>();
+			runOnTick(helper -> {
+				if (strategy == null) {
+					changeStrategy(null, null, helper);
+					done.complete(null);
+				} else {
+					changeStrategy(strategy.getStrategy(), done, helper);
 				}
-				description.setActiveStrategy(activeStrategy);
-				activeStrategyMutex.notifyAll();
+				return null;
+			});
+			return done;
+		}
+
+		private void changeStrategy(AIStrategy strategy,
+				CompletableFuture<Void> done, AIHelper helper) {
+			LOGGER.trace(MARKER_SYNC, "Change strategy to " + strategy);
+			if (activeStrategy != null) {
+				activeStrategy.setActive(false, helper);
+				activeStrategyDone.complete(null);
+			}
+			activeStrategy = strategy;
+			activeStrategyDone = done;
+			if (activeStrategy != null) {
+				activeStrategy.setActive(true, helper);
 			}
+			description.setActiveStrategy(activeStrategy);
 		}
 
 		/**
@@ -356,42 +441,26 @@ public class CommandJs {
 			return description.getDescriptionString(helper);
 		}
 
-		@Override
-		public void pauseForStrategy() {
-			synchronized (activeStrategyMutex) {
-				while (activeStrategy != null) {
-					if (pendingTicker != null) {
-						LOGGER.trace(MARKER_SYNC,
-								"Handling strategy tick in js thread.");
-						tickHelper = pendingTicker.getHelper();
-						pendingTicker.run();
-						tickHelper = null;
-						pendingTicker = null;
-					}
-					try {
-						activeStrategyMutex.wait();
-					} catch (InterruptedException e) {
-					}
-				}
-			}
-		}
-
 		private TickResult runStrategyGameTick(AIHelper helper) {
-			StrategyTicker ticker;
-			synchronized (activeStrategyMutex) {
-				if (activeStrategy == null) {
-					return null;
-				}
-				// We need to dispatch a activeStrategy.gameTick(helper) on the
-				// JS thread.
-				ticker = new StrategyTicker(helper, activeStrategy);
-				pendingTicker = ticker;
-				activeStrategyMutex.notifyAll();
+			if (activeStrategy == null) {
+				return null;
+			}
+			TickResult tickResult;
+			try {
+				tickResult = activeStrategy.gameTick(helper);
+			} catch (RuntimeException e) {
+				LOGGER.error(MARKER_SCRIPT, "Strategy failed: " + activeStrategy, e);
+				activeStrategyDone.completeExceptionally(e);
+				changeStrategy(null, null, helper);
+				return null;
+			}
+			if (tickResult == null) {
+				LOGGER.error("Strategy returned null: " + activeStrategy);
+				tickResult = TickResult.ABORT;
 			}
-			TickResult tickResult = ticker.getResult();
 			if (tickResult == TickResult.NO_MORE_WORK
 					|| tickResult == TickResult.ABORT) {
-				setActiveStrategy(null, helper);
+				changeStrategy(null, null, helper);
 				return null;
 			}
 			return tickResult;
@@ -425,7 +494,7 @@ public class CommandJs {
 
 		@Override
 		protected void onDeactivate(AIHelper helper) {
-			scriptRunner.stop();
+			scriptRunner.stop(helper);
 			super.onDeactivate(helper);
 		}
 
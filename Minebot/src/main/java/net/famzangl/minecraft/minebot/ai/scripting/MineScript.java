@@ -22,8 +22,12 @@ import net.famzangl.minecraft.minebot.ai.AIHelper;
 import net.famzangl.minecraft.minebot.ai.AIHelper.ToolRaterResult;
 import net.famzangl.minecraft.minebot.ai.command.AIChatController;
 import net.famzangl.minecraft.minebot.ai.command.UnknownCommandException;
+import net.famzangl.minecraft.minebot.ai.net.ChatHistory;
+import net.famzangl.minecraft.minebot.ai.net.ChatHistory.Index;
+import net.famzangl.minecraft.minebot.ai.net.ChatHistory.MessageRing;
 import net.famzangl.minecraft.minebot.ai.net.PersistentChat;
 import net.famzangl.minecraft.minebot.ai.scripting.CommandJs.ScriptStrategy;
+import net.famzangl.minecraft.minebot.ai.scripting.CommandJs.TickAction;
 import net.famzangl.minecraft.minebot.ai.scripting.CommandJs.TickProvider;
 import net.famzangl.minecraft.minebot.ai.strategy.AIStrategy;
 import net.famzangl.minecraft.minebot.ai.strategy.InventoryDefinition;
@@ -48,11 +52,18 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -70,9 +81,24 @@ public class MineScript {
 		this.tickProvider = tickProvider;
 	}
 
-	private AIHelper waitForTick() {
-		AIHelper helper = tickProvider.getHelper();
-		return helper;
+	/**
+	 * @return The game state the script currently looks at.
+	 * @throws ScriptException
+	 */
+	private ScriptTickState getState() throws ScriptException {
+		return tickProvider.getState();
+	}
+
+	/**
+	 * Runs an action on the game thread and waits for the result.
+	 * 
+	 * @param action
+	 *            The action.
+	 * @return The result.
+	 * @throws ScriptException
+	 */
+	private <T> T onTick(TickAction<T> action) throws ScriptException {
+		return tickProvider.await(tickProvider.runOnTick(action));
 	}
 
 	/**
@@ -84,9 +110,10 @@ public class MineScript {
 	 * @throws UnknownCommandException
 	 */
 	public ScriptStrategy safeStrategy(String command, Object... arguments)
-			throws CommandSyntaxException {
-		return new ScriptStrategy(AIChatController.getRegistry()
-				.evaluateCommandWithSaferule(waitForTick(), toCommandString(command, arguments)));
+			throws CommandSyntaxException, ScriptException {
+		String commandString = toCommandString(command, arguments);
+		return evaluateCommand(helper -> AIChatController.getRegistry()
+				.evaluateCommandWithSaferule(helper, commandString));
 	}
 
 	/**
@@ -96,9 +123,22 @@ public class MineScript {
 	 * @throws UnknownCommandException
 	 */
 	public ScriptStrategy strategy(String command, Object... arguments)
-			throws CommandSyntaxException {
-		return new ScriptStrategy(AIChatController.getRegistry()
-				.evaluateCommand(waitForTick(), toCommandString(command, arguments)));
+			throws CommandSyntaxException, ScriptException {
+		String commandString = toCommandString(command, arguments);
+		return evaluateCommand(helper -> AIChatController.getRegistry()
+				.evaluateCommand(helper, commandString));
+	}
+
+	private ScriptStrategy evaluateCommand(TickAction<AIStrategy> evaluate)
+			throws CommandSyntaxException, ScriptException {
+		try {
+			return new ScriptStrategy(onTick(evaluate));
+		} catch (ScriptException e) {
+			if (e.getCause() instanceof CommandSyntaxException) {
+				throw (CommandSyntaxException) e.getCause();
+			}
+			throw e;
+		}
 	}
 
 	private String toCommandString(String command, Object[] arguments) {
@@ -113,12 +153,12 @@ public class MineScript {
 		return new ScriptStrategy(new WalkTowardsStrategy(x, z));
 	}
 
-	public WrappedBlockPos getPlayerBlockPosition() {
-		return new WrappedBlockPos(waitForTick().getPlayerPosition());
+	public WrappedBlockPos getPlayerBlockPosition() throws ScriptException {
+		return new WrappedBlockPos(getState().getPlayerPosition());
 	}
 
-	public FoundEntity getPlayer() {
-		return new FoundEntity(waitForTick().getMinecraft().player);
+	public FoundEntity getPlayer() throws ScriptException {
+		return getState().getPlayer();
 	}
 
 	/**
@@ -141,7 +181,23 @@ public class MineScript {
 	 */
 	public Object getEntities(String entityDescr, Object nbtO)
 			throws ScriptException {
-		final AIHelper helper = waitForTick();
+		CompoundNBT nbt = null;
+		if (nbtO != null) {
+			String nbtS = jsonify(nbtO);
+			try {
+				nbt = JsonToNBT.getTagFromJson(nbtS);
+			} catch (CommandSyntaxException e1) {
+				throw new ScriptException(e1);
+			}
+		}
+		CompoundNBT filter = nbt;
+		// The entities can only be accessed on the game thread.
+		return toJSArray(onTick(helper -> findEntities(helper, entityDescr,
+				filter)));
+	}
+
+	private List<FoundEntity> findEntities(AIHelper helper,
+			String entityDescr, CompoundNBT nbt) throws ScriptException {
 		List<? extends Entity> entities;
 		try {
 			entities = new EntitySelectorParser(new StringReader(entityDescr))
@@ -157,15 +213,6 @@ public class MineScript {
 			throw new ScriptException(e2);
 		}
 
-		CompoundNBT nbt = null;
-		if (nbtO != null) {
-			String nbtS = jsonify(nbtO);
-			try {
-				nbt = JsonToNBT.getTagFromJson(nbtS);
-			} catch (CommandSyntaxException e1) {
-				throw new ScriptException(e1);
-			}
-		}
 		ArrayList<FoundEntity> foundEntities = new ArrayList<FoundEntity>();
 		for (Entity e : entities) {
 			if (nbt != null) {
@@ -180,8 +227,7 @@ public class MineScript {
 			}
 			foundEntities.add(new FoundEntity(e));
 		}
-
-		return toJSArray(foundEntities);
+		return foundEntities;
 	}
 
 	private Object toJSArray(List<?> entities) throws ScriptException {
@@ -201,39 +247,201 @@ public class MineScript {
 		AIChatController.addChatLine(message);
 	}
 
-	private ChatMessage[] chatMessageCache = new ChatMessage[0];
+	/**
+	 * How many chat indexes a script may use at the same time. The least
+	 * recently used one is removed if it asks for more.
+	 */
+	private static final int MAX_CHAT_INDEXES = 16;
+	private static final int CHAT_INDEX_CAPACITY = 1024;
 
-	public ChatMessage[] getChatMessages() throws ScriptException {
-		List<PersistentChat> messages = waitForTick().getNetworkHelper()
-				.getChatMessages();
-		int len = messages.size();
-		if (len > chatMessageCache.length) {
-			int oldLength = chatMessageCache.length;
-			chatMessageCache = Arrays.copyOf(chatMessageCache, len);
-			for (int i = oldLength; i < len; i++) {
-				PersistentChat message = messages.get(i);
-				chatMessageCache[i] = new ChatMessage(message,
-						tickProvider.getEngine());
+	/**
+	 * The messages of a chat history or of one of its indexes, converted for
+	 * the script. Only new messages are converted.
+	 */
+	private class ChatQuery {
+		private final ChatHistory history;
+		private final MessageRing ring;
+		private final ArrayDeque<ChatMessage> converted = new ArrayDeque<>();
+		private long convertedEnd = 0;
+
+		public ChatQuery(ChatHistory history, MessageRing ring) {
+			this.history = history;
+			this.ring = ring;
+		}
+
+		private ArrayDeque<ChatMessage> update() throws ScriptException {
+			for (PersistentChat message : ring.getSince(convertedEnd)) {
+				converted.addLast(new ChatMessage(message,
+						tickProvider.getEngine()));
+				convertedEnd = message.getSequence() + 1;
+			}
+			while (converted.size() > ring.getCapacity()) {
+				converted.removeFirst();
+			}
+			return converted;
+		}
+
+		public ChatMessage[] getSince(long sequence) throws ScriptException {
+			ArrayList<ChatMessage> result = new ArrayList<>();
+			Iterator<ChatMessage> newestFirst = update().descendingIterator();
+			while (newestFirst.hasNext()) {
+				ChatMessage message = newestFirst.next();
+				if (message.sequence < sequence) {
+					break;
+				}
+				result.add(message);
+			}
+			Collections.reverse(result);
+			return result.toArray(new ChatMessage[0]);
+		}
+
+		public void close() {
+			if (ring instanceof Index) {
+				history.removeIndex((Index) ring);
+			}
+		}
+	}
+
+	private ChatQuery chatMessages;
+	/**
+	 * The indexes used by {@link #getChatMessagesMatching(String, long)} and
+	 * {@link #getChatMessagesFrom(String, long)}, in access order.
+	 */
+	private final LinkedHashMap<String, ChatQuery> chatIndexes = new LinkedHashMap<String, ChatQuery>(
+			16, .75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Entry<String, ChatQuery> eldest) {
+			if (size() > MAX_CHAT_INDEXES) {
+				eldest.getValue().close();
+				return true;
 			}
+			return false;
+		}
+	};
+
+	private ChatQuery getChatMessageQuery() throws ScriptException {
+		ChatHistory history = getState().getChatHistory();
+		if (chatMessages == null || chatMessages.history != history) {
+			// We reconnected. The indexes belong to the old history.
+			close();
+			chatMessages = new ChatQuery(history, history.getMessages());
+		}
+		return chatMessages;
+	}
+
+	private ChatQuery getChatIndexQuery(String key,
+			Function<ChatHistory, Index> addIndex) throws ScriptException {
+		ChatHistory history = getChatMessageQuery().history;
+		ChatQuery query = chatIndexes.get(key);
+		if (query == null) {
+			query = new ChatQuery(history, addIndex.apply(history));
+			chatIndexes.put(key, query);
+		}
+		return query;
+	}
+
+	/**
+	 * Removes the chat indexes this script added.
+	 */
+	public void close() {
+		chatIndexes.values().forEach(ChatQuery::close);
+		chatIndexes.clear();
+		chatMessages = null;
+	}
+
+	/**
+	 * @return The last chat messages we received.
+	 * @throws ScriptException
+	 */
+	public ChatMessage[] getChatMessages() throws ScriptException {
+		return getChatMessageQuery().update().toArray(new ChatMessage[0]);
+	}
+
+	/**
+	 * Gets the chat messages received after a given one. Use
+	 * {@link #getNextChatSequence()} for the first call and then the sequence
+	 * of the last message plus one.
+	 * 
+	 * @param sequence
+	 *            The sequence of the first message to get.
+	 * @return The messages, oldest first.
+	 * @throws ScriptException
+	 */
+	public ChatMessage[] getChatMessagesSince(long sequence)
+			throws ScriptException {
+		return getChatMessageQuery().getSince(sequence);
+	}
+
+	/**
+	 * Like {@link #getChatMessagesSince(long)}, but only returns the messages
+	 * that contain the regular expression. The first call adds an index for
+	 * the expression, so it also finds older messages the history dropped as
+	 * long as the script runs.
+	 * 
+	 * @param regex
+	 *            The expression to search in the message text.
+	 * @param sequence
+	 *            The sequence of the first message to get.
+	 * @return The messages, oldest first.
+	 * @throws ScriptException
+	 */
+	public ChatMessage[] getChatMessagesMatching(String regex, long sequence)
+			throws ScriptException {
+		if (regex == null) {
+			return getChatMessagesSince(sequence);
 		}
-		return chatMessageCache;
+		Pattern pattern;
+		try {
+			pattern = Pattern.compile(regex);
+		} catch (PatternSyntaxException e) {
+			throw new ScriptException(e.getMessage());
+		}
+		return getChatIndexQuery("regex:" + regex,
+				history -> history.addPatternIndex(pattern, CHAT_INDEX_CAPACITY))
+				.getSince(sequence);
+	}
+
+	/**
+	 * Like {@link #getChatMessagesSince(long)}, but only returns the chat
+	 * messages a player sent.
+	 * 
+	 * @param sender
+	 *            The name of the player.
+	 * @param sequence
+	 *            The sequence of the first message to get.
+	 * @return The messages, oldest first.
+	 * @throws ScriptException
+	 */
+	public ChatMessage[] getChatMessagesFrom(String sender, long sequence)
+			throws ScriptException {
+		return getChatIndexQuery("sender:" + sender,
+				history -> history.addSenderIndex(sender, CHAT_INDEX_CAPACITY))
+				.getSince(sequence);
 	}
 
-	public boolean isAlive() {
-		return waitForTick().isAlive();
+	/**
+	 * @return The sequence the next chat message will get.
+	 */
+	public long getNextChatSequence() throws ScriptException {
+		return getState().getChatHistory().getNextSequence();
 	}
 
-	public int getExperienceLevel() {
-		return waitForTick().getMinecraft().player.experienceLevel;
+	public boolean isAlive() throws ScriptException {
+		return getState().isAlive();
 	}
 
-	public int getCurrentTime() {
-		return (int) (waitForTick().getMinecraft().world.getGameTime() % 24000l);
+	public int getExperienceLevel() throws ScriptException {
+		return getState().getExperienceLevel();
 	}
 
-	public InventoryDefinition getInventory() {
-		return new InventoryDefinition(
-				waitForTick().getMinecraft().player.inventory);
+	public int getCurrentTime() throws ScriptException {
+		return (int) (getState().getGameTime() % 24000l);
+	}
+
+	public InventoryDefinition getInventory() throws ScriptException {
+		return getState().getInventory();
 	}
 
 	public ScriptStrategy stack(Object... strats) {
@@ -253,27 +461,33 @@ public class MineScript {
 		return new ScriptStrategy(new StackStrategy(stack));
 	}
 
-	public void doNothing() {
-		tickProvider.setActiveStrategy(null, waitForTick());
-		tickProvider.tickDone();
-		try {
-			// Hope that main thread exits tick.
-			Thread.sleep(5);
-		} catch (InterruptedException e) {
-		}
+	/**
+	 * Stops the current strategy and waits for the next game tick.
+	 * 
+	 * @throws ScriptException
+	 */
+	public void doNothing() throws ScriptException {
+		tickProvider.setActiveStrategy(null);
+		tickProvider.waitForNextTick();
 	}
 
-	public void doStrategy(AIStrategy strategy) {
+	public void doStrategy(AIStrategy strategy) throws ScriptException {
 		doStrategy(new ScriptStrategy(strategy));
 	}
 
-	public void doStrategy(ScriptStrategy strategy) {
+	/**
+	 * Runs a strategy on the game thread and waits until it is done.
+	 * 
+	 * @param strategy
+	 *            The strategy.
+	 * @throws ScriptException
+	 */
+	public void doStrategy(ScriptStrategy strategy) throws ScriptException {
 		if (strategy == null) {
 			throw new NullPointerException();
 		}
-		tickProvider.setActiveStrategy(strategy, waitForTick());
 		tickProvider.tickDone();
-		tickProvider.pauseForStrategy();
+		tickProvider.await(tickProvider.setActiveStrategy(strategy));
 		if (strategy.hasFailed()) {
 			throw new StrategyFailedException();
 		}
@@ -291,15 +505,18 @@ public class MineScript {
 		tickProvider.getDescription().setAddStrategyDescription(val);
 	}
 
-	public void serverCommand(String command) {
-		RunFileStrategy.runCommand(waitForTick(), command);
+	public void serverCommand(String command) throws ScriptException {
+		onTick(helper -> {
+			RunFileStrategy.runCommand(helper, command);
+			return null;
+		});
 		tickProvider.tickDone();
 	}
 
 	public ToolRaterResult searchTool(Object toolRaterO) throws ScriptException {
 		String toolRater = jsonify(toolRaterO);
 		ToolRater rater = ToolRater.createToolRaterFromJson(toolRater);
-		return waitForTick().searchToolFor(null, rater);
+		return onTick(helper -> helper.searchToolFor(null, rater));
 	}
 
 	private String jsonify(Object toolRaterO) throws ScriptException {
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai.scripting;
+
+import net.famzangl.minecraft.minebot.ai.AIHelper;
+import net.famzangl.minecraft.minebot.ai.net.ChatHistory;
+import net.famzangl.minecraft.minebot.ai.net.NetworkHelper;
+import net.famzangl.minecraft.minebot.ai.strategy.InventoryDefinition;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * The game state a script sees. It is copied at the end of a game tick, so
+ * the script can read it on its own thread.
+ *
+ * @author Michael Zangl
+ *
+ */
+public class ScriptTickState {
+	/**
+	 * Used while we are not connected to a server. Nothing is ever added.
+	 */
+	private static final ChatHistory NO_CHAT_HISTORY = new ChatHistory(1);
+
+	private final BlockPos playerPosition;
+	private final FoundEntity player;
+	private final boolean alive;
+	private final int experienceLevel;
+	private final long gameTime;
+	private final InventoryDefinition inventory;
+	private final ChatHistory chatHistory;
+
+	/**
+	 * Copies the state. Needs to be called on the game thread.
+	 *
+	 * @param helper
+	 *            The helper for the current tick.
+	 */
+	public ScriptTickState(AIHelper helper) {
+		playerPosition = helper.getPlayerPosition();
+		player = new FoundEntity(helper.getMinecraft().player);
+		alive = helper.isAlive();
+		experienceLevel = helper.getMinecraft().player.experienceLevel;
+		gameTime = helper.getMinecraft().world.getGameTime();
+		inventory = new InventoryDefinition(
+				helper.getMinecraft().player.inventory);
+		NetworkHelper networkHelper = helper.getNetworkHelper();
+		chatHistory = networkHelper == null ? NO_CHAT_HISTORY : networkHelper
+				.getChatHistory();
+	}
+
+	public BlockPos getPlayerPosition() {
+		return playerPosition;
+	}
+
+	public FoundEntity getPlayer() {
+		return player;
+	}
+
+	public boolean isAlive() {
+		return alive;
+	}
+
+	public int getExperienceLevel() {
+		return experienceLevel;
+	}
+
+	public long getGameTime() {
+		return gameTime;
+	}
+
+	public InventoryDefinition getInventory() {
+		return inventory;
+	}
+
+	/**
+	 * @return The chat history. It can be read from any thread and is not
+	 *         copied.
+	 */
+	public ChatHistory getChatHistory() {
+		return chatHistory;
+	}
+}
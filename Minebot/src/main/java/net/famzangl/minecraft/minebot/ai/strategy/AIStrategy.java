@@ -17,6 +17,8 @@
 package net.famzangl.minecraft.minebot.ai.strategy;
 
 import net.famzangl.minecraft.minebot.ai.AIHelper;
+import net.famzangl.minecraft.minebot.ai.profiler.TickProfiler;
+import net.famzangl.minecraft.minebot.ai.profiler.TickProfiler.Phase;
 import net.minecraftforge.event.TickEvent;
 
 /**
@@ -120,7 +122,12 @@ public abstract class AIStrategy {
 			throw new IllegalStateException();
 		}
 
-		return onGameTick(helper);
+		long start = TickProfiler.start();
+		try {
+			return onGameTick(helper);
+		} finally {
+			TickProfiler.end(Phase.STRATEGY, getClass(), start);
+		}
 	}
 
 	protected abstract TickResult onGameTick(AIHelper helper);
@@ -16,16 +16,29 @@
  *******************************************************************************/
 package net.famzangl.minecraft.minebot.ai.strategy;
 
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.famzangl.minecraft.minebot.ai.AIHelper;
+import net.famzangl.minecraft.minebot.ai.net.NetworkHelper;
 import net.famzangl.minecraft.minebot.ai.path.MovePathFinder;
+import net.famzangl.minecraft.minebot.ai.path.TaskReceiver;
 import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldSnapshot;
 import net.famzangl.minecraft.minebot.ai.path.world.WorldWithDelta;
 import net.famzangl.minecraft.minebot.ai.render.PosMarkerRenderer;
 import net.famzangl.minecraft.minebot.ai.task.AITask;
 import net.famzangl.minecraft.minebot.ai.task.WaitTask;
+import net.famzangl.minecraft.minebot.ai.task.error.TaskError;
 import net.minecraft.util.math.BlockPos;
 import net.minecraftforge.event.TickEvent;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 /**
  * This is the base strategy for all strategies that do pathfinding. Most of the
  * times, it does not need to be extended, it just needs an adjusted
@@ -37,14 +50,70 @@ import net.minecraftforge.event.TickEvent;
  *
  */
 public class PathFinderStrategy extends TaskStrategy {
+	private static final Logger LOGGER = LogManager
+			.getLogger(PathFinderStrategy.class);
 	private static final boolean DEBUG = false;
+	/**
+	 * We search for new tasks in advance while there are less tasks than this.
+	 */
+	private static final int PRESEARCH_TASKS = 32;
+
+	private static final AtomicInteger SEARCH_THREAD_COUNT = new AtomicInteger();
+	/**
+	 * Runs the searches of path finders that support
+	 * {@link MovePathFinder#canSearchAsync()}.
+	 */
+	private static final ExecutorService SEARCH_THREADS = Executors
+			.newFixedThreadPool(2, r -> {
+				Thread thread = new Thread(r, "minebot-path-finder-"
+						+ SEARCH_THREAD_COUNT.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/**
+	 * A search that runs on a {@link WorldSnapshot} in the background. The
+	 * tasks are collected and only added to the strategy on the client thread.
+	 */
+	private static class AsyncSearch implements TaskReceiver {
+		private final WorldSnapshot world;
+		private final ArrayList<AITask> foundTasks = new ArrayList<>();
+		private volatile boolean cancelled;
+		private CompletableFuture<Boolean> result;
+
+		public AsyncSearch(WorldSnapshot world) {
+			this.world = world;
+		}
+
+		@Override
+		public void addTask(AITask task) {
+			foundTasks.add(task);
+		}
+	}
+
 	private final MovePathFinder pathFinder;
 	private final String description;
 	private boolean inShouldTakeOver;
 	private boolean noPathFound;
 	private final PosMarkerRenderer renderer = new PosMarkerRenderer(255, 128,
 			0);
-	protected WorldData pathFindingWorld;;
+	protected WorldData pathFindingWorld;
+	private AsyncSearch asyncSearch;
+	/**
+	 * The last search we started. A new search waits for it, since the path
+	 * finder can only run one search at a time. This includes searches on the
+	 * client thread: A cancelled search may still be running.
+	 */
+	private CompletableFuture<?> lastAsyncSearch = CompletableFuture
+			.completedFuture(null);
+	/**
+	 * The world after all tasks up to {@link #plannedUntil} are done. Only
+	 * forks of it are searched, so the tasks found later can be applied to
+	 * it. It is forgotten once those tasks are done or a task failed, since it
+	 * still contains the changes of the finished tasks.
+	 */
+	private WorldWithDelta plannedWorld;
+	private AITask plannedUntil;
 
 	// private final HealthWatcher watcher = new HealthWatcher();
 
@@ -54,14 +123,61 @@ public class PathFinderStrategy extends TaskStrategy {
 	}
 
 	@Override
-	public void searchTasks(AIHelper helper) {
-		if (pathFindingWorld != null) {
+	protected void onActivate(AIHelper helper) {
+		super.onActivate(helper);
+		NetworkHelper networkHelper = helper.getNetworkHelper();
+		if (networkHelper != null) {
+			pathFinder.startListening(networkHelper);
+		}
+	}
+
+	@Override
+	protected void onDeactivate(AIHelper helper) {
+		NetworkHelper networkHelper = helper.getNetworkHelper();
+		if (networkHelper != null) {
+			pathFinder.stopListening(networkHelper);
+		}
+		if (asyncSearch != null) {
+			// The search thread aborts the path finder when it sees this.
+			asyncSearch.cancelled = true;
+			asyncSearch = null;
+		} else if (lastAsyncSearch.isDone()) {
 			pathFinder.abort();
 		}
+		pathFindingWorld = null;
+		forgetPlannedWorld();
+		super.onDeactivate(helper);
+	}
 
+	@Override
+	public void searchTasks(AIHelper helper) {
+		if (asyncSearch != null) {
+			collectAsyncSearch(helper);
+			return;
+		} else if (!lastAsyncSearch.isDone()) {
+			// A cancelled search still uses the path finder.
+			addTask(new WaitTask(1));
+			return;
+		}
+		boolean continuing = false;
+		if (pathFindingWorld instanceof WorldWithDelta
+				&& ((WorldWithDelta) pathFindingWorld)
+						.hasSameBlocksIn(helper.getWorld())) {
+			// The tasks changed the world the way the pre search expected.
+			// Continue it on the real world instead of starting from scratch.
+			// The path finder moves its start if we did not end up where the
+			// pre search started.
+			debug("Continuing pre search.");
+			continuing = true;
+		} else if (pathFindingWorld != null) {
+			pathFinder.abort();
+		}
 		pathFindingWorld = helper.getWorld();
 		if (isInAir(helper)) {
 			addTask(new WaitTask(3)); // < 3 ticks should be enough for the game to keep up
+		} else if (!continuing && pathFinder.canSearchAsync()) {
+			startAsyncSearch(helper);
+			addTask(new WaitTask(1));
 		} else if (!searchTasksWithPathfinder(helper)) {
 			// Path finding needs more time
 			if (!(noPathFound && inShouldTakeOver)) {
@@ -75,6 +191,59 @@ public class PathFinderStrategy extends TaskStrategy {
 		pathFindingWorld = null;
 	}
 
+	private void startAsyncSearch(AIHelper helper) {
+		AsyncSearch search = new AsyncSearch(
+				pathFinder.takeSnapshot(helper));
+		debug("Starting async search at " + search.world.getPlayerPosition());
+		search.result = lastAsyncSearch.handle((r, e) -> null)
+				.thenApplyAsync(v -> runAsyncSearch(helper, search),
+						SEARCH_THREADS);
+		lastAsyncSearch = search.result;
+		asyncSearch = search;
+	}
+
+	private boolean runAsyncSearch(AIHelper helper, AsyncSearch search) {
+		// Something else may have been searched before. Async searches do not
+		// reuse the field, they run on a new snapshot every time.
+		pathFinder.abort();
+		while (!search.cancelled) {
+			if (pathFinder.searchSomethingAround(
+					search.world.getPlayerPosition(), helper, search.world,
+					search)) {
+				return true;
+			}
+		}
+		pathFinder.abort();
+		return false;
+	}
+
+	private void collectAsyncSearch(AIHelper helper) {
+		if (!asyncSearch.result.isDone()) {
+			addTask(new WaitTask(1));
+			return;
+		}
+		AsyncSearch search = asyncSearch;
+		asyncSearch = null;
+		boolean finished = search.result.handle((r, e) -> {
+			if (e != null) {
+				LOGGER.error("Async path search failed.", e);
+			}
+			return r != null && r;
+		}).join();
+		if (finished
+				&& search.world.getPlayerPosition().equals(
+						helper.getWorld().getPlayerPosition())) {
+			search.foundTasks.forEach(this::addTask);
+			if (!hasMoreTasks()) {
+				noPathFound = true;
+			}
+		} else {
+			// We moved while searching. Search again.
+			debug("Discarding async search result.");
+			addTask(new WaitTask(1));
+		}
+	}
+
 	private boolean isInAir(AIHelper helper) {
 		return !helper.getMinecraft().player.onGround;
 	}
@@ -87,7 +256,8 @@ public class PathFinderStrategy extends TaskStrategy {
 
 	@Override
 	protected TickResult onGameTick(AIHelper helper) {
-		if (pathFindingWorld != null) {
+		if (pathFindingWorld != null && asyncSearch == null
+				&& lastAsyncSearch.isDone()) {
 			// do pre pathfinding
 			if (searchTasksWithPathfinder(helper)) {
 				pathFindingWorld = null;
@@ -96,32 +266,68 @@ public class PathFinderStrategy extends TaskStrategy {
 
 		boolean wasInDesync = isDesync();
 		TickResult tickResult = super.onGameTick(helper);
+		if (plannedUntil != null && !tasks.contains(plannedUntil)) {
+			// All planned tasks are done. The real world is what counts now.
+			forgetPlannedWorld();
+		}
 		// If we get a tick_again, we can start a new pathfinding.
 		if (pathFindingWorld == null && tickResult == TickResult.TICK_AGAIN
-				&& !wasInDesync && !isDesync() && tasks.size() < 9
-				&& !tasks.isEmpty()) {
-			WorldWithDelta world = new WorldWithDelta(helper.getWorld());
-			debug("Applying DELTA");
-			for (AITask t : tasks) {
-				debug("Task: " + t);
-				if (!t.applyToDelta(world)) {
-					debug("--> Cannot pre-search tasks because " + t
-							+ " does not support world deltas.");
-					world = null;
-					break;
-				}
-			}
-			pathFindingWorld = world;
-		} else if (tasks.size() < 9 && tickResult == TickResult.TICK_AGAIN) {
+				&& !wasInDesync && !isDesync()
+				&& tasks.size() < PRESEARCH_TASKS && !tasks.isEmpty()) {
+			pathFindingWorld = planAllTasks(helper);
+		} else if (tasks.size() < PRESEARCH_TASKS
+				&& tickResult == TickResult.TICK_AGAIN) {
 			debug("I want to presearch, but this requires "
 					+ (pathFindingWorld == null) + "&&"
 					+ (tickResult == TickResult.TICK_AGAIN) + "&&"
 					+ (!wasInDesync) + "&&" + (!isDesync()) + "&&"
-					+ (tasks.size() < 9) + "&&" + (!tasks.isEmpty()));
+					+ (tasks.size() < PRESEARCH_TASKS) + "&&" + (!tasks.isEmpty()));
 		}
 		return tickResult;
 	}
 
+	@Override
+	public void desync(TaskError error) {
+		// A task failed, the world may not be what we planned.
+		forgetPlannedWorld();
+		super.desync(error);
+	}
+
+	private void forgetPlannedWorld() {
+		plannedWorld = null;
+		plannedUntil = null;
+	}
+
+	/**
+	 * Applies all tasks to a world delta. Tasks that were already applied for
+	 * the last pre search are not applied again.
+	 * 
+	 * @param helper
+	 *            The helper
+	 * @return A fork of the planned world or <code>null</code> if a task does
+	 *         not support world deltas.
+	 */
+	private WorldWithDelta planAllTasks(AIHelper helper) {
+		int start = plannedUntil == null ? -1 : tasks.indexOf(plannedUntil);
+		if (plannedWorld == null || start < 0) {
+			// The tasks were cleared or the world was never planned.
+			plannedWorld = new WorldWithDelta(helper.getWorld());
+			start = -1;
+		}
+		debug("Applying DELTA");
+		for (AITask t : tasks.subList(start + 1, tasks.size())) {
+			debug("Task: " + t);
+			if (!t.applyToDelta(plannedWorld)) {
+				debug("--> Cannot pre-search tasks because " + t
+						+ " does not support world deltas.");
+				forgetPlannedWorld();
+				return null;
+			}
+		}
+		plannedUntil = tasks.getLast();
+		return plannedWorld.fork();
+	}
+
 	private void debug(String string) {
 		if (DEBUG) {
 			System.out.println(string);
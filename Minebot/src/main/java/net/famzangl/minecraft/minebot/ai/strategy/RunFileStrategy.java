@@ -1,7 +1,10 @@
 package net.famzangl.minecraft.minebot.ai.strategy;
 
 import net.famzangl.minecraft.minebot.ai.AIHelper;
+import com.mojang.brigadier.ParseResults;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.famzangl.minecraft.minebot.ai.command.AIChatController;
+import net.famzangl.minecraft.minebot.ai.command.CommandRegistry;
 import net.famzangl.minecraft.minebot.ai.command.IAIControllable;
 import net.famzangl.minecraft.minebot.ai.command.StackBuilder;
 import net.minecraft.client.Minecraft;
@@ -10,6 +13,7 @@ import net.minecraft.client.gui.screen.ChatScreen;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Scanner;
 
@@ -51,6 +55,11 @@ public final class RunFileStrategy extends AIStrategy {
 
 	private final File fileName;
 	private LinkedList<String> commands = null;
+	/**
+	 * The minebot commands of the file, parsed once before the first command
+	 * is run. Other lines are sent as chat message.
+	 */
+	private HashMap<String, ParseResults<IAIControllable>> parsedCommands;
 	private IOException exception = null;
 	private boolean fileRead;
 	private boolean exceptionReported;
@@ -110,6 +119,9 @@ public final class RunFileStrategy extends AIStrategy {
 				exceptionReported = true;
 			}
 			return TickResult.NO_MORE_WORK;
+		} else if (parsedCommands == null) {
+			parsedCommands = parseCommands();
+			return TickResult.TICK_AGAIN;
 		} else if (activeStrategy != null) {
 			final TickResult result = activeStrategy.gameTick(helper);
 			if (result == TickResult.NO_MORE_WORK) {
@@ -131,7 +143,7 @@ public final class RunFileStrategy extends AIStrategy {
 					stackMaxLeft = -1;
 					return TickResult.TICK_AGAIN;
 				} else {
-					final AIStrategy receivedStrategy = runAndGetStrategy(
+					final AIStrategy receivedStrategy = getStrategy(
 							helper, command);
 					if (receivedStrategy != null) {
 						stack.addStrategy(receivedStrategy);
@@ -155,7 +167,7 @@ public final class RunFileStrategy extends AIStrategy {
 				stackMaxLeft = commands.size();
 				stack = new StrategyStack();
 			} else {
-				final AIStrategy receivedStrategy = runAndGetStrategy(helper,
+				final AIStrategy receivedStrategy = getStrategy(helper,
 						command);
 				if (receivedStrategy != null) {
 					setActiveStrategy(helper, receivedStrategy);
@@ -165,6 +177,49 @@ public final class RunFileStrategy extends AIStrategy {
 		}
 	}
 
+	private HashMap<String, ParseResults<IAIControllable>> parseCommands() {
+		CommandRegistry registry = AIChatController.getRegistry();
+		HashMap<String, ParseResults<IAIControllable>> parsed = new HashMap<>();
+		for (String command : commands) {
+			if (registry.isOwnCommand(command) && !parsed.containsKey(command)) {
+				// The file keeps its own parse results.
+				ParseResults<IAIControllable> result = registry
+						.parseUncached(command.substring(1));
+				if (result.getExceptions().isEmpty()
+						&& !result.getReader().canRead()) {
+					parsed.put(command, result);
+				}
+			}
+		}
+		return parsed;
+	}
+
+	/**
+	 * Runs a line of the file. Minebot commands are executed directly.
+	 * Everything else and commands with errors go through the chat.
+	 * 
+	 * @param helper
+	 *            The helper.
+	 * @param command
+	 *            The line.
+	 * @return The strategy the command created.
+	 */
+	private AIStrategy getStrategy(AIHelper helper, String command) {
+		ParseResults<IAIControllable> parsed = parsedCommands.get(command);
+		if (parsed == null) {
+			return runAndGetStrategy(helper, command);
+		}
+		final StrategyReceiver tempController = new StrategyReceiver(
+				AIChatController.getRegistry().getControlled());
+		try {
+			AIChatController.getRegistry().execute(parsed, tempController);
+		} catch (CommandSyntaxException | RuntimeException e) {
+			AIChatController.addChatLine("ERROR while evaluating: "
+					+ e.getMessage());
+		}
+		return tempController.getReceivedStrategy();
+	}
+
 	private String getNextCommand() {
 		String command = commands.removeFirst();
 		if (repeatMode) {
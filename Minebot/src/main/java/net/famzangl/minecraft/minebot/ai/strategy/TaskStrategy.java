@@ -19,6 +19,8 @@ package net.famzangl.minecraft.minebot.ai.strategy;
 import net.famzangl.minecraft.minebot.ai.AIHelper;
 import net.famzangl.minecraft.minebot.ai.command.AIChatController;
 import net.famzangl.minecraft.minebot.ai.path.TaskReceiver;
+import net.famzangl.minecraft.minebot.ai.profiler.TickProfiler;
+import net.famzangl.minecraft.minebot.ai.profiler.TickProfiler.Phase;
 import net.famzangl.minecraft.minebot.ai.task.AITask;
 import net.famzangl.minecraft.minebot.ai.task.CanWorkWhileApproaching;
 import net.famzangl.minecraft.minebot.ai.task.SkipWhenSearchingPrefetch;
@@ -63,6 +65,13 @@ public abstract class TaskStrategy extends AIStrategy implements
 	@Override
 	protected void onDeactivate(AIHelper helper) {
 		desync(new StrategyDeactivatedError());
+		// Cancel now, tasks may listen to world changes until they are
+		// canceled.
+		for (AITask t : tasks) {
+			t.onCanceled();
+		}
+		tasks.clear();
+		activeTask = null;
 		super.onDeactivate(helper);
 	}
 
@@ -173,7 +182,12 @@ public abstract class TaskStrategy extends AIStrategy implements
 				return TickResult.TICK_HANDLED;
 			} else {
 				temporaryHelper = helper;
-				task.runTick(helper, this);
+				long start = TickProfiler.start();
+				try {
+					task.runTick(helper, this);
+				} finally {
+					TickProfiler.end(Phase.TASK, task.getClass(), start);
+				}
 				temporaryHelper = null;
 				taskTimeout++;
 				activeTask = task;
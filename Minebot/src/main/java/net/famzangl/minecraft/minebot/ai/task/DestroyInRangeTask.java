@@ -17,6 +17,9 @@
 package net.famzangl.minecraft.minebot.ai.task;
 
 import net.famzangl.minecraft.minebot.ai.AIHelper;
+import net.famzangl.minecraft.minebot.ai.net.BlockChangeQueue;
+import net.famzangl.minecraft.minebot.ai.net.BlockChangeQueue.BlockChangeVisitor;
+import net.famzangl.minecraft.minebot.ai.net.NetworkHelper;
 import net.famzangl.minecraft.minebot.ai.path.world.BlockSets;
 import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
 import net.famzangl.minecraft.minebot.ai.path.world.WorldWithDelta;
@@ -25,6 +28,7 @@ import net.famzangl.minecraft.minebot.ai.utils.BlockArea;
 import net.famzangl.minecraft.minebot.ai.utils.BlockArea.AreaVisitor;
 import net.famzangl.minecraft.minebot.ai.utils.BlockCuboid;
 import net.minecraft.block.Blocks;
+import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.BlockRayTraceResult;
 import net.minecraft.util.math.RayTraceResult;
@@ -35,9 +39,9 @@ import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -50,21 +54,27 @@ import java.util.List;
 public class DestroyInRangeTask extends AITask implements CanPrefaceAndDestroy {
 	private static final Logger LOGGER = LogManager.getLogger(DestroyInRangeTask.class);
 	private static final Marker MARKER_DESTROY_IN_RANGE = MarkerManager.getMarker("destroy_in_range");
-	private class ClosestBlockFinder implements AreaVisitor<WorldData> {
-		BlockPos next = null;
-		double currentMin = Float.POSITIVE_INFINITY;
-		private final AIHelper aiHelper;
 
-		public ClosestBlockFinder(AIHelper aiHelper) {
-			this.aiHelper = aiHelper;
+	/**
+	 * Keeps the target index up to date.
+	 */
+	private class TargetUpdater implements BlockChangeVisitor {
+		private final WorldData world;
+		private boolean chunkChanged;
+
+		public TargetUpdater(WorldData world) {
+			this.world = world;
+		}
+
+		@Override
+		public void blockChanged(int x, int y, int z) {
+			updateTarget(world, x, y, z);
 		}
 
 		@Override
-		public void visit(WorldData world, int x, int y, int z) {
-			final double rating = rate(aiHelper, x, y, z);
-			if (rating >= 0 && rating < currentMin) {
-				next = new BlockPos(x, y, z);
-				currentMin = rating;
+		public void chunkChanged(int chunkX, int chunkZ) {
+			if (rangeTouchesChunk(chunkX, chunkZ)) {
+				chunkChanged = true;
 			}
 		}
 	}
@@ -93,8 +103,21 @@ public class DestroyInRangeTask extends AITask implements CanPrefaceAndDestroy {
 
 	private int facingAttempts;
 	private volatile BlockPos currentAttemptingPos;
-	private final ArrayList<BlockPos> failedBlocks = new ArrayList<BlockPos>();
+	private final HashSet<BlockPos> failedBlocks = new HashSet<BlockPos>();
 	private BlockArea<WorldData> range;
+	/**
+	 * All blocks in the range that are not air.
+	 */
+	private TargetIndex targets;
+	/**
+	 * The chunks the range is in. Computed when the targets are built.
+	 */
+	private int minChunkX = Integer.MAX_VALUE;
+	private int maxChunkX = Integer.MIN_VALUE;
+	private int minChunkZ = Integer.MAX_VALUE;
+	private int maxChunkZ = Integer.MIN_VALUE;
+	private BlockChangeQueue targetChanges;
+	private NetworkHelper listeningTo;
 	private Vec3d facingPos;
 	private BlockPos lastFacingFor;
 
@@ -124,13 +147,74 @@ public class DestroyInRangeTask extends AITask implements CanPrefaceAndDestroy {
 						currentAttemptingPos.getZ())) {
 			return currentAttemptingPos;
 		}
-		ClosestBlockFinder blockFinder = new ClosestBlockFinder(aiHelper);
-		range.accept(blockFinder, aiHelper.getWorld());
-		currentAttemptingPos = blockFinder.next;
-		LOGGER.debug(MARKER_DESTROY_IN_RANGE, "Found next block {} with distance rating {}", blockFinder.next, blockFinder.currentMin);
+		WorldData world = aiHelper.getWorld();
+		updateTargets(aiHelper);
+		PlayerEntity player = aiHelper.getMinecraft().player;
+		currentAttemptingPos = targets.findBest(player.getPosX(),
+				player.getPosY() + player.getEyeHeight(), player.getPosZ(),
+				(x, y, z) -> range.contains(world, x, y, z) ? rate(aiHelper,
+						x, y, z) : -1);
+		LOGGER.debug(MARKER_DESTROY_IN_RANGE, "Found next block {} of {} targets", currentAttemptingPos, targets.size());
 		return currentAttemptingPos;
 	}
 
+	private void updateTargets(AIHelper aiHelper) {
+		WorldData world = aiHelper.getWorld();
+		if (targets == null) {
+			// Listen first, so that we do not miss any change.
+			listeningTo = aiHelper.getNetworkHelper();
+			if (listeningTo != null) {
+				targetChanges = new BlockChangeQueue();
+				listeningTo.addChunkChangeListener(targetChanges);
+			}
+			targets = new TargetIndex();
+			rebuildTargets(world);
+		} else if (targetChanges == null) {
+			// We cannot track the changes.
+			rebuildTargets(world);
+		} else {
+			TargetUpdater updater = new TargetUpdater(world);
+			if (!targetChanges.drainTo(updater) || updater.chunkChanged) {
+				rebuildTargets(world);
+			}
+		}
+	}
+
+	private void rebuildTargets(WorldData world) {
+		targets.clear();
+		range.accept((w, x, y, z) -> {
+			minChunkX = Math.min(minChunkX, x >> 4);
+			maxChunkX = Math.max(maxChunkX, x >> 4);
+			minChunkZ = Math.min(minChunkZ, z >> 4);
+			maxChunkZ = Math.max(maxChunkZ, z >> 4);
+			if (!BlockSets.AIR.isAt(w, x, y, z)) {
+				targets.add(x, y, z);
+			}
+		}, world);
+	}
+
+	private boolean rangeTouchesChunk(int chunkX, int chunkZ) {
+		return minChunkX <= chunkX && chunkX <= maxChunkX
+				&& minChunkZ <= chunkZ && chunkZ <= maxChunkZ;
+	}
+
+	private void updateTarget(WorldData world, int x, int y, int z) {
+		if (range.contains(world, x, y, z) && !BlockSets.AIR.isAt(world, x, y, z)) {
+			targets.add(x, y, z);
+		} else {
+			targets.remove(x, y, z);
+		}
+	}
+
+	private void stopTrackingTargets() {
+		if (listeningTo != null) {
+			listeningTo.removeChunkChangeListener(targetChanges);
+			listeningTo = null;
+		}
+		targetChanges = null;
+		targets = null;
+	}
+
 	private double rate(AIHelper aiHelper, int x, int y, int z) {
 		if (noDestructionRequired(aiHelper.getWorld(), x, y, z)) {
 			return -1;
@@ -176,7 +260,17 @@ public class DestroyInRangeTask extends AITask implements CanPrefaceAndDestroy {
 
 	@Override
 	public boolean isFinished(AIHelper aiHelper) {
-		return getNextToDestruct(aiHelper) == null;
+		if (getNextToDestruct(aiHelper) == null) {
+			stopTrackingTargets();
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void onCanceled() {
+		stopTrackingTargets();
+		super.onCanceled();
 	}
 
 	@Override
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai.task;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A set of block positions that can quickly find the best one close to a
+ * position. The positions are stored as bit set per chunk section. Sections
+ * are searched ordered by their distance, so most sections are never looked
+ * at.
+ * 
+ * @author Michael Zangl
+ */
+public class TargetIndex {
+	/**
+	 * Rates a target.
+	 */
+	@FunctionalInterface
+	public interface TargetRating {
+		/**
+		 * @return The rating. Lower is better. It needs to be at least the
+		 *         distance from the search position to the block center.
+		 *         Negative if the target should not be used.
+		 */
+		double rate(int x, int y, int z);
+	}
+
+	private static final class Section {
+		private final int chunkX;
+		private final int chunkY;
+		private final int chunkZ;
+		private final long[] bits = new long[16 * 16 * 16 / 64];
+		private int count;
+		private double lowerBound;
+
+		public Section(int chunkX, int chunkY, int chunkZ) {
+			this.chunkX = chunkX;
+			this.chunkY = chunkY;
+			this.chunkZ = chunkZ;
+		}
+
+		private double computeLowerBound(double x, double y, double z) {
+			double dx = axisDistance(x, chunkX);
+			double dy = axisDistance(y, chunkY);
+			double dz = axisDistance(z, chunkZ);
+			return Math.sqrt(dx * dx + dy * dy + dz * dz);
+		}
+
+		private static double axisDistance(double pos, int chunk) {
+			// The block centers are between these values.
+			double min = (chunk << 4) + .5;
+			double max = (chunk << 4) + 15.5;
+			return pos < min ? min - pos : pos > max ? pos - max : 0;
+		}
+	}
+
+	private final HashMap<Long, Section> sections = new HashMap<>();
+	private int size;
+
+	private static long sectionKey(int chunkX, int chunkY, int chunkZ) {
+		return (long) chunkX << 40 | ((long) chunkZ & 0xffffffL) << 16
+				| chunkY & 0xffff;
+	}
+
+	private static int bitIndex(int x, int y, int z) {
+		return (y & 15) << 8 | (z & 15) << 4 | x & 15;
+	}
+
+	public void add(int x, int y, int z) {
+		long key = sectionKey(x >> 4, y >> 4, z >> 4);
+		Section section = sections.get(key);
+		if (section == null) {
+			section = new Section(x >> 4, y >> 4, z >> 4);
+			sections.put(key, section);
+		}
+		int bit = bitIndex(x, y, z);
+		long mask = 1L << bit;
+		if ((section.bits[bit >> 6] & mask) == 0) {
+			section.bits[bit >> 6] |= mask;
+			section.count++;
+			size++;
+		}
+	}
+
+	public void remove(int x, int y, int z) {
+		long key = sectionKey(x >> 4, y >> 4, z >> 4);
+		Section section = sections.get(key);
+		if (section == null) {
+			return;
+		}
+		int bit = bitIndex(x, y, z);
+		long mask = 1L << bit;
+		if ((section.bits[bit >> 6] & mask) != 0) {
+			section.bits[bit >> 6] &= ~mask;
+			section.count--;
+			size--;
+			if (section.count == 0) {
+				sections.remove(key);
+			}
+		}
+	}
+
+	public void clear() {
+		sections.clear();
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Finds the target with the lowest rating.
+	 * 
+	 * @param x
+	 *            The position the ratings are relative to.
+	 * @param y
+	 *            The position the ratings are relative to.
+	 * @param z
+	 *            The position the ratings are relative to.
+	 * @param rating
+	 *            The rating.
+	 * @return The best target or <code>null</code> if there is none.
+	 */
+	public BlockPos findBest(double x, double y, double z,
+			TargetRating rating) {
+		ArrayList<Section> ordered = new ArrayList<>(sections.values());
+		for (Section s : ordered) {
+			s.lowerBound = s.computeLowerBound(x, y, z);
+		}
+		ordered.sort((a, b) -> Double.compare(a.lowerBound, b.lowerBound));
+
+		double bestRating = Double.POSITIVE_INFINITY;
+		int bestX = 0, bestY = 0, bestZ = 0;
+		for (Section s : ordered) {
+			if (s.lowerBound >= bestRating) {
+				// All other sections are further away.
+				break;
+			}
+			for (int word = 0; word < s.bits.length; word++) {
+				long bits = s.bits[word];
+				while (bits != 0) {
+					int bit = word << 6 | Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					int bx = s.chunkX << 4 | bit & 15;
+					int by = s.chunkY << 4 | bit >> 8;
+					int bz = s.chunkZ << 4 | bit >> 4 & 15;
+					double r = rating.rate(bx, by, bz);
+					if (r >= 0 && r < bestRating) {
+						bestRating = r;
+						bestX = bx;
+						bestY = by;
+						bestZ = bz;
+					}
+				}
+			}
+		}
+		return bestRating == Double.POSITIVE_INFINITY ? null : new BlockPos(
+				bestX, bestY, bestZ);
+	}
+}
@@ -0,0 +1,131 @@
+package net.famzangl.minecraft.minebot.ai.tools;
+
+import net.famzangl.minecraft.minebot.ai.path.world.BlockSet;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.enchantment.EnchantmentHelper;
+import net.minecraft.enchantment.Enchantments;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.EmptyBlockReader;
+
+/**
+ * Computes how expensive it is for the path finder to dig through a block.
+ * The cost is based on the block hardness and the tool the {@link ToolRater}
+ * selects for that block. It is computed for all block states at once and
+ * only computed again when the hotbar changes.
+ * <p>
+ * One cost unit is about the time needed to walk one block.
+ *
+ * @author Michael Zangl
+ */
+public class DigCostModel {
+	/**
+	 * Ticks needed to walk one block.
+	 */
+	private static final int TICKS_PER_STEP = 5;
+	/**
+	 * Ticks Minecraft waits after a block was destroyed before the next one
+	 * can be hit.
+	 */
+	private static final int BLOCK_HIT_DELAY = 5;
+	/**
+	 * The cost of a block that breaks instantly.
+	 */
+	public static final int MIN_COST = 1;
+	/**
+	 * The cost of blocks that cannot be destroyed or need very long. Keeps
+	 * the distances in the path finder field small.
+	 */
+	public static final int MAX_COST = 16;
+
+	private ToolRatingCache cache;
+	private int version;
+	private int[] costs;
+
+	/**
+	 * Gets the costs for the current hotbar. Needs to be called on the client
+	 * thread.
+	 *
+	 * @param rater
+	 *            The rater that selects the tools.
+	 * @param inventory
+	 *            The player inventory.
+	 * @return The cost for each block state id. Do not modify it.
+	 */
+	public synchronized int[] getCosts(ToolRater rater,
+			PlayerInventory inventory) {
+		ToolRatingCache cache = rater.getRatingCache();
+		cache.update(inventory);
+		if (costs == null || cache != this.cache
+				|| cache.getVersion() != version) {
+			this.cache = cache;
+			version = cache.getVersion();
+			costs = computeCosts(cache);
+		}
+		return costs;
+	}
+
+	private static int[] computeCosts(ToolRatingCache cache) {
+		int[] costs = new int[Block.BLOCK_STATE_IDS.size()];
+		for (int i = 0; i < costs.length; i++) {
+			BlockState state = BlockSet.getStateById(i);
+			costs[i] = getCost(state, cache.getBestStack(i));
+		}
+		return costs;
+	}
+
+	private static int getCost(BlockState state, ItemStack tool) {
+		if (state.getMaterial().isLiquid()) {
+			// We do not dig through liquids.
+			return MIN_COST;
+		}
+		int ticks = getDigTicks(state, tool);
+		if (ticks < 0) {
+			return MAX_COST;
+		} else if (ticks == 0) {
+			return MIN_COST;
+		} else {
+			int cost = (ticks + BLOCK_HIT_DELAY + TICKS_PER_STEP / 2)
+					/ TICKS_PER_STEP;
+			return Math.max(MIN_COST, Math.min(MAX_COST, cost));
+		}
+	}
+
+	/**
+	 * Computes the ticks needed to destroy a block the same way Minecraft
+	 * does. Effects like haste or being in water are ignored.
+	 *
+	 * @param state
+	 *            The block
+	 * @param tool
+	 *            The tool used.
+	 * @return The ticks, 0 if the block is destroyed instantly, -1 if it
+	 *         cannot be destroyed.
+	 */
+	public static int getDigTicks(BlockState state, ItemStack tool) {
+		float hardness = state.getBlockHardness(EmptyBlockReader.INSTANCE,
+				BlockPos.ZERO);
+		if (hardness < 0) {
+			return -1;
+		} else if (hardness == 0) {
+			return 0;
+		}
+		float speed = tool.getDestroySpeed(state);
+		if (speed > 1) {
+			int efficiency = EnchantmentHelper.getEnchantmentLevel(
+					Enchantments.EFFICIENCY, tool);
+			if (efficiency > 0) {
+				speed += efficiency * efficiency + 1;
+			}
+		}
+		boolean canHarvest = state.getMaterial().isToolNotRequired()
+				|| tool.canHarvestBlock(state);
+		float damagePerTick = speed / hardness / (canHarvest ? 30 : 100);
+		if (damagePerTick > 1) {
+			return 0;
+		}
+		return (int) Math.ceil(1 / damagePerTick);
+	}
+}
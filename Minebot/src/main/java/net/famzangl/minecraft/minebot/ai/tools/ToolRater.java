@@ -257,8 +257,11 @@ public class ToolRater {
 
 	private final ArrayList<Rater> raters = new ArrayList<Rater>();
 
-	public void addRater(Rater rater) {
+	private transient ToolRatingCache ratingCache;
+
+	public synchronized void addRater(Rater rater) {
 		raters.add(rater);
+		ratingCache = null;
 	}
 
 	public void addRater(String name, BlockFloatMap values) {
@@ -269,6 +272,19 @@ public class ToolRater {
 		return Collections.unmodifiableList(raters);
 	}
 
+	/**
+	 * Gets the cache for the ratings of the hotbar. It is thrown away when
+	 * the raters change.
+	 * 
+	 * @return The cache.
+	 */
+	public synchronized ToolRatingCache getRatingCache() {
+		if (ratingCache == null) {
+			ratingCache = new ToolRatingCache(this);
+		}
+		return ratingCache;
+	}
+
 	public float rateTool(ItemStack stack, int forBlockAndMeta) {
 		float f = 1;
 		for (Rater rater : raters) {
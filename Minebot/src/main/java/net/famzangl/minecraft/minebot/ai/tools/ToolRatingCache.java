@@ -0,0 +1,211 @@
+package net.famzangl.minecraft.minebot.ai.tools;
+
+import net.famzangl.minecraft.minebot.ai.AIHelper.ToolRaterResult;
+import net.minecraft.block.Block;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.ListNBT;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Caches the ratings of a {@link ToolRater} for the current hotbar. For each
+ * block state, the best rating and the slots that have it are computed once.
+ * They are computed again when the hotbar changes.
+ * <p>
+ * The hotbar is only read in {@link #update(PlayerInventory)}. The ratings
+ * can be read from any thread.
+ *
+ * @author Michael Zangl
+ */
+public class ToolRatingCache {
+	public static final int HOTBAR_SLOTS = 9;
+
+	/**
+	 * What we know about a hotbar slot. If this did not change, the ratings
+	 * did not change.
+	 */
+	private static final class SlotFingerprint {
+		private final ItemStack stack;
+		private final Item item;
+		/**
+		 * The ratings only depend on the damage if the tool is depleted.
+		 */
+		private final boolean depleted;
+		private final ListNBT enchantments;
+		private final int enchantmentCount;
+
+		public SlotFingerprint(ItemStack stack) {
+			this.stack = stack;
+			item = stack.getItem();
+			depleted = isDepleted(stack);
+			enchantments = stack.getEnchantmentTagList();
+			enchantmentCount = enchantments.size();
+		}
+
+		private static boolean isDepleted(ItemStack stack) {
+			return stack.isDamageable()
+					&& stack.getMaxDamage() - stack.getDamage() <= 1;
+		}
+
+		public boolean matches(ItemStack stack) {
+			if (stack != this.stack || stack.getItem() != item
+					|| isDepleted(stack) != depleted) {
+				return false;
+			}
+			ListNBT enchantments = stack.getEnchantmentTagList();
+			return enchantments == this.enchantments
+					&& enchantments.size() == enchantmentCount;
+		}
+	}
+
+	/**
+	 * The ratings for one hotbar.
+	 */
+	private static final class CompiledHotbar {
+		private final SlotFingerprint[] slots;
+		private final int version;
+		/**
+		 * For each block state: The rating (float bits) in the upper 32 bits,
+		 * the slots that have the best rating as bit mask and a bit that
+		 * marks the entry as computed.
+		 */
+		private final AtomicLongArray ratings = new AtomicLongArray(
+				Block.BLOCK_STATE_IDS.size());
+
+		public CompiledHotbar(SlotFingerprint[] slots, int version) {
+			this.slots = slots;
+			this.version = version;
+		}
+	}
+
+	private static final long COMPUTED = 1;
+
+	private final ToolRater rater;
+	private volatile CompiledHotbar compiled;
+
+	public ToolRatingCache(ToolRater rater) {
+		this.rater = rater;
+	}
+
+	/**
+	 * Checks if the hotbar changed. Needs to be called on the client thread.
+	 *
+	 * @param inventory
+	 *            The player inventory.
+	 * @return <code>true</code> if the hotbar changed and the ratings are
+	 *         computed again.
+	 */
+	public boolean update(PlayerInventory inventory) {
+		CompiledHotbar current = compiled;
+		if (current != null) {
+			boolean changed = false;
+			for (int i = 0; i < HOTBAR_SLOTS; i++) {
+				if (!current.slots[i].matches(inventory.getStackInSlot(i))) {
+					changed = true;
+					break;
+				}
+			}
+			if (!changed) {
+				return false;
+			}
+		}
+		SlotFingerprint[] slots = new SlotFingerprint[HOTBAR_SLOTS];
+		for (int i = 0; i < HOTBAR_SLOTS; i++) {
+			slots[i] = new SlotFingerprint(inventory.getStackInSlot(i));
+		}
+		compiled = new CompiledHotbar(slots, current == null ? 1
+				: current.version + 1);
+		return true;
+	}
+
+	/**
+	 * @return A number that changes whenever the hotbar changed. 0 if
+	 *         {@link #update(PlayerInventory)} was never called.
+	 */
+	public int getVersion() {
+		CompiledHotbar current = compiled;
+		return current == null ? 0 : current.version;
+	}
+
+	/**
+	 * Gets the best tool for a block.
+	 *
+	 * @param blockStateId
+	 *            The block state
+	 * @param currentSlot
+	 *            The slot that is selected. It is kept if no other slot is
+	 *            better.
+	 * @return The best slot and its rating.
+	 */
+	public ToolRaterResult getBestTool(int blockStateId, int currentSlot) {
+		long entry = getEntry(requireCompiled(), blockStateId);
+		int mask = (int) entry >>> 1;
+		int slot;
+		if ((mask & 1 << currentSlot) != 0) {
+			slot = currentSlot;
+		} else {
+			slot = Integer.numberOfTrailingZeros(mask);
+		}
+		return new ToolRaterResult(slot, Float.intBitsToFloat((int) (entry >>> 32)));
+	}
+
+	/**
+	 * @param blockStateId
+	 *            The block state
+	 * @return The rating of the best tool in the hotbar for that block.
+	 */
+	public float getBestRating(int blockStateId) {
+		return Float.intBitsToFloat((int) (getEntry(requireCompiled(),
+				blockStateId) >>> 32));
+	}
+
+	/**
+	 * @param blockStateId
+	 *            The block state
+	 * @return The tool with the best rating for that block. Do not modify it.
+	 */
+	public ItemStack getBestStack(int blockStateId) {
+		CompiledHotbar current = requireCompiled();
+		int mask = (int) getEntry(current, blockStateId) >>> 1;
+		return current.slots[Integer.numberOfTrailingZeros(mask)].stack;
+	}
+
+	private CompiledHotbar requireCompiled() {
+		CompiledHotbar current = compiled;
+		if (current == null) {
+			throw new IllegalStateException("The hotbar is not known yet.");
+		}
+		return current;
+	}
+
+	private long getEntry(CompiledHotbar current, int blockStateId) {
+		long entry = current.ratings.get(blockStateId);
+		if (entry == 0) {
+			entry = rate(current, blockStateId);
+			current.ratings.set(blockStateId, entry);
+		}
+		return entry;
+	}
+
+	private long rate(CompiledHotbar current, int blockStateId) {
+		float bestRating = Float.NEGATIVE_INFINITY;
+		int bestSlots = 0;
+		for (int i = 0; i < HOTBAR_SLOTS; i++) {
+			float rating = rater.rateTool(current.slots[i].stack, blockStateId);
+			if (rating > bestRating) {
+				bestRating = rating;
+				bestSlots = 1 << i;
+			} else if (rating == bestRating) {
+				bestSlots |= 1 << i;
+			}
+		}
+		if (bestSlots == 0) {
+			// All NaN
+			bestSlots = 1;
+		}
+		return (long) Float.floatToRawIntBits(bestRating) << 32
+				| bestSlots << 1 | COMPUTED;
+	}
+}
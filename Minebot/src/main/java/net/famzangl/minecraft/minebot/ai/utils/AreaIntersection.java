@@ -39,6 +39,11 @@ public class AreaIntersection<WorldT extends WorldData> extends BlockArea<WorldT
 		return a.contains(world, x, y, z) && b.contains(world, x, y, z);
 	}
 
+	@Override
+	public int getDistanceLowerBound(int x, int y, int z) {
+		return Math.max(a.getDistanceLowerBound(x, y, z), b.getDistanceLowerBound(x, y, z));
+	}
+
 	@Override
 	public <WorldT2 extends WorldT> void accept(AreaVisitor<? super WorldT2> visitor, WorldT2 world) {
 		a.accept(new FilteredAreaVisitor<WorldT2>(visitor, b), world);
@@ -27,6 +27,11 @@ public class AreaUnion<WorldT extends WorldData> extends BlockArea<WorldT> {
         return a.contains(world, x, y, z) || b.contains(world, x, y, z);
     }
 
+    @Override
+    public int getDistanceLowerBound(int x, int y, int z) {
+        return Math.min(a.getDistanceLowerBound(x, y, z), b.getDistanceLowerBound(x, y, z));
+    }
+
     @Override
     public String toString() {
         return a + " ∪ " + b;
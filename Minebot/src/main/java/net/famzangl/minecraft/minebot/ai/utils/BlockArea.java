@@ -32,6 +32,19 @@ public abstract class BlockArea<WorldT extends WorldData> {
 
 	public abstract boolean contains(WorldT world, int x, int y, int z);
 
+	/**
+	 * Gets a lower bound for the number of steps along the x, y and z axis
+	 * that are needed to get from the given position into this area.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return The lower bound. 0 if the area cannot tell.
+	 */
+	public int getDistanceLowerBound(int x, int y, int z) {
+		return 0;
+	}
+
 	public int getVolume(WorldT world) {
 		VolumeVisitor volumeVisitor = new VolumeVisitor();
 		accept(volumeVisitor, world);
@@ -14,12 +14,67 @@ public class BlockCounter implements AreaVisitor {
 		this.count = new int[blockSets.length];
 	}
 
+	private static final class Union {
+		private final BlockSet[] blockSets;
+		private final BlockSet union;
+
+		public Union(BlockSet[] blockSets) {
+			this.blockSets = blockSets.clone();
+			BlockSet.Builder builder = BlockSet.builder();
+			for (BlockSet set : blockSets) {
+				builder.add(set);
+			}
+			union = builder.build();
+		}
+	}
+
+	/**
+	 * The union of the last sets that were counted. The map renderer counts
+	 * the same sets for each column.
+	 */
+	private static volatile Union lastUnion = new Union(new BlockSet[0]);
+
 	public static int[] countBlocks(WorldData world, BlockArea area, BlockSet... blockSets) {
 		BlockCounter blockCounter = new BlockCounter(blockSets);
-		area.accept(blockCounter, world);
+		if (area instanceof BlockCuboid) {
+			// Skips the sections that contain none of the blocks.
+			world.forEachMatching((BlockCuboid<?>) area, getUnion(blockSets),
+					blockCounter::countBlock);
+		} else {
+			area.accept(blockCounter, world);
+		}
 		return blockCounter.getCount();
 	}
 
+	private static BlockSet getUnion(BlockSet[] blockSets) {
+		Union union = lastUnion;
+		if (!sameSets(union.blockSets, blockSets)) {
+			union = new Union(blockSets);
+			lastUnion = union;
+		}
+		return union.union;
+	}
+
+	private static boolean sameSets(BlockSet[] a, BlockSet[] b) {
+		if (a.length != b.length) {
+			return false;
+		}
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != b[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void countBlock(int blockStateId, int x, int y, int z) {
+		for (int i = 0; i < blockSets.length; i++) {
+			if (blockSets[i].contains(blockStateId)) {
+				count[i]++;
+			}
+		}
+	}
+
 	@Override
 	public void visit(WorldData world, int x, int y, int z) {
 		for (int i = 0; i < blockSets.length; i++) {
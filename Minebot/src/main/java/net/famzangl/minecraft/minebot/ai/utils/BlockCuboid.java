@@ -34,6 +34,13 @@ public class BlockCuboid<WorldT extends WorldData> extends BlockArea<WorldT> {
 				&& y <= max.getY() && min.getZ() <= z && z <= max.getZ();
 	}
 
+	@Override
+	public int getDistanceLowerBound(int x, int y, int z) {
+		return Math.max(0, Math.max(min.getX() - x, x - max.getX()))
+				+ Math.max(0, Math.max(min.getY() - y, y - max.getY()))
+				+ Math.max(0, Math.max(min.getZ() - z, z - max.getZ()));
+	}
+
 	public BlockPos getMax() {
 		return max;
 	}
@@ -19,7 +19,16 @@ package net.famzangl.minecraft.minebot.build;
 import net.famzangl.minecraft.minebot.ai.ItemFilter;
 import net.famzangl.minecraft.minebot.ai.path.world.Pos;
 import net.famzangl.minecraft.minebot.build.blockbuild.BuildTask;
+import net.famzangl.minecraft.minebot.build.reverse.BuildPlan;
+import net.famzangl.minecraft.minebot.build.reverse.TaskDescription;
+import net.famzangl.minecraft.minebot.build.reverse.factories.AbstractBuildTaskFactory;
+import net.famzangl.minecraft.minebot.build.reverse.factories.BuildTaskFactories;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -34,6 +43,7 @@ import java.util.List;
  *
  */
 public class BuildManager {
+	private static final Logger LOGGER = LogManager.getLogger(BuildManager.class);
 
 	private final ArrayList<Pos> buildArtefactPositions = new ArrayList<Pos>();
 
@@ -58,6 +68,62 @@ public class BuildManager {
 		System.out.println("Added " + task);
 	}
 
+	/**
+	 * Schedules all tasks of a build plan in the order the build script would
+	 * schedule them. The tasks are created directly from the palette, no
+	 * commands are parsed.
+	 * 
+	 * @param plan
+	 *            The plan to add.
+	 * @param origin
+	 *            The position of the plan's minimum corner.
+	 * @return The number of blocks that were skipped because no task can be
+	 *         created for them.
+	 * @throws IOException
+	 *             If the plan uses a palette entry that does not exist. No
+	 *             task is added then.
+	 */
+	public int addTasks(BuildPlan plan, BlockPos origin) throws IOException {
+		List<TaskDescription> palette = plan.getPalette();
+		AbstractBuildTaskFactory[] factories = new AbstractBuildTaskFactory[palette
+				.size()];
+		for (int i = 1; i < factories.length; i++) {
+			BlockState block = palette.get(i).getBlock();
+			if (block != null) {
+				factories[i] = BuildTaskFactories.getFactoryFor(block);
+			}
+		}
+
+		ArrayList<BuildTask> tasks = new ArrayList<BuildTask>();
+		int skipped = 0;
+		for (int y = 0; y < plan.getSizeY(); y++) {
+			for (int x = 0; x < plan.getSizeX(); x++) {
+				// Same order as the build reverser uses.
+				final boolean row2 = (x & 1) == 1;
+				for (int i = 0; i < plan.getSizeZ(); i++) {
+					int z = row2 ? plan.getSizeZ() - 1 - i : i;
+					int index = plan.getPaletteIndex(x, y, z);
+					if (index == 0) {
+						continue;
+					} else if (index >= factories.length) {
+						throw new IOException("Invalid palette index " + index
+								+ " at " + x + "," + y + "," + z);
+					}
+					AbstractBuildTaskFactory factory = factories[index];
+					if (factory == null) {
+						skipped++;
+						continue;
+					}
+					tasks.add(factory.getTask(origin.add(x, y, z),
+							palette.get(index).getBlock()));
+				}
+			}
+		}
+		buildTasks.addAll(tasks);
+		LOGGER.debug("Added " + tasks.size() + " tasks.");
+		return skipped;
+	}
+
 	public BuildTask popNextTask() {
 		return buildTasks.pop();
 	}
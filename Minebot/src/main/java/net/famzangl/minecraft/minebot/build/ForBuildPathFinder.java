@@ -48,6 +48,10 @@ public class ForBuildPathFinder extends MovePathFinder {
 	int[] res = new int[NEIGHBOURS_PER_DIRECTION * 4];
 	private boolean canBuildUp;
 	private boolean noPathFound;
+	/**
+	 * The absolute positions we may build from.
+	 */
+	private BlockPos[] standablePlaces;
 
 	public ForBuildPathFinder(BuildTask task) {
 		this.task = task;
@@ -68,6 +72,13 @@ public class ForBuildPathFinder extends MovePathFinder {
 	@Override
 	protected boolean runSearch(BlockPos playerPosition) {
 		canBuildUp = helper.canSelectItem(new BlockItemFilter(BlockSets.CARPET));
+		if (standablePlaces == null) {
+			BlockPos[] relative = task.getStandablePlaces();
+			standablePlaces = new BlockPos[relative.length];
+			for (int i = 0; i < relative.length; i++) {
+				standablePlaces[i] = task.getForPosition().add(relative[i]);
+			}
+		}
 		return super.runSearch(playerPosition);
 	}
 
@@ -133,6 +144,25 @@ public class ForBuildPathFinder extends MovePathFinder {
 		return -1;
 	}
 
+	@Override
+	protected int heuristic(int node) {
+		final int x = getX(node);
+		final int y = getY(node);
+		final int z = getZ(node);
+		int min = Integer.MAX_VALUE;
+		for (final BlockPos place : standablePlaces) {
+			min = Math.min(min, Math.abs(place.getX() - x)
+					+ Math.abs(place.getY() - y) + Math.abs(place.getZ() - z));
+		}
+		return min == Integer.MAX_VALUE ? 0 : min;
+	}
+
+	@Override
+	protected boolean isFieldReusable() {
+		// If we can build up depends on the inventory.
+		return false;
+	}
+
 	@Override
 	protected void foundPath(LinkedList<BlockPos> path) {
 		BlockPos currentPos = path.removeFirst();
@@ -33,7 +33,8 @@ import java.util.Calendar;
 @AICommand(helpText = "Get a build script for the selected area.\n"
 		+ "out-file is the file to write to."
 		+ "It can be - to write to stdout."
-		+ "If no file is given, a new one is generated.", name = "minebuild")
+		+ "If no file is given, a new one is generated."
+		+ "Files ending with .buildplan are written in the binary format.", name = "minebuild")
 public class CommandReverse {
 
 	@AICommandInvocation()
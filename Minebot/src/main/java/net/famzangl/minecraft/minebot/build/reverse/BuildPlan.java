@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.build.reverse;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTUtil;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A build plan in the binary format. This is the same as a build script
+ * written by the {@link BuildReverser}, but it can be loaded without parsing
+ * a command for each block.
+ * <p>
+ * The file starts with a header: Magic number, version, the size in x, y and
+ * z direction and the offset of the palette. Then, for each block, the index
+ * into the palette is stored as unsigned short. Index 0 means that nothing is
+ * built there. The blocks are ordered by y, then x, then z. After that, the
+ * palette contains all distinct {@link TaskDescription}s.
+ * 
+ * @author Michael Zangl
+ *
+ */
+public class BuildPlan {
+	public static final String FILE_EXTENSION = ".buildplan";
+
+	private static final int MAGIC = 0x4D42504C;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 4 + 4 + 3 * 4 + 8;
+
+	/**
+	 * Writes a build plan. The blocks are written row by row, so the whole
+	 * plan does not need to be kept in memory.
+	 * 
+	 * @author Michael Zangl
+	 */
+	public static class Writer implements Closeable {
+		private final DataOutputStream out;
+		private final int sizeZ;
+		private final int rows;
+		private int writtenRows;
+
+		public Writer(File file, int sizeX, int sizeY, int sizeZ)
+				throws IOException {
+			this.sizeZ = sizeZ;
+			rows = sizeX * sizeY;
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(sizeX);
+			out.writeInt(sizeY);
+			out.writeInt(sizeZ);
+			out.writeLong(HEADER_SIZE + 2L * rows * sizeZ);
+		}
+
+		/**
+		 * Writes the next row of blocks. Rows need to be written ordered by y,
+		 * then by x.
+		 * 
+		 * @param paletteIndexes
+		 *            The palette indexes for that row, ordered by z.
+		 * @throws IOException
+		 */
+		public void writeRow(short[] paletteIndexes) throws IOException {
+			if (paletteIndexes.length != sizeZ) {
+				throw new IllegalArgumentException("Row has wrong length: "
+						+ paletteIndexes.length);
+			}
+			if (writtenRows >= rows) {
+				throw new IllegalStateException("All rows were written.");
+			}
+			for (short index : paletteIndexes) {
+				out.writeShort(index);
+			}
+			writtenRows++;
+		}
+
+		/**
+		 * Writes the palette. Needs to be called after all rows were written.
+		 * 
+		 * @param palette
+		 *            The palette. Element 0 is ignored.
+		 * @throws IOException
+		 */
+		public void writePalette(List<TaskDescription> palette)
+				throws IOException {
+			if (writtenRows != rows) {
+				throw new IllegalStateException("Only " + writtenRows + " of "
+						+ rows + " rows were written.");
+			}
+			out.writeInt(palette.size());
+			for (int i = 1; i < palette.size(); i++) {
+				writeTask(palette.get(i));
+			}
+		}
+
+		private void writeTask(TaskDescription task) throws IOException {
+			out.writeUTF(task.getCommandArgs());
+			BlockPos[] buildableFrom = task.getBuildableFrom();
+			out.writeInt(buildableFrom.length);
+			for (BlockPos pos : buildableFrom) {
+				out.writeLong(pos.toLong());
+			}
+			BlockState block = task.getBlock();
+			out.writeBoolean(block != null);
+			if (block != null) {
+				CompressedStreamTools.write(NBTUtil.writeBlockState(block), out);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+
+	private final int sizeX;
+	private final int sizeY;
+	private final int sizeZ;
+	private final ShortBuffer indexes;
+	private final List<TaskDescription> palette;
+
+	private BuildPlan(int sizeX, int sizeY, int sizeZ, ShortBuffer indexes,
+			List<TaskDescription> palette) {
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.sizeZ = sizeZ;
+		this.indexes = indexes;
+		this.palette = palette;
+	}
+
+	/**
+	 * Loads a build plan. The blocks are memory mapped, only the palette is
+	 * read.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @return The plan.
+	 * @throws IOException
+	 *             If the file could not be read or is not a build plan.
+	 */
+	public static BuildPlan load(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			DataInputStream header = new DataInputStream(
+					Channels.newInputStream(channel));
+			if (header.readInt() != MAGIC) {
+				throw new IOException(file + " is not a build plan.");
+			}
+			int version = header.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported build plan version "
+						+ version);
+			}
+			int sizeX = header.readInt();
+			int sizeY = header.readInt();
+			int sizeZ = header.readInt();
+			long paletteOffset = header.readLong();
+			long indexBytes = 2L * sizeX * sizeY * sizeZ;
+			if (sizeX < 0 || sizeY < 0 || sizeZ < 0
+					|| paletteOffset != HEADER_SIZE + indexBytes
+					|| paletteOffset > channel.size()) {
+				throw new IOException("Invalid build plan header in " + file);
+			} else if (indexBytes > Integer.MAX_VALUE) {
+				// Cannot be memory mapped.
+				throw new IOException("Build plan is too large: " + file);
+			}
+			ShortBuffer indexes = channel.map(MapMode.READ_ONLY, HEADER_SIZE,
+					indexBytes).asShortBuffer();
+
+			channel.position(paletteOffset);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					Channels.newInputStream(channel)));
+			int paletteSize = in.readInt();
+			if (paletteSize < 1) {
+				throw new IOException("Invalid palette in " + file);
+			}
+			ArrayList<TaskDescription> palette = new ArrayList<TaskDescription>(
+					paletteSize);
+			palette.add(null);
+			for (int i = 1; i < paletteSize; i++) {
+				palette.add(readTask(in));
+			}
+			return new BuildPlan(sizeX, sizeY, sizeZ, indexes,
+					Collections.unmodifiableList(palette));
+		}
+	}
+
+	private static TaskDescription readTask(DataInputStream in)
+			throws IOException {
+		String commandArgs = in.readUTF();
+		BlockPos[] buildableFrom = new BlockPos[in.readInt()];
+		for (int i = 0; i < buildableFrom.length; i++) {
+			buildableFrom[i] = BlockPos.fromLong(in.readLong());
+		}
+		BlockState block = null;
+		if (in.readBoolean()) {
+			block = NBTUtil.readBlockState(CompressedStreamTools.read(in));
+		}
+		return new TaskDescription(commandArgs, buildableFrom, block);
+	}
+
+	/**
+	 * @return The palette index at that position, 0 if nothing is built
+	 *         there.
+	 */
+	public int getPaletteIndex(int x, int y, int z) {
+		return indexes.get((y * sizeX + x) * sizeZ + z) & 0xffff;
+	}
+
+	/**
+	 * @return The task at that position or <code>null</code>.
+	 */
+	public TaskDescription getTask(int x, int y, int z) {
+		return palette.get(getPaletteIndex(x, y, z));
+	}
+
+	/**
+	 * @return All tasks. Element 0 is <code>null</code>.
+	 */
+	public List<TaskDescription> getPalette() {
+		return palette;
+	}
+
+	public int getSizeX() {
+		return sizeX;
+	}
+
+	public int getSizeY() {
+		return sizeY;
+	}
+
+	public int getSizeZ() {
+		return sizeZ;
+	}
+}
@@ -53,6 +53,7 @@ public class BuildReverser {
 	private final ReverseBuildField field;
 	private File outFile;
 	private PrintStream out;
+	private BuildPlan.Writer plan;
 	private int missingBlocks;
 
 	public BuildReverser(AIHelper helper, File outFile) {
@@ -77,30 +78,45 @@ public class BuildReverser {
 				this.outFile = null;
 				this.out = System.out;
 				LOGGER.info(MARKER_RECONSTRUCT, "Printing reverse build output.");
+			} else if (outFile.getName().endsWith(BuildPlan.FILE_EXTENSION)) {
+				this.plan = new BuildPlan.Writer(outFile, field.getSizeX(),
+						field.getSizeY(), field.getSizeZ());
+				LOGGER.info(MARKER_RECONSTRUCT, "Writing build plan to " + outFile);
 			} else {
 				this.out = new PrintStream(outFile);
 				LOGGER.info(MARKER_RECONSTRUCT, "Writing reverse build output to " + outFile);
 			}
-			out.println("# Minebot reverse build script "
+			println("# Minebot reverse build script "
 					+ MinebotMod.getVersion());
-			out.println("# Pos1: " + minPos);
-			out.println("# Pos2: " + maxPos);
-			out.println("");
-			out.println("/minebuild reset");
-			out.println("");
+			println("# Pos1: " + minPos);
+			println("# Pos2: " + maxPos);
+			println("");
+			println("/minebuild reset");
+			println("");
+			final short[] row = new short[field.getSizeZ()];
 			for (int y = minPos.getY(); y <= maxPos.getY(); y++) {
 				LOGGER.trace(MARKER_RECONSTRUCT, "Start layer at y=" + y);
-				out.println("# Layer " + (y - minPos.getY()));
+				println("# Layer " + (y - minPos.getY()));
 				for (int x = minPos.getX(); x <= maxPos.getX(); x++) {
 					final boolean row2 = (x - minPos.getX() & 1) == 1;
 					addRow(new BlockPos(x, y, row2 ? maxPos.getZ()
 							: minPos.getZ()), row2 ? Direction.NORTH
 							: Direction.SOUTH, maxPos.getZ() - minPos.getZ()
 							+ 1);
+					if (plan != null) {
+						for (int z = 0; z < row.length; z++) {
+							row[z] = (short) field.getPaletteIndex(x
+									- minPos.getX(), y - minPos.getY(), z);
+						}
+						plan.writeRow(row);
+					}
 				}
-				out.println("");
+				println("");
+			}
+			println("#/minebuild build");
+			if (plan != null) {
+				plan.writePalette(field.getPalette());
 			}
-			out.println("#/minebuild build");
 
 			if (missingBlocks > 0) {
 				AIChatController.addChatLine("Could not convert "
@@ -111,11 +127,28 @@ public class BuildReverser {
 							.getAbsolutePath()));
 		} catch (final FileNotFoundException e) {
 			AIChatController.addChatLine("File/dir does not exist: " + outFile);
+		} catch (final IOException e) {
+			AIChatController.addChatLine("Could not write " + outFile + ": "
+					+ e.getMessage());
 		} finally {
 			if (out != null) {
 				out.close();
 				out = null;
 			}
+			if (plan != null) {
+				try {
+					plan.close();
+				} catch (IOException e) {
+					LOGGER.warn(MARKER_RECONSTRUCT, "Could not close " + outFile);
+				}
+				plan = null;
+			}
+		}
+	}
+
+	private void println(String line) {
+		if (out != null) {
+			out.println(line);
 		}
 	}
 
@@ -134,12 +167,15 @@ public class BuildReverser {
 			try {
 				final TaskDescription taskString = BuildTaskFactories.getTaskFor(helper.getWorld(), pos) ;
 				LOGGER.trace(MARKER_RECONSTRUCT, "Resulting description: " + taskString);
-				field.setBlockAt(localPos, block, taskString);
-				out.println("/minebuild schedule ~" + localPos.getX() + " ~"
+				if (taskString == null) {
+					return;
+				}
+				field.setBlockAt(localPos, taskString);
+				println("/minebuild schedule ~" + localPos.getX() + " ~"
 						+ localPos.getY() + " ~" + localPos.getZ() + " "
 						+ taskString.getCommandArgs());
 			} catch (final UnsupportedBlockException e) {
-				out.println("# Missing: ~" + localPos.getX() + " ~"
+				println("# Missing: ~" + localPos.getX() + " ~"
 						+ localPos.getY() + " ~" + localPos.getZ() + " "
 						+ block.getNameTextComponent().getString());
 				LOGGER.warn(MARKER_RECONSTRUCT, "Error: " + e.getMessage());
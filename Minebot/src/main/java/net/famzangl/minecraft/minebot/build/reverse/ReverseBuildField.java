@@ -16,31 +16,106 @@
  *******************************************************************************/
 package net.famzangl.minecraft.minebot.build.reverse;
 
-import net.minecraft.block.Block;
 import net.minecraft.util.math.BlockPos;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
 /**
  * A field where all tasks from the build reverser are stored.
+ * <p>
+ * Each distinct task is stored once in a palette. For each block, only the
+ * index into that palette is stored. Index 0 means that nothing is built
+ * there.
  * 
  * @author michael
  *
  */
 public class ReverseBuildField {
-	private final Block[][][] buildBlocks;
-	private final TaskDescription[][][] buildNames;
+	/**
+	 * The indexes are stored as unsigned shorts.
+	 */
+	public static final int MAX_PALETTE_SIZE = 0xffff;
+
+	private final int lx;
+	private final int ly;
+	private final int lz;
+	private final short[] indexes;
+	private final ArrayList<TaskDescription> palette = new ArrayList<TaskDescription>();
+	private final HashMap<String, Integer> paletteIndexes = new HashMap<String, Integer>();
 
 	public ReverseBuildField(int lx, int ly, int lz) {
-		buildBlocks = new Block[lx][ly][lz];
-		buildNames = new TaskDescription[lx][ly][lz];
+		this.lx = lx;
+		this.ly = ly;
+		this.lz = lz;
+		indexes = new short[lx * ly * lz];
+		// Index 0 is empty.
+		palette.add(null);
+	}
+
+	/**
+	 * Stores a task.
+	 * 
+	 * @param relativePos
+	 *            The position relative to the minimum corner.
+	 * @param taskString
+	 *            The task.
+	 * @return The palette index of that task.
+	 */
+	public int setBlockAt(BlockPos relativePos, TaskDescription taskString) {
+		int index = getPaletteIndex(taskString);
+		indexes[getIndex(relativePos.getX(), relativePos.getY(),
+				relativePos.getZ())] = (short) index;
+		return index;
+	}
+
+	private int getPaletteIndex(TaskDescription taskString) {
+		Integer index = paletteIndexes.get(taskString.getCommandArgs());
+		if (index == null) {
+			if (palette.size() > MAX_PALETTE_SIZE) {
+				throw new IllegalStateException(
+						"Too many different build tasks.");
+			}
+			index = palette.size();
+			palette.add(taskString);
+			paletteIndexes.put(taskString.getCommandArgs(), index);
+		}
+		return index;
+	}
+
+	private int getIndex(int x, int y, int z) {
+		return (y * lx + x) * lz + z;
+	}
+
+	/**
+	 * @return The palette index at that position, 0 if it is empty.
+	 */
+	public int getPaletteIndex(int x, int y, int z) {
+		return indexes[getIndex(x, y, z)] & 0xffff;
+	}
+
+	public TaskDescription getTask(int x, int y, int z) {
+		return palette.get(getPaletteIndex(x, y, z));
+	}
+
+	/**
+	 * @return All tasks. Element 0 is <code>null</code>.
+	 */
+	public List<TaskDescription> getPalette() {
+		return Collections.unmodifiableList(palette);
+	}
+
+	public int getSizeX() {
+		return lx;
 	}
 
-	public void setBlockAt(BlockPos relativePos, Block block,
-			TaskDescription taskString) {
-		buildBlocks[relativePos.getX()][relativePos.getY()][relativePos.getZ()] = block;
-		buildNames[relativePos.getX()][relativePos.getY()][relativePos.getZ()] = taskString;
+	public int getSizeY() {
+		return ly;
 	}
 
-	public Block getBlock(int x, int y, int z) {
-		return buildBlocks[x][y][z];
+	public int getSizeZ() {
+		return lz;
 	}
 }
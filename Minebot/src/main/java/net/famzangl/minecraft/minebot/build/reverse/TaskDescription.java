@@ -16,6 +16,7 @@
  *******************************************************************************/
 package net.famzangl.minecraft.minebot.build.reverse;
 
+import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 
 import java.util.Arrays;
@@ -23,19 +24,37 @@ import java.util.Arrays;
 public class TaskDescription {
 	private final String commandArgs;
 	private final BlockPos[] buildableFrom;
+	/**
+	 * The block the task builds. May be <code>null</code> if unknown.
+	 */
+	private final BlockState block;
 
 	public TaskDescription(String commandArgs, BlockPos[] buildableFrom) {
+		this(commandArgs, buildableFrom, null);
+	}
+
+	public TaskDescription(String commandArgs, BlockPos[] buildableFrom,
+			BlockState block) {
 		this.commandArgs = commandArgs;
 		this.buildableFrom = buildableFrom;
+		this.block = block;
 	}
 
 	public String getCommandArgs() {
 		return commandArgs;
 	}
 
+	public BlockPos[] getBuildableFrom() {
+		return buildableFrom;
+	}
+
+	public BlockState getBlock() {
+		return block;
+	}
+
 	@Override
 	public String toString() {
 		return "TaskDescription [commandArgs=" + commandArgs
-				+ ", buildableFrom=" + Arrays.toString(buildableFrom) + "]";
+				+ ", buildableFrom=" + Arrays.toString(buildableFrom) + ", block=" + block + "]";
 	}
 }
@@ -20,7 +20,7 @@ public abstract class AbstractBuildTaskFactory implements BuildTaskFactory {
 			try {
 				Object[] args = task.getCommandArguments();
 				return new TaskDescription(StringUtils.join(args, " "),
-						task.getStandablePlaces());
+						task.getStandablePlaces(), block);
 			} catch (UnsupportedOperationException uoe) {
 				throw new UnsupportedBlockException(world, position,
 						"Task could not be converted: " + task);
@@ -29,6 +29,34 @@ public abstract class AbstractBuildTaskFactory implements BuildTaskFactory {
 		return null;
 	}
 
+	/**
+	 * Creates the task for a block without looking at the world.
+	 * 
+	 * @param position
+	 *            The position the build task is at.
+	 * @param block
+	 *            The block to build there.
+	 * @return The task or <code>null</code> if this factory does not handle
+	 *         that block.
+	 */
+	public BuildTask getTask(BlockPos position, BlockState block) {
+		if (handles(block)) {
+			return getTaskImpl(position, block);
+		}
+		return null;
+	}
+
+	/**
+	 * @param block
+	 *            The block to build.
+	 * @return <code>true</code> if {@link #getTask(BlockPos, BlockState)}
+	 *         creates a task for that block.
+	 */
+	public boolean handles(BlockState block) {
+		BlockSet supported = getSupportedBlocks();
+		return supported != null && supported.contains(block);
+	}
+
 	protected abstract BuildTask getTaskImpl(BlockPos position, BlockState block);
 
 	public abstract BlockSet getSupportedBlocks();
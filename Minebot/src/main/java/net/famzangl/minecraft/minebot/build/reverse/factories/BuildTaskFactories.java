@@ -5,6 +5,7 @@ import net.famzangl.minecraft.minebot.ai.path.world.BlockSets;
 import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
 import net.famzangl.minecraft.minebot.build.reverse.TaskDescription;
 import net.famzangl.minecraft.minebot.build.reverse.UnsupportedBlockException;
+import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.util.math.BlockPos;
 
@@ -45,4 +46,22 @@ public class BuildTaskFactories {
 				"No handler found for that block.");
 	}
 
+	/**
+	 * Finds the factory that creates the tasks for a block, e.g. one read from
+	 * a build plan.
+	 * 
+	 * @param block
+	 *            The block to build.
+	 * @return The factory or <code>null</code> if there is none.
+	 */
+	public static AbstractBuildTaskFactory getFactoryFor(BlockState block) {
+		for (BuildTaskFactory f : factories) {
+			if (f instanceof AbstractBuildTaskFactory
+					&& ((AbstractBuildTaskFactory) f).handles(block)) {
+				return (AbstractBuildTaskFactory) f;
+			}
+		}
+		return null;
+	}
+
 }
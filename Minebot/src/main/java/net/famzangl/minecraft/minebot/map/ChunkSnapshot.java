@@ -0,0 +1,84 @@
+package net.famzangl.minecraft.minebot.map;
+
+import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldSnapshot;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.gen.Heightmap;
+
+/**
+ * Everything the map needs to render a chunk. It is copied on the client
+ * thread, so the renderers never read the world while Minecraft changes it.
+ *
+ * @author michael
+ *
+ */
+final class ChunkSnapshot {
+	private final ChunkPos pos;
+	private final WorldSnapshot world;
+	private final int[] heights = new int[16 * 16];
+	private final int[] biomeIds;
+	private final int hash;
+	/**
+	 * The modes to render. 0 means that the displayed mode is rendered and
+	 * the others are deferred.
+	 */
+	private final int modes;
+
+	/**
+	 * Copies a chunk. Needs to be called on the client thread.
+	 *
+	 * @param world
+	 *            The real world.
+	 * @param chunk
+	 *            The loaded chunk.
+	 * @param modes
+	 *            The modes to render, one bit per ordinal.
+	 */
+	public ChunkSnapshot(WorldData world, Chunk chunk, int modes) {
+		this.pos = chunk.getPos();
+		this.modes = modes;
+		this.world = new WorldSnapshot(world, new BlockPos(pos.getXStart(), 0,
+				pos.getZStart()), new BlockPos(pos.getXEnd(), 255,
+				pos.getZEnd()));
+		for (int z = 0; z < 16; z++) {
+			for (int x = 0; x < 16; x++) {
+				heights[z << 4 | x] = chunk.getTopBlockY(
+						Heightmap.Type.WORLD_SURFACE, x, z);
+			}
+		}
+		biomeIds = chunk.getBiomes().getBiomeIds();
+		hash = MapReader.getChunkHash(chunk);
+	}
+
+	public ChunkPos getPos() {
+		return pos;
+	}
+
+	/**
+	 * @return The copied blocks. Blocks outside of this chunk are barriers.
+	 */
+	public WorldSnapshot getWorld() {
+		return world;
+	}
+
+	/**
+	 * @see Chunk#getTopBlockY(Heightmap.Type, int, int)
+	 */
+	public int getTopBlockY(int x, int z) {
+		return heights[(z & 15) << 4 | x & 15];
+	}
+
+	public int[] getBiomeIds() {
+		return biomeIds;
+	}
+
+	public int getHash() {
+		return hash;
+	}
+
+	public int getModes() {
+		return modes;
+	}
+}
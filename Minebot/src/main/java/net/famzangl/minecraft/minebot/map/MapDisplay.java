@@ -206,7 +206,7 @@ public class MapDisplay extends JPanel implements FollowPlayerListener {
 	private final Object activePlayerMutex = new Object();
 	private BlockPos mapCenter = new BlockPos(0, 0, 0);
 
-	private RenderMode mode = RenderMode.MAP;
+	private volatile RenderMode mode = RenderMode.MAP;
 
 	private Action plusAction = new PlusAction("+");
 	private Action minusAction = new MinusAction("-");
@@ -347,6 +347,10 @@ public class MapDisplay extends JPanel implements FollowPlayerListener {
 		}
 	}
 	
+	public RenderMode getMode() {
+		return mode;
+	}
+
 	public void addRenderModeListener(RenderModeListener l, boolean fireOnce) {
 		renderModeListeners .add(l);
 		if (fireOnce) {
@@ -386,6 +390,21 @@ public class MapDisplay extends JPanel implements FollowPlayerListener {
 		repaint();
 	}
 
+	/**
+	 * Repaints the part of the map that shows the given blocks, if it is
+	 * visible.
+	 */
+	public void repaintBlocks(int minX, int minZ, int maxX, int maxZ) {
+		int x1 = blockToPanelX(minX);
+		int y1 = blockToPanelY(minZ);
+		// One more pixel for rounding errors
+		int x2 = blockToPanelX(maxX + 1) + 1;
+		int y2 = blockToPanelY(maxZ + 1) + 1;
+		if (x2 >= 0 && y2 >= 0 && x1 < getWidth() && y1 < getHeight()) {
+			repaint(x1, y1, x2 - x1, y2 - y1);
+		}
+	}
+
 	public void setPosition(BlockPos newPlayer, int newLook) {
 		synchronized (activePlayerMutex) {
 			if (newPlayer == null) {
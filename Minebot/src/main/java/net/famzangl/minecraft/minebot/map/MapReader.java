@@ -32,11 +32,19 @@ import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.Date;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Reads the map that is sent to the user,
@@ -53,7 +61,17 @@ public class MapReader implements ChunkListener {
 
 	private final File baseFile;
 
-	private final BlockingQueue<Chunk> chunksToProcess = new LinkedBlockingQueue<Chunk>();
+	/**
+	 * How many chunks are copied for rendering in one game tick.
+	 */
+	private static final int SNAPSHOTS_PER_TICK = 16;
+	/**
+	 * How many chunks an image remembers for the modes that are not
+	 * displayed.
+	 */
+	private static final int MAX_DEFERRED_CHUNKS = 1024;
+
+	private final BlockingQueue<ChunkSnapshot> chunksToProcess = new LinkedBlockingQueue<ChunkSnapshot>();
 	private final BlockingQueue<WriteableImage> imagesToWrite = new LinkedBlockingQueue<WriteableImage>();
 
 	private final MapDisplay mapDisplay = new MapDisplay(this);
@@ -63,6 +81,25 @@ public class MapReader implements ChunkListener {
 
 	private final ChunkQueue chunkQueue = new ChunkQueue();
 
+	/**
+	 * Deferred chunks that should be rendered now, with the modes to render
+	 * as bits. Copied on the client thread.
+	 */
+	private final ConcurrentHashMap<ChunkPos, Integer> deferredRequests = new ConcurrentHashMap<ChunkPos, Integer>();
+
+	/**
+	 * Renders the chunks. Each region is only rendered by one thread at a
+	 * time, but different regions are rendered in parallel. The renderers
+	 * only read chunk snapshots, never the world.
+	 */
+	private final ForkJoinPool renderPool = new ForkJoinPool(Math.max(1,
+			Runtime.getRuntime().availableProcessors() - 1), pool -> {
+		ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+				.newThread(pool);
+		thread.setName("Map renderer " + thread.getPoolIndex());
+		return thread;
+	}, null, true);
+
 	final MapReaderTask task = new MapReaderTask();
 	private final MapWriterTask writer = new MapWriterTask();
 
@@ -86,6 +123,14 @@ public class MapReader implements ChunkListener {
 
 		private RenderMode mode;
 
+		/**
+		 * Chunks that were not rendered for this mode yet, because the mode
+		 * was not displayed. Only modified by the render task of the region.
+		 * If there are too many, the oldest ones are dropped. They are
+		 * rendered again the next time the chunk is loaded.
+		 */
+		private final LinkedHashSet<ChunkPos> deferredChunks = new LinkedHashSet<ChunkPos>();
+
 		public WriteableImage(ImagePos pos, RenderMode mode) {
 			super();
 			this.pos = pos;
@@ -171,15 +216,21 @@ public class MapReader implements ChunkListener {
 			}
 		}
 
-		public void renderAt(WorldData world, Chunk chunk, int dx, int dz) {
-			int color = mode.getColor(world, chunk, chunk.getPos().x * 16 + dx,
+		public void renderAt(ChunkSnapshot chunk, int dx, int dz) {
+			int color = mode.getColor(chunk, chunk.getPos().x * 16 + dx,
 					chunk.getPos().z * 16 + dz);
 			getPaintingImage().setRGB(
 					-pos.topLeftX + chunk.getPos().x * 16 + dx,
 					-pos.topLeftZ + chunk.getPos().z * 16 + dz, color);
 		}
 
-		public void renderChunk(WorldData world, Chunk chunk) {
+		/**
+		 * Renders a chunk to this image.
+		 * 
+		 * @return <code>true</code> if a pixel changed.
+		 */
+		public boolean renderChunk(ChunkSnapshot chunk) {
+			deferredChunks.remove(chunk.getPos());
 			int chunkX = chunk.getPos().x * 16;
 			int chunkZ = chunk.getPos().z * 16;
 
@@ -194,7 +245,7 @@ public class MapReader implements ChunkListener {
 					int x = chunkX + dx;
 					int z = chunkZ + dz;
 
-					int color = mode.getColor(world, chunk, x, z);
+					int color = mode.getColor(chunk, x, z);
 					row[dx * 4] = (byte) (color >> 24);
 					row[dx * 4 + 1] = (byte) (color);
 					row[dx * 4 + 2] = (byte) (color >> 8);
@@ -213,6 +264,62 @@ public class MapReader implements ChunkListener {
 			if (wasChanged) {
 				markChanged();
 			}
+			return wasChanged;
+		}
+
+		public void deferChunk(ChunkPos pos) {
+			deferredChunks.remove(pos);
+			deferredChunks.add(pos);
+			if (deferredChunks.size() > MAX_DEFERRED_CHUNKS) {
+				Iterator<ChunkPos> oldest = deferredChunks.iterator();
+				oldest.next();
+				oldest.remove();
+			}
+		}
+
+		/**
+		 * Asks the client thread to copy all deferred chunks, so that they
+		 * can be rendered for this mode. Chunks that are not loaded any more
+		 * are dropped.
+		 */
+		public void requestDeferred() {
+			for (ChunkPos pos : deferredChunks) {
+				deferredRequests.merge(pos, 1 << mode.ordinal(),
+						(a, b) -> a | b);
+			}
+			deferredChunks.clear();
+		}
+
+		public boolean hasDeferredChunks() {
+			return !deferredChunks.isEmpty();
+		}
+	}
+
+	/**
+	 * The area of the map that changed, in block coordinates.
+	 */
+	private static class ChangedArea {
+		private int minX = Integer.MAX_VALUE;
+		private int minZ = Integer.MAX_VALUE;
+		private int maxX = Integer.MIN_VALUE;
+		private int maxZ = Integer.MIN_VALUE;
+
+		public void add(ChunkPos pos) {
+			minX = Math.min(minX, pos.x * 16);
+			minZ = Math.min(minZ, pos.z * 16);
+			maxX = Math.max(maxX, pos.x * 16 + 15);
+			maxZ = Math.max(maxZ, pos.z * 16 + 15);
+		}
+
+		public void add(ChangedArea other) {
+			minX = Math.min(minX, other.minX);
+			minZ = Math.min(minZ, other.minZ);
+			maxX = Math.max(maxX, other.maxX);
+			maxZ = Math.max(maxZ, other.maxZ);
+		}
+
+		public boolean isEmpty() {
+			return minX > maxX;
 		}
 	}
 
@@ -376,8 +483,11 @@ public class MapReader implements ChunkListener {
 		}
 
 		public synchronized void setChunkHash(int x, int z, int hash) {
-			settings.hashes.put(x + "," + z, hash);
-			write();
+			attemptRead();
+			Integer old = settings.hashes.put(x + "," + z, hash);
+			if (old == null || old != hash) {
+				write();
+			}
 		}
 
 		private void attemptRead() {
@@ -444,6 +554,10 @@ public class MapReader implements ChunkListener {
 				.values().length];
 		WriteableSetting setting;
 
+		private final ConcurrentLinkedQueue<ChunkSnapshot> chunksToRender = new ConcurrentLinkedQueue<ChunkSnapshot>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private final AtomicBoolean renderAllModes = new AtomicBoolean();
+
 		public MultiModeImage(ImagePos pos) {
 			for (int i = 0; i < images.length; i++) {
 				images[i] = new WriteableImage(pos, RenderMode.values()[i]);
@@ -463,10 +577,100 @@ public class MapReader implements ChunkListener {
 			}
 		}
 
-		public void renderChunk(WorldData world, Chunk chunk) {
+		public void offerChunk(ChunkSnapshot chunk) {
+			chunksToRender.offer(chunk);
+			schedule();
+		}
+
+		/**
+		 * Requests the chunks that were deferred for modes that are not
+		 * displayed.
+		 */
+		public void requestAllModes() {
+			renderAllModes.set(true);
+			schedule();
+		}
+
+		public void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				renderPool.execute(this::render);
+			}
+		}
+
+		private void render() {
+			try {
+				RenderMode displayed = mapDisplay.getMode();
+				ChangedArea changed = new ChangedArea();
+				ChunkSnapshot chunk;
+				while ((chunk = chunksToRender.poll()) != null) {
+					if (renderChunk(chunk, displayed)) {
+						changed.add(chunk.getPos());
+					}
+				}
+				if (!changed.isEmpty()) {
+					mapDisplay.repaintBlocks(changed.minX, changed.minZ,
+							changed.maxX, changed.maxZ);
+				}
+				// The mode may have been changed since the chunks were queued.
+				getForRenderMode(displayed).requestDeferred();
+				if (renderAllModes.getAndSet(false)) {
+					for (WriteableImage i : images) {
+						i.requestDeferred();
+					}
+				}
+			} catch (Throwable t) {
+				t.printStackTrace();
+			} finally {
+				scheduled.set(false);
+				if (!chunksToRender.isEmpty() || renderAllModes.get()) {
+					schedule();
+				}
+			}
+		}
+
+		/**
+		 * Renders a chunk for the displayed mode and remembers it for the
+		 * other modes. Chunks that were requested for some modes are only
+		 * rendered for them.
+		 * 
+		 * @return <code>true</code> if the displayed image changed.
+		 */
+		private boolean renderChunk(ChunkSnapshot chunk, RenderMode displayed) {
+			if (!wcm.shouldStillRender()) {
+				return false;
+			}
+			int hash = chunk.getHash();
+			if (!isValidForChunkHash(chunk.getPos().x, chunk.getPos().z, hash)) {
+				System.err.println("Abort rendering: Chunk hash has changed.");
+				if (!wcm.chunkHashChanged(chunk.getPos().x, chunk.getPos().z)) {
+					return false;
+				}
+			}
+			setChunkHash(chunk.getPos().x, chunk.getPos().z, hash);
+
+			boolean changed = false;
 			for (WriteableImage i : images) {
-				i.renderChunk(world, chunk);
+				if (chunk.getModes() != 0) {
+					if ((chunk.getModes() & 1 << i.mode.ordinal()) != 0
+							&& i.renderChunk(chunk)) {
+						changed |= i.mode == displayed;
+					}
+				} else if (i.mode == displayed) {
+					changed = i.renderChunk(chunk);
+				} else {
+					i.deferChunk(chunk.getPos());
+				}
+			}
+			return changed;
+		}
+
+		public boolean hasDeferredChunks() {
+			for (WriteableImage i : images) {
+				if (i.hasDeferredChunks()) {
+					return true;
+				}
 			}
+			return false;
 		}
 
 		public void markChanged() {
@@ -532,8 +736,7 @@ public class MapReader implements ChunkListener {
 		private boolean stopped;
 		private boolean doStop;
 
-		private Hashtable<ImagePos, MultiModeImage> images = new Hashtable<ImagePos, MultiModeImage>();
-		private final Object imagesMutex = new Object();
+		private final ConcurrentHashMap<ImagePos, MultiModeImage> images = new ConcurrentHashMap<ImagePos, MultiModeImage>();
 
 		public MapReaderTask() {
 		}
@@ -542,19 +745,28 @@ public class MapReader implements ChunkListener {
 		public void run() {
 			try {
 				long nextWrite = System.currentTimeMillis() + SAVE_TIME;
+				boolean needsWrite = false;
 
 				while (!doStop) {
-					Chunk chunk = chunksToProcess.poll(1000,
+					ChunkSnapshot chunk = chunksToProcess.poll(1000,
 							TimeUnit.MILLISECONDS);
 					// System.out.println("Chunks left to process: "
 					// + chunksToProcess.size());
 					if (chunk != null) {
 						renderChunk(chunk);
-						if ((System.currentTimeMillis() > nextWrite || chunksToProcess
-								.isEmpty()) && imagesToWrite.isEmpty()) {
-							write();
-							nextWrite = System.currentTimeMillis() + SAVE_TIME;
-						}
+						needsWrite = true;
+					} else if (requestAllModes()) {
+						// Nothing else to do. Catch up with the hidden modes.
+						needsWrite = true;
+					}
+					if (needsWrite
+							&& (System.currentTimeMillis() > nextWrite || chunksToProcess
+							.isEmpty())
+							&& imagesToWrite.isEmpty()
+							&& renderPool.isQuiescent()) {
+						write();
+						nextWrite = System.currentTimeMillis() + SAVE_TIME;
+						needsWrite = false;
 					}
 				}
 
@@ -562,6 +774,9 @@ public class MapReader implements ChunkListener {
 				e.printStackTrace();
 			} finally {
 				try {
+					requestAllModes();
+					renderPool.awaitQuiescence(30, TimeUnit.SECONDS);
+					renderPool.shutdown();
 					write();
 				} catch (Throwable e) {
 				}
@@ -571,36 +786,38 @@ public class MapReader implements ChunkListener {
 
 		private void write() {
 			System.out.println("Marking write");
-			synchronized (imagesMutex) {
-				for (MultiModeImage i : images.values()) {
-					i.offerForWrite(imagesToWrite);
-				}
+			for (MultiModeImage i : images.values()) {
+				i.offerForWrite(imagesToWrite);
 			}
 		}
 
-		private void renderChunk(Chunk chunk) {
-			if (!wcm.shouldStillRender()) {
-				return;
+		/**
+		 * @return <code>true</code> if there were deferred chunks.
+		 */
+		private boolean requestAllModes() {
+			boolean requested = false;
+			for (MultiModeImage i : images.values()) {
+				if (i.hasDeferredChunks()) {
+					i.requestAllModes();
+					requested = true;
+				}
 			}
+			return requested;
+		}
+
+		private void renderChunk(ChunkSnapshot chunk) {
 			ImagePos pos = new ImagePos(chunk.getPos().x * 16,
 					chunk.getPos().z * 16);
+			getImage(pos).offerChunk(chunk);
+		}
 
-			MultiModeImage image = getImage(pos);
-			int hash = getChunkHash(chunk);
-			if (!image.isValidForChunkHash(chunk.getPos().x, chunk.getPos().z,
-					hash)) {
-				System.err.println("Abort rendering: Chunk hash has changed.");
-				if (!wcm.chunkHashChanged(chunk.getPos().x, chunk.getPos().z)) {
-					return;
-				}
+		/**
+		 * Requests the chunks that were deferred for the new mode.
+		 */
+		private void renderModeChanged(RenderMode mode) {
+			for (MultiModeImage i : images.values()) {
+				i.schedule();
 			}
-			image.setChunkHash(chunk.getPos().x, chunk.getPos().z, hash);
-
-			WorldData world = registeredHelper.getWorld();
-			image.renderChunk(world, chunk);
-
-			// TODO: Only repaint if image was changed and is in view.
-			mapDisplay.repaint();
 		}
 
 		public void stop() {
@@ -608,14 +825,7 @@ public class MapReader implements ChunkListener {
 		}
 
 		public MultiModeImage getImage(ImagePos pos) {
-			synchronized (imagesMutex) {
-				MultiModeImage image = images.get(pos);
-				if (image == null) {
-					image = new MultiModeImage(pos);
-					images.put(pos, image);
-				}
-				return image;
-			}
+			return images.computeIfAbsent(pos, p -> new MultiModeImage(p));
 		}
 
 	}
@@ -653,6 +863,7 @@ public class MapReader implements ChunkListener {
 		super();
 		this.baseFile = file;
 
+		mapDisplay.addRenderModeListener(task::renderModeChanged, false);
 		new Thread(task, "Map reader").start();
 		new Thread(writer, "Map writer").start();
 
@@ -719,6 +930,12 @@ public class MapReader implements ChunkListener {
 
 	private boolean wasAlive;
 
+	/**
+	 * Chunks that changed but were not copied yet. Only used on the client
+	 * thread.
+	 */
+	private final LinkedHashSet<ChunkPos> chunksToCopy = new LinkedHashSet<ChunkPos>();
+
 	public void tick(AIHelper helper) {
 		if (registeredHelper == null) {
 			registeredHelper = helper;
@@ -728,13 +945,8 @@ public class MapReader implements ChunkListener {
 			loadAllChunks(helper);
 		}
 
-		for (ChunkPos d : chunkQueue.tickAndGet()) {
-			Chunk chunkFromChunkCoords = helper.getMinecraft().world
-					.getChunk(d.x, d.z);
-			if (chunkFromChunkCoords != null) {
-				chunksToProcess.offer(chunkFromChunkCoords);
-			}
-		}
+		chunksToCopy.addAll(chunkQueue.tickAndGet());
+		copyChunks(helper);
 
 		currentIndex++;
 		if (currentIndex > ALL_CHUNKS_LOAD_INTERVALL
@@ -755,6 +967,45 @@ public class MapReader implements ChunkListener {
 		// TODO: Draw highlighted blocks.
 	}
 
+	/**
+	 * Copies some of the changed and requested chunks for the render threads.
+	 * Chunks that are not loaded any more are dropped.
+	 */
+	private void copyChunks(AIHelper helper) {
+		ClientWorld theWorld = helper.getMinecraft().world;
+		if (theWorld == null) {
+			return;
+		}
+		WorldData world = helper.getWorld();
+		int budget = SNAPSHOTS_PER_TICK;
+		Iterator<ChunkPos> changed = chunksToCopy.iterator();
+		while (budget > 0 && changed.hasNext()) {
+			ChunkPos pos = changed.next();
+			changed.remove();
+			Chunk chunk = theWorld.getChunkProvider().getChunk(pos.x, pos.z,
+					false);
+			if (chunk != null) {
+				chunksToProcess.offer(new ChunkSnapshot(world, chunk, 0));
+				budget--;
+			}
+		}
+		Iterator<Entry<ChunkPos, Integer>> requested = deferredRequests
+				.entrySet().iterator();
+		while (budget > 0 && requested.hasNext()) {
+			Entry<ChunkPos, Integer> request = requested.next();
+			requested.remove();
+			ChunkPos pos = request.getKey();
+			Chunk chunk = theWorld.getChunkProvider().getChunk(pos.x, pos.z,
+					false);
+			if (chunk != null) {
+				ImagePos imagePos = new ImagePos(pos.x * 16, pos.z * 16);
+				task.getImage(imagePos).offerChunk(
+						new ChunkSnapshot(world, chunk, request.getValue()));
+				budget--;
+			}
+		}
+	}
+
 	private void checkIsAlive(AIHelper helper) {
 		boolean isAlive = helper.isAlive();
 		if (!isAlive && wasAlive && helper.getMinecraft().player != null) {
@@ -796,6 +1047,7 @@ public class MapReader implements ChunkListener {
 		task.stop();
 		writer.stop();
 		chunksToProcess.clear();
+		deferredRequests.clear();
 		mapDialog.setVisible(false);
 		mapDialog.dispose();
 	}
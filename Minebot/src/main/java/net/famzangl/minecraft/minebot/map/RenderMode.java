@@ -9,8 +9,6 @@ import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.block.material.MaterialColor;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.world.chunk.Chunk;
-import net.minecraft.world.gen.Heightmap;
 
 import java.util.Hashtable;
 
@@ -57,8 +55,6 @@ public enum RenderMode {
 		/**
 		 * Gets the color for one pixel of the map.
 		 * 
-		 * @param world
-		 *            The world to use.
 		 * @param chunk
 		 *            The chunk we are rendering
 		 * @param dx
@@ -67,16 +63,17 @@ public enum RenderMode {
 		 *            World y coordinate
 		 * @return The rgba color.
 		 */
-		int getColor(WorldData world, Chunk chunk, int dx, int dz);
+		int getColor(ChunkSnapshot chunk, int dx, int dz);
 	}
 
 	private static class UndergroundRenderer implements RenderMode.IRenderer {
 
 		@Override
-		public int getColor(WorldData world, Chunk chunk, int dx, int dz) {
-			int height = chunk.getTopBlockY(Heightmap.Type.WORLD_SURFACE, dx & 0xf, dz & 0xf) + 1;
+		public int getColor(ChunkSnapshot chunk, int dx, int dz) {
+			WorldData world = chunk.getWorld();
+			int height = chunk.getTopBlockY(dx, dz) + 1;
 			while (height > 3
-					&& IGNORED_COVER_BLOCKS.contains(chunk.getBlockState(new BlockPos(dx, height, dz)))) {
+					&& IGNORED_COVER_BLOCKS.contains(world.getBlockStateId(dx, height, dz))) {
 				height--;
 			}
 			BlockCuboid area = new BlockCuboid(new BlockPos(dx, 0, dz),
@@ -96,12 +93,13 @@ public enum RenderMode {
 
 	private static class MapRenderer implements RenderMode.IRenderer {
 		@Override
-		public int getColor(WorldData world, Chunk chunk, int dx, int dz) {
-			int height = chunk.getTopBlockY(Heightmap.Type.WORLD_SURFACE, dx & 0xf, dz & 0xf) + 1;
+		public int getColor(ChunkSnapshot chunk, int dx, int dz) {
+			WorldData world = chunk.getWorld();
+			int height = chunk.getTopBlockY(dx, dz) + 1;
 			BlockState state;
 			do {
 				--height;
-				state = chunk.getBlockState(new BlockPos(dx, height, dz));
+				state = world.getBlockState(new BlockPos(dx, height, dz));
 			} while ((GLOBAL_COVER_BLACKLIST.contains(state) || state
 					.getBlock().getMaterialColor(state, world.getBackingWorld(), new BlockPos(dx, height, dz)) == MaterialColor.AIR)
 					&& height > 0);
@@ -189,11 +187,10 @@ public enum RenderMode {
 		}
 
 		@Override
-		public int getColor(WorldData world, Chunk chunk, int dx, int dz) {
+		public int getColor(ChunkSnapshot chunk, int dx, int dz) {
 			int i = dx & 15;
 			int j = dz & 15;
-			//TODO: This is very slow in the current version
-			int k = chunk.getBiomes().getBiomeIds()[j << 4 | i] & 255;
+			int k = chunk.getBiomeIds()[j << 4 | i] & 255;
 			// assume it is already loaded. If not, we ignore it.
 			Integer color = COLORS.get(k);
 			return color != null ? color : DEFAULT_COLOR;
@@ -213,8 +210,8 @@ public enum RenderMode {
 		return ext;
 	}
 
-	public int getColor(WorldData world, Chunk chunk, int dx, int dz) {
-		return renderer.getColor(world, chunk, dx, dz);
+	public int getColor(ChunkSnapshot chunk, int dx, int dz) {
+		return renderer.getColor(chunk, dx, dz);
 	}
 
 	public String getName() {
@@ -132,6 +132,10 @@ public class FieldValidation {
 			// cannot set static/final fields.
 			return;
 		}
+		if (Modifier.isTransient(f.getModifiers())) {
+			// computed from the other fields.
+			return;
+		}
 		
 		if (!f.getType().isPrimitive()) {
 			list.add(new NotNullValidator(f));
@@ -35,6 +35,11 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Date;
 
@@ -52,9 +57,25 @@ public class MinebotSettings {
 	
 	private static final MinebotSettings INSTANCE = new MinebotSettings();
 
-	private MinebotSettingsRoot settings;
+	/**
+	 * How long to wait for more changes after the file changed. Editors often
+	 * write the file in several steps.
+	 */
+	private static final long RELOAD_DELAY = 200;
+	/**
+	 * How often to check the file if we cannot watch the directory.
+	 */
+	private static final long POLL_INTERVAL = 1000;
+
+	/**
+	 * The current settings. They are never modified, a reload replaces them.
+	 */
+	private volatile MinebotSettingsRoot settings;
 	private ArrayList<String> keys;
 
+	/**
+	 * Only accessed by the thread that loads the settings.
+	 */
 	private long settingsLastModified = 0;
 
 	private static Object mutex = new Object();
@@ -62,38 +83,133 @@ public class MinebotSettings {
 	private MinebotSettings() {
 	}
 
-	private synchronized MinebotSettingsRoot createSettings() {
-		File settingsFile = getSettingsFile();
-		if (settings == null || changedSinceLastLoad(settingsFile)) {
-			settings = null;
-			try {
-				settingsLastModified = settingsFile.lastModified();
-				LOGGER.debug(MARKER_SETTINGS, "Loading " + settingsFile.getAbsolutePath()
-						+ " ... (date: " + new Date(settingsLastModified) + ")");
-				Gson gson = getGson();
-				settings = gson.fromJson(new FileReader(settingsFile),
-						MinebotSettingsRoot.class);
-				validateAfterLoad(settings);
-			} catch (final IOException e) {
-				LOGGER.error(MARKER_SETTINGS, "Could not read settings file: " + e.getMessage());
-			} catch (final JsonParseException e) {
-				LOGGER.error(MARKER_SETTINGS, "Error in settings file:" + e.getMessage());
-			}
+	private synchronized MinebotSettingsRoot loadInitialSettings() {
+		if (settings == null) {
+			settings = loadSettings();
 			if (settings == null) {
 				LOGGER.info(MARKER_SETTINGS, "Fall back to default settings.");
-				settings = new MinebotSettingsRoot();
+				settings = compile(new MinebotSettingsRoot());
 			}
+			Thread reloader = new Thread(new SettingsReloader(),
+					"Minebot settings reloader");
+			reloader.setDaemon(true);
+			reloader.start();
 		}
-
 		return settings;
 	}
 
-	private boolean changedSinceLastLoad(File settingsFile) {
-		return settingsFile.lastModified() > settingsLastModified;
+	/**
+	 * Loads the settings file.
+	 * 
+	 * @return The settings or <code>null</code> if they could not be loaded.
+	 */
+	private MinebotSettingsRoot loadSettings() {
+		File settingsFile = getSettingsFile();
+		settingsLastModified = settingsFile.lastModified();
+		LOGGER.debug(MARKER_SETTINGS, "Loading " + settingsFile.getAbsolutePath()
+				+ " ... (date: " + new Date(settingsLastModified) + ")");
+		try (FileReader reader = new FileReader(settingsFile)) {
+			Gson gson = getGson();
+			MinebotSettingsRoot loaded = gson.fromJson(reader,
+					MinebotSettingsRoot.class);
+			if (loaded == null) {
+				LOGGER.error(MARKER_SETTINGS, "Settings file is empty.");
+				return null;
+			}
+			validateAfterLoad(loaded);
+			return compile(loaded);
+		} catch (final IOException e) {
+			LOGGER.error(MARKER_SETTINGS, "Could not read settings file: " + e.getMessage());
+		} catch (final JsonParseException e) {
+			LOGGER.error(MARKER_SETTINGS, "Error in settings file:" + e.getMessage());
+		}
+		return null;
+	}
+
+	private MinebotSettingsRoot compile(MinebotSettingsRoot loaded) {
+		loaded.compile();
+		return loaded;
+	}
+
+	private void reloadIfChanged() {
+		if (getSettingsFile().lastModified() == settingsLastModified) {
+			return;
+		}
+		MinebotSettingsRoot loaded = loadSettings();
+		if (loaded == null) {
+			LOGGER.info(MARKER_SETTINGS, "Keeping the previous settings.");
+		} else {
+			settings = loaded;
+			LOGGER.info(MARKER_SETTINGS, "Settings reloaded.");
+		}
+	}
+
+	/**
+	 * Reloads the settings when the file changes.
+	 */
+	private class SettingsReloader implements Runnable {
+		@Override
+		public void run() {
+			try {
+				if (!watch()) {
+					poll();
+				}
+			} catch (InterruptedException e) {
+				LOGGER.debug(MARKER_SETTINGS, "Settings reloader stopped.");
+			}
+		}
+
+		/**
+		 * Watches the data directory for changes of the settings file.
+		 * 
+		 * @return <code>false</code> if the directory cannot be watched.
+		 */
+		private boolean watch() throws InterruptedException {
+			Path dir = getDataDir().toPath();
+			String fileName = getSettingsFile().getName();
+			try (WatchService watcher = dir.getFileSystem().newWatchService()) {
+				dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY);
+				while (true) {
+					WatchKey key = watcher.take();
+					if (affectsFile(key, fileName)) {
+						Thread.sleep(RELOAD_DELAY);
+						// Ignore the changes made while we waited.
+						key.pollEvents();
+						reloadIfChanged();
+					}
+					if (!key.reset()) {
+						LOGGER.warn(MARKER_SETTINGS, "Cannot watch " + dir
+								+ " any more.");
+						return false;
+					}
+				}
+			} catch (IOException e) {
+				LOGGER.warn(MARKER_SETTINGS, "Cannot watch " + dir + ": "
+						+ e.getMessage());
+				return false;
+			}
+		}
+
+		private boolean affectsFile(WatchKey key, String fileName) {
+			boolean affected = false;
+			for (WatchEvent<?> event : key.pollEvents()) {
+				affected |= event.kind() == StandardWatchEventKinds.OVERFLOW
+						|| fileName.equals(String.valueOf(event.context()));
+			}
+			return affected;
+		}
+
+		private void poll() throws InterruptedException {
+			while (true) {
+				Thread.sleep(POLL_INTERVAL);
+				reloadIfChanged();
+			}
+		}
 	}
 
 	private void doWriteSettings() {
-		MinebotSettingsRoot settings = createSettings();
+		MinebotSettingsRoot settings = getSettings();
 
 		File settingsFile = getSettingsFile();
 		try {
@@ -121,8 +237,18 @@ public class MinebotSettings {
 		FieldValidation.validateAfterLoad(loaded, new MinebotSettingsRoot());
 	}
 
+	/**
+	 * Gets the current settings. This is cheap, the settings are reloaded in
+	 * the background when the file changes.
+	 * 
+	 * @return The settings. Do not modify them.
+	 */
 	public static MinebotSettingsRoot getSettings() {
-		return getInstance().createSettings();
+		MinebotSettingsRoot settings = getInstance().settings;
+		if (settings == null) {
+			settings = getInstance().loadInitialSettings();
+		}
+		return settings;
 	}
 
 	public static void writeSettings() {
@@ -21,6 +21,17 @@ public class MinebotSettingsRoot {
 
 	private ToolRater fishingRater = new ToolRater(ToolType.FISHING_ROD);
 	
+	/**
+	 * Computes everything that can be derived from the settings, so that this
+	 * does not need to be done while the bot is running. The settings should
+	 * not be changed afterwards.
+	 */
+	public void compile() {
+		mining.compile();
+		toolRater.getRatingCache();
+		fishingRater.getRatingCache();
+	}
+
 	public PathfindingSettings getPathfinding() {
 		return pathfinding;
 	}
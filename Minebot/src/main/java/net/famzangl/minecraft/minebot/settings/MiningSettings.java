@@ -49,6 +49,14 @@ public class MiningSettings {
 		pointsMap.setBlock(Blocks.GLOWSTONE, 0);
 	}
 
+	/**
+	 * Computes the values derived from the maps.
+	 */
+	public void compile() {
+		factorMap.compile();
+		pointsMap.compile();
+	}
+
 	public float getDoubleBonus() {
 		return doubleBonus;
 	}
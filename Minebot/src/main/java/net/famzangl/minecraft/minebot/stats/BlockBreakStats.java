@@ -20,13 +20,11 @@ import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
 import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * A recorder of the block breaks.
+ * A recorder of the block breaks. Only the number of breaks per second is
+ * kept, see {@link RollingCounter}.
  * 
  * @author michael
  *
@@ -39,67 +37,50 @@ public class BlockBreakStats {
 	}
 
 	public class BlockBreakStatsSlice {
-		private int start;
-		private int end;
+		private final RollingCounter.Window window;
+		private final long secondsInPast;
 
-		public BlockBreakStatsSlice(int start, int end) {
-			this.start = start;
-			this.end = end;
+		public BlockBreakStatsSlice(long secondsInPast) {
+			this.secondsInPast = secondsInPast;
+			window = counter.getWindow(secondsInPast);
 		}
 
+		/**
+		 * @return The blocks broken per second.
+		 */
 		public float getAverage() {
-			float sum = 0;
-			for (int i = start; i < end; i++) {
-				sum += entries.get(i).getCount();
-			}
-			return sum / (end - start);
+			return window.getRate();
 		}
-	}
-
-	public static class BlockBreakStatEntry {
-
-		private List<BlockBreakStatBreak> breaks;
 
-		public BlockBreakStatEntry(List<BlockBreakStatBreak> toAdd) {
-			this.breaks = toAdd;
+		public long getSum() {
+			return window.getSum();
 		}
 
-		public int getCount() {
-			return breaks.size();
-		}
-
-	}
-
-	private static class BlockBreakStatBreak {
-		private BlockPos pos;
-		private BlockState block;
-
-		public BlockBreakStatBreak(BlockPos pos, BlockState block) {
-			this.pos = pos;
-			this.block = block;
+		/**
+		 * @param percentile
+		 *            The percentile, 0..1
+		 * @return The percentile of the blocks broken per second, see
+		 *         {@link RollingCounter#getPercentileRate(long, double)}.
+		 */
+		public float getPercentile(double percentile) {
+			return counter.getPercentileRate(secondsInPast, percentile);
 		}
 	}
 
 	private static final int TICKS_PER_SECOND = 20;
 	private int ticksCollected = 0;
 
-	private ArrayList<BlockBreakStatEntry> entries = new ArrayList<BlockBreakStatEntry>();
+	private final RollingCounter counter = new RollingCounter();
 
-	private ArrayList<BlockBreakStatBreak> currentTickEntries = new ArrayList<BlockBreakStatBreak>();
+	private int currentSecondBreaks = 0;
 	private CopyOnWriteArrayList<BlockBreakStatsChangeListener> listeners = new CopyOnWriteArrayList<BlockBreakStatsChangeListener>();
 
 	public synchronized void nextGameTick() {
 		ticksCollected++;
 		if (ticksCollected >= TICKS_PER_SECOND) {
 			ticksCollected = 0;
-			List<BlockBreakStatBreak> toAdd;
-			if (currentTickEntries.size() == 0) {
-				toAdd = Collections.<BlockBreakStatBreak> emptyList();
-			} else {
-				toAdd = currentTickEntries;
-				currentTickEntries = new ArrayList<BlockBreakStatBreak>();
-			}
-			entries.add(new BlockBreakStatEntry(toAdd));
+			counter.addSecond(currentSecondBreaks);
+			currentSecondBreaks = 0;
 			for (BlockBreakStatsChangeListener l : listeners) {
 				l.blockStatsChanged();
 			}
@@ -112,11 +93,7 @@ public class BlockBreakStats {
 	}
 
 	public synchronized void addBlockBreak(BlockPos pos, BlockState block) {
-		currentTickEntries.add(new BlockBreakStatBreak(pos, block));
-	}
-
-	public synchronized ArrayList<BlockBreakStatEntry> getEntries() {
-		return entries;
+		currentSecondBreaks++;
 	}
 
 	public void addChangeListener(BlockBreakStatsChangeListener listener) {
@@ -124,18 +101,6 @@ public class BlockBreakStats {
 	}
 
 	public synchronized BlockBreakStatsSlice getStatsSlice(int secondsInPast) {
-		int start = entries.size() - secondsInPast;
-		start = clampToRange(start, entries.size() - 1);
-		int end = clampToRange(start + secondsInPast, entries.size());
-		return new BlockBreakStatsSlice(start, end);
-	}
-
-	private int clampToRange(int start, int max) {
-		if (start >= max) {
-			start = max;
-		} else if (start < 0) {
-			start = 0;
-		}
-		return start;
+		return new BlockBreakStatsSlice(secondsInPast);
 	}
 }
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.stats;
+
+/**
+ * Counts events per second for a long time with fixed memory. The counts are
+ * kept at three resolutions: Each second for the last minute, each minute for
+ * the last hour and each hour for the last week. Older counts only stay in
+ * the total.
+ * <p>
+ * Each resolution is a ring that stores the running total at the end of each
+ * slot and a histogram of the slot counts, so sums, rates and percentiles are
+ * read without scanning the ring.
+ *
+ * @author Michael Zangl
+ */
+public class RollingCounter {
+	private static final int HISTOGRAM_BUCKETS = 256;
+	/**
+	 * Counts below this get their own histogram bucket.
+	 */
+	private static final int EXACT_BUCKETS = 16;
+
+	/**
+	 * One resolution.
+	 */
+	private static class Level {
+		private final int secondsPerSlot;
+		private final int capacity;
+		/**
+		 * The running total at the end of each slot. Slot n is stored at n %
+		 * (capacity + 1), so that we can subtract the total before the oldest
+		 * slot we still know.
+		 */
+		private final long[] totals;
+		private final long[] counts;
+		private final int[] histogram = new int[HISTOGRAM_BUCKETS];
+		private long finishedSlots;
+		private int secondsInCurrentSlot;
+		private long countInCurrentSlot;
+
+		public Level(int secondsPerSlot, int capacity) {
+			this.secondsPerSlot = secondsPerSlot;
+			this.capacity = capacity;
+			totals = new long[capacity + 1];
+			counts = new long[capacity];
+		}
+
+		public void addSecond(long count, long total) {
+			countInCurrentSlot += count;
+			secondsInCurrentSlot++;
+			if (secondsInCurrentSlot < secondsPerSlot) {
+				return;
+			}
+			int index = (int) (finishedSlots % capacity);
+			if (finishedSlots >= capacity) {
+				histogram[getBucket(counts[index])]--;
+			}
+			counts[index] = countInCurrentSlot;
+			histogram[getBucket(countInCurrentSlot)]++;
+			finishedSlots++;
+			totals[(int) (finishedSlots % (capacity + 1))] = total;
+			secondsInCurrentSlot = 0;
+			countInCurrentSlot = 0;
+		}
+
+		/**
+		 * @return The number of seconds this level can look back.
+		 */
+		public long getSpan() {
+			return (long) Math.min(finishedSlots, capacity) * secondsPerSlot
+					+ secondsInCurrentSlot;
+		}
+
+		/**
+		 * @param slots
+		 *            The number of finished slots. At most the number of
+		 *            slots that are stored.
+		 * @return The running total before that many slots.
+		 */
+		public long getTotalBefore(long slots) {
+			return totals[(int) ((finishedSlots - slots) % (capacity + 1))];
+		}
+
+		public int getStoredSlots() {
+			return (int) Math.min(finishedSlots, capacity);
+		}
+	}
+
+	/**
+	 * The sum over some seconds in the past.
+	 */
+	public static class Window {
+		private final long sum;
+		private final long seconds;
+
+		private Window(long sum, long seconds) {
+			this.sum = sum;
+			this.seconds = seconds;
+		}
+
+		public long getSum() {
+			return sum;
+		}
+
+		/**
+		 * @return The seconds this window really covers. This may be less
+		 *         than requested if not enough time passed and is rounded to
+		 *         the resolution used.
+		 */
+		public long getSeconds() {
+			return seconds;
+		}
+
+		/**
+		 * @return The events per second in the window, 0 for an empty window.
+		 */
+		public float getRate() {
+			return seconds == 0 ? 0 : (float) sum / seconds;
+		}
+	}
+
+	private final Level[] levels = new Level[] { new Level(1, 60),
+			new Level(60, 60), new Level(60 * 60, 24 * 7) };
+	private long total;
+	private long seconds;
+
+	/**
+	 * Adds the count of the second that just ended.
+	 *
+	 * @param count
+	 *            The number of events in that second.
+	 */
+	public synchronized void addSecond(long count) {
+		total += count;
+		seconds++;
+		for (Level level : levels) {
+			level.addSecond(count, total);
+		}
+	}
+
+	public synchronized long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return The number of seconds that were added.
+	 */
+	public synchronized long getSeconds() {
+		return seconds;
+	}
+
+	/**
+	 * Gets the sum over the last seconds. The window is rounded to the
+	 * finest resolution that covers it.
+	 *
+	 * @param secondsInPast
+	 *            The length of the window.
+	 * @return The window.
+	 */
+	public synchronized Window getWindow(long secondsInPast) {
+		if (secondsInPast >= seconds) {
+			return new Window(total, seconds);
+		}
+		Level level = getLevel(secondsInPast);
+		long slots = (secondsInPast - level.secondsInCurrentSlot
+				+ level.secondsPerSlot - 1)
+				/ level.secondsPerSlot;
+		slots = Math.max(0, Math.min(slots, level.getStoredSlots()));
+		return new Window(total - level.getTotalBefore(slots), slots
+				* level.secondsPerSlot + level.secondsInCurrentSlot);
+	}
+
+	/**
+	 * Gets a percentile of the events per second. It is computed over the
+	 * stored slots of the resolution that would be used for
+	 * {@link #getWindow(long)}, so it covers the last minute, hour or week.
+	 *
+	 * @param secondsInPast
+	 *            Selects the resolution.
+	 * @param percentile
+	 *            The percentile, in the range 0..1.
+	 * @return The rate, with a precision of about 25%. 0 if nothing was
+	 *         recorded yet.
+	 */
+	public synchronized float getPercentileRate(long secondsInPast,
+			double percentile) {
+		Level level = getLevel(secondsInPast);
+		int stored = level.getStoredSlots();
+		if (stored == 0) {
+			return 0;
+		}
+		long rank = Math.min(stored - 1,
+				Math.max(0, (long) Math.ceil(percentile * stored) - 1));
+		for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++) {
+			rank -= level.histogram[bucket];
+			if (rank < 0) {
+				return (float) getBucketStart(bucket) / level.secondsPerSlot;
+			}
+		}
+		throw new IllegalStateException("Histogram does not match slots.");
+	}
+
+	private Level getLevel(long secondsInPast) {
+		for (Level level : levels) {
+			if (secondsInPast <= (long) level.capacity * level.secondsPerSlot) {
+				return level;
+			}
+		}
+		return levels[levels.length - 1];
+	}
+
+	/**
+	 * Small counts get their own bucket, larger ones share a bucket with
+	 * counts that have the same two bits after the highest one.
+	 */
+	private static int getBucket(long count) {
+		if (count < EXACT_BUCKETS) {
+			return (int) count;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(count);
+		int mantissa = (int) (count >> (exponent - 2)) & 3;
+		return EXACT_BUCKETS + (exponent - 4) * 4 + mantissa;
+	}
+
+	private static long getBucketStart(int bucket) {
+		if (bucket < EXACT_BUCKETS) {
+			return bucket;
+		}
+		int exponent = (bucket - EXACT_BUCKETS) / 4 + 4;
+		int mantissa = (bucket - EXACT_BUCKETS) % 4;
+		return (long) (4 + mantissa) << (exponent - 2);
+	}
+}